@@ -0,0 +1,198 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.Benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * Compares the carry, comparison and bit operations of BitOperations with
+ * the previous versions, which validated the arguments on every call and
+ * used longs. The previous versions are copied in this class.
+ *
+ * <p>The checked mode of BitOperations is selected when the class is loaded,
+ * so it is measured in a separate fork, with the benchmarks ending in
+ * Checked.
+ *
+ * @author Joao Bispo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitOperationsBenchmark {
+
+    @Setup
+    public void setup() {
+        Random random = new Random(SEED);
+        a = new int[SIZE];
+        b = new int[SIZE];
+        carries = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            a[i] = random.nextInt();
+            b[i] = random.nextInt();
+            carries[i] = random.nextInt(2);
+        }
+    }
+
+    @Benchmark
+    public void carryOutAdd(Blackhole hole) {
+        for (int i = 0; i < SIZE; i++) {
+            hole.consume(BitOperations.getCarryOutAdd(a[i], b[i], carries[i]));
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = CHECKED_ARGUMENT)
+    public void carryOutAddChecked(Blackhole hole) {
+        carryOutAdd(hole);
+    }
+
+    @Benchmark
+    public void carryOutAddLong(Blackhole hole) {
+        for (int i = 0; i < SIZE; i++) {
+            hole.consume(longCarryOutAdd(a[i], b[i], carries[i]));
+        }
+    }
+
+    @Benchmark
+    public void carryOutRsub(Blackhole hole) {
+        for (int i = 0; i < SIZE; i++) {
+            hole.consume(BitOperations.getCarryOutRsub(a[i], b[i], carries[i]));
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = CHECKED_ARGUMENT)
+    public void carryOutRsubChecked(Blackhole hole) {
+        carryOutRsub(hole);
+    }
+
+    @Benchmark
+    public void carryOutRsubLong(Blackhole hole) {
+        for (int i = 0; i < SIZE; i++) {
+            hole.consume(longCarryOutRsub(a[i], b[i], carries[i]));
+        }
+    }
+
+    @Benchmark
+    public void unsignedComp(Blackhole hole) {
+        for (int i = 0; i < SIZE; i++) {
+            hole.consume(BitOperations.unsignedComp(a[i], b[i]));
+        }
+    }
+
+    @Benchmark
+    public void unsignedCompLong(Blackhole hole) {
+        for (int i = 0; i < SIZE; i++) {
+            hole.consume(longUnsignedComp(a[i], b[i]));
+        }
+    }
+
+    @Benchmark
+    public void writeBit(Blackhole hole) {
+        for (int i = 0; i < SIZE; i++) {
+            hole.consume(BitOperations.writeBit(a[i] & BIT_MASK, carries[i], b[i]));
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = CHECKED_ARGUMENT)
+    public void writeBitChecked(Blackhole hole) {
+        writeBit(hole);
+    }
+
+    @Benchmark
+    public void writeBitBranches(Blackhole hole) {
+        for (int i = 0; i < SIZE; i++) {
+            hole.consume(branchWriteBit(a[i] & BIT_MASK, carries[i], b[i]));
+        }
+    }
+
+    /*
+     * Previous versions of the methods
+     */
+
+    private static int longCarryOutAdd(int rA, int rB, int carry) {
+        if (carry != 0 && carry != 1) {
+            console.warn("getCarryOut: Carry is different than 0 or 1 (" +
+                    carry + ")");
+        }
+
+        long result = (rA & MASK_32_BITS) + (rB & MASK_32_BITS) + carry;
+        return (int) ((result & MASK_BIT_33) >>> 32);
+    }
+
+    private static int longCarryOutRsub(int rA, int rB, int carry) {
+        if (carry != 0 && carry != 1) {
+            console.warn("getCarryOut: Carry is different than 0 or 1 (" +
+                    carry + ")");
+        }
+
+        long result = (rB & MASK_32_BITS) + ~(rA & MASK_32_BITS) + carry;
+        return (int) ((result & MASK_BIT_33) >>> 32);
+    }
+
+    private static boolean longUnsignedComp(int a, int b) {
+        return (a & MASK_32_BITS) > (b & MASK_32_BITS);
+    }
+
+    private static int branchWriteBit(int bit, int value, int target) {
+        if (value == 0) {
+            return target & ~(1 << bit);
+        } else if (value == 1) {
+            return target | (1 << bit);
+        } else {
+            console.warn("writeBit: Value is not 1 or 0 (" + value + ")");
+            return target;
+        }
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private int[] a;
+    private int[] b;
+    private int[] carries;
+
+    // Utilities
+    private static final Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    private static final int SIZE = 1024;
+    private static final long SEED = 1;
+    private static final int BIT_MASK = 31;
+    private static final long MASK_32_BITS = 0xFFFFFFFFL;
+    private static final long MASK_BIT_33 = 0x100000000L;
+    private static final String CHECKED_ARGUMENT =
+            "-D" + BitOperations.CHECKED_PROPERTY + "=true";
+}
@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.Benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.CachedSegments;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemoryPlus;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.MappedDataMemory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Loads and stores in the data memory, with different access patterns.
+ * Results are the time per access.
+ *
+ * <p>Patterns:
+ * <ul>
+ * <li>sequential - consecutive words;
+ * <li>strided - one word in each segment of CachedSegments;
+ * <li>random - random words in a 16 MB region.
+ * </ul>
+ *
+ * @author Joao Bispo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataMemoryBenchmark {
+
+    @Setup
+    public void setup() {
+        addresses = new int[ACCESSES];
+        Random random = new Random(SEED);
+        for (int i = 0; i < ACCESSES; i++) {
+            if (pattern.equals("sequential")) {
+                addresses[i] = i * WORD_BYTES;
+            } else if (pattern.equals("strided")) {
+                addresses[i] = i * STRIDE;
+            } else if (pattern.equals("random")) {
+                addresses[i] = random.nextInt(RANDOM_REGION) & ~(WORD_BYTES - 1);
+            } else {
+                throw new IllegalArgumentException("Unknown pattern (" + pattern + ").");
+            }
+        }
+
+        DataMemory dataMemory;
+        if (memory.equals("mapped")) {
+            dataMemory = MappedDataMemory.newInstance();
+        } else {
+            dataMemory = new CachedSegments();
+        }
+        memoryPlus = new DataMemoryPlus(dataMemory);
+
+        // Write all the addresses, so that loads find initialized words
+        for (int i = 0; i < ACCESSES; i++) {
+            memoryPlus.storeWord(addresses[i], i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public void loadWord(Blackhole hole) {
+        for (int i = 0; i < ACCESSES; i++) {
+            hole.consume(memoryPlus.loadWord(addresses[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public void storeWord() {
+        for (int i = 0; i < ACCESSES; i++) {
+            memoryPlus.storeWord(addresses[i], i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESSES)
+    public void storeByte() {
+        for (int i = 0; i < ACCESSES; i++) {
+            memoryPlus.storeByte(addresses[i] + (i & 3), i);
+        }
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    @Param({"sequential", "strided", "random"})
+    private String pattern;
+    @Param({"cached", "mapped"})
+    private String memory;
+    private int[] addresses;
+    private DataMemoryPlus memoryPlus;
+
+    // Definitions
+    private static final int ACCESSES = 4096;
+    private static final int WORD_BYTES = 4;
+    /**
+     * One segment of CachedSegments, plus one word.
+     */
+    private static final int STRIDE = (WORD_BYTES << CachedSegments.SEGMENT_SIZE_POWER) + WORD_BYTES;
+    private static final int RANDOM_REGION = 16 * 1024 * 1024;
+    private static final long SEED = 1;
+}
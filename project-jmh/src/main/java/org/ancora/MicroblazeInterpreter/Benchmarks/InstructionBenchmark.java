@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.ancora.MicroblazeInterpreter.Instructions.Instruction;
+import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
+import org.ancora.MicroblazeInterpreter.Parser.TraceLineParser;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds and executes one instruction of each family of operations. The
+ * instructions are taken from the bundled traces.
+ *
+ * @author Joao Bispo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstructionBenchmark {
+
+    @Setup
+    public void setup() {
+        record = new TraceRecord();
+        if (!new TraceLineParser().parse(sampleLine(family), record)) {
+            throw new IllegalStateException("Could not parse the instruction of " +
+                    "family " + family + ".");
+        }
+
+        processor = Workloads.newProcessor(null);
+        builder = InstructionBuilder.getBuilder(record.getOpcode());
+        instruction = builder.build(record, processor);
+    }
+
+    @Benchmark
+    public Instruction build() {
+        return builder.build(record, processor);
+    }
+
+    @Benchmark
+    public void execute() {
+        instruction.execute();
+    }
+
+    /**
+     * @param family
+     * @return the trace instruction used for the family
+     */
+    private static String sampleLine(String family) {
+        for (String[] sample : SAMPLES) {
+            if (sample[0].equals(family)) {
+                return sample[1];
+            }
+        }
+        throw new IllegalArgumentException("Unknown family of instructions (" +
+                family + ").");
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    @Param({"arithmetic", "arithmeticImm", "rsub", "logic", "compare",
+        "multiply", "shift", "branch", "call", "return", "load", "store",
+        "storeByte", "imm"})
+    private String family;
+    private TraceRecord record;
+    private MbProcessor processor;
+    private InstructionBuilder builder;
+    private Instruction instruction;
+
+    // Definitions
+    /**
+     * Family of instructions and the trace instruction used for it.
+     */
+    private static final String[][] SAMPLES = {
+        {"arithmetic", "0x00000174  addk    r19, r1, r0"},
+        {"arithmeticImm", "0x00000050  addik   r13, r0, 7544"},
+        {"rsub", "0x00000f74  rsubk   r18, r3, r4"},
+        {"logic", "0x000018bc  and     r7, r8, r9"},
+        {"compare", "0x00000cb8  cmp     r18, r3, r18"},
+        {"multiply", "0x00000410  mul     r3, r4, r3"},
+        {"shift", "0x00000ce8  bsrli   r3, r3, 7"},
+        {"branch", "0x00001910  bnei    r18, -16"},
+        {"call", "0x0000005c  brlid   r15, 136"},
+        {"return", "0x00001890  rtsd    r15, 8"},
+        {"load", "0x000000b0  lwi     r3, r0, 7188"},
+        {"store", "0x000018ec  swi     r19, r1, 44"},
+        {"storeByte", "0x00000df8  sbi     r3, r19, 24"},
+        {"imm", "0x00000db0  imm     4369"}
+    };
+}
@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
+import org.ancora.MicroblazeInterpreter.Parser.TraceLineParser;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses the lines of a trace, which are read before the measurements.
+ * Results are the time per line.
+ *
+ * @author Joao Bispo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Setup
+    public void setup() {
+        String[] traceLines = Workloads.traceLines(trace);
+        lines = new String[LINES];
+        for (int i = 0; i < LINES; i++) {
+            lines[i] = traceLines[i % traceLines.length];
+        }
+        parser = new TraceLineParser();
+        record = new TraceRecord();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void parseInstruction(Blackhole hole) {
+        for (int i = 0; i < LINES; i++) {
+            hole.consume(InstructionParser.parseInstruction(lines[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void parseRecord(Blackhole hole) {
+        for (int i = 0; i < LINES; i++) {
+            parser.parse(lines[i], record);
+            hole.consume(record.getOpcode());
+        }
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    @Param({Workloads.FDCT, Workloads.ADPCM_CODER})
+    private String trace;
+    private String[] lines;
+    private TraceLineParser parser;
+    private TraceRecord record;
+
+    // Definitions
+    private static final int LINES = 4096;
+}
@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.MappedTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs a complete trace in a new processor, configured with the default
+ * options of RunProcessor, with and without the fusion of instructions. The
+ * processor is created before each run, and is not measured.
+ *
+ * @author Joao Bispo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessorBenchmark {
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        processor = Workloads.newProcessor(
+                new MappedTraceMemory(Workloads.traceFile(trace)));
+        processor.setFusion(fusion);
+    }
+
+    @Benchmark
+    public int run() {
+        processor.run();
+        return processor.getClock().getLatency();
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    @Param({Workloads.FDCT, Workloads.AUTOCORRELATION, Workloads.ADPCM_CODER,
+        Workloads.ADPCM_DECODER})
+    private String trace;
+    @Param({"true", "false"})
+    private boolean fusion;
+    private MbProcessor processor;
+}
@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.MappedTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.LinkedTrace;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.ThreadedEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs a complete trace in a new processor, from a trace which is linked
+ * once per trial, with a ThreadedEngine, and from the trace file, with
+ * MbProcessor.run. The processor is created before each run, and is not
+ * measured; building the engine is measured, since each processor which
+ * runs a linked trace builds its own.
+ *
+ * @author Joao Bispo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreadedEngineBenchmark {
+
+    @Setup(Level.Trial)
+    public void link() {
+        linkedTrace = LinkedTrace.link(
+                new MappedTraceMemory(Workloads.traceFile(trace)));
+        if (linkedTrace == null) {
+            throw new IllegalStateException("Trace is too long to be linked ("
+                    + trace + ").");
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        // The trace file is only opened by runProcessor
+        processor = Workloads.newProcessor(
+                new MappedTraceMemory(Workloads.traceFile(trace)));
+    }
+
+    @Benchmark
+    public int runThreaded() {
+        new ThreadedEngine(processor, linkedTrace).run();
+        return processor.getClock().getLatency();
+    }
+
+    @Benchmark
+    public int runProcessor() {
+        processor.run();
+        return processor.getClock().getLatency();
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    @Param({Workloads.FDCT, Workloads.AUTOCORRELATION, Workloads.ADPCM_CODER,
+        Workloads.ADPCM_DECODER})
+    private String trace;
+    private LinkedTrace linkedTrace;
+    private MbProcessor processor;
+}
@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.InstructionMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.MappedTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.TraceMemory;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads a complete trace from the instruction memories, as lines and as
+ * decoded records.
+ *
+ * @author Joao Bispo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraceMemoryBenchmark {
+
+    @Setup
+    public void setup() {
+        record = new TraceRecord();
+    }
+
+    @Benchmark
+    public int lines() {
+        InstructionMemory memory = new TraceMemory(Workloads.traceFile(trace));
+        int numInstructions = 0;
+        while (memory.nextInstruction() != null) {
+            numInstructions++;
+        }
+        return numInstructions;
+    }
+
+    @Benchmark
+    public int records() {
+        return countRecords(new TraceMemory(Workloads.traceFile(trace)));
+    }
+
+    @Benchmark
+    public int mappedRecords() {
+        return countRecords(new MappedTraceMemory(Workloads.traceFile(trace)));
+    }
+
+    private int countRecords(InstructionMemory memory) {
+        int numInstructions = 0;
+        while (memory.nextInstruction(record)) {
+            numInstructions++;
+        }
+        memory.close();
+        return numInstructions;
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    @Param({Workloads.FDCT, Workloads.AUTOCORRELATION, Workloads.ADPCM_CODER,
+        Workloads.ADPCM_DECODER})
+    private String trace;
+    private TraceRecord record;
+}
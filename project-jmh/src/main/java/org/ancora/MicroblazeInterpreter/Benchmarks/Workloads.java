@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.Benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.ancora.MicroblazeInterpreter.Configuration.MbConfiguration;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.CachedSegments;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemoryPlus;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.UninitializedReadPolicy;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.UninitializedReads;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.InstructionMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.TraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.CycleClock;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFileArray;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SprFields;
+
+/**
+ * Workloads shared by the benchmarks: the traces in the run folder and
+ * processors configured as in RunProcessor, with the default options.
+ *
+ * @author Joao Bispo
+ */
+public class Workloads {
+
+    /**
+     * @param name the name of a trace in the traces folder
+     * @return the trace file
+     */
+    public static File traceFile(String name) {
+        File traceFile = new File(System.getProperty(TRACES_PROPERTY, TRACES_FOLDER), name);
+        if (!traceFile.isFile()) {
+            throw new IllegalStateException("Could not locate the trace file (" +
+                    traceFile.getAbsolutePath() + "). Run the benchmarks from " +
+                    "the run folder, or set -D" + TRACES_PROPERTY + ".");
+        }
+        return traceFile;
+    }
+
+    /**
+     * @param name the name of a trace in the traces folder
+     * @return the trace instructions of the trace, as in the file
+     */
+    public static String[] traceLines(String name) {
+        TraceMemory memory = new TraceMemory(traceFile(name));
+        List<String> lines = new ArrayList<String>();
+        String line = memory.nextInstruction();
+        while (line != null) {
+            lines.add(line);
+            line = memory.nextInstruction();
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    /**
+     * Creates a processor with the default options of RunProcessor. Reads
+     * of data which has not been written are counted.
+     *
+     * @param instructionMemory the trace to execute. Can be null, if the
+     * processor is only used to build instructions.
+     * @return
+     */
+    public static MbProcessor newProcessor(InstructionMemory instructionMemory) {
+        SpecialPurposeRegisters specialRegisters = new SprFields();
+        LockRegister lockRegister = new LockRegister();
+        UninitializedReads uninitializedReads =
+                new UninitializedReads(UninitializedReadPolicy.count);
+
+        return new MbProcessor(
+                instructionMemory,
+                specialRegisters,
+                new RegisterFileArray(),
+                lockRegister,
+                new CycleClock(lockRegister, specialRegisters),
+                new DataMemoryPlus(new CachedSegments(uninitializedReads)),
+                new MbConfiguration());
+    }
+
+    // Definitions
+    /**
+     * Traces in the run folder. Used as the values of the trace parameters.
+     */
+    public static final String FDCT = "fdct_trace_without_optimization.txt";
+    public static final String AUTOCORRELATION = "autocorrelation_trace_without_optimization.txt";
+    public static final String ADPCM_CODER = "adpcm-coder_trace_without_optimization.txt";
+    public static final String ADPCM_DECODER = "adpcm-decoder_trace_without_optimization.txt";
+    /**
+     * System property with the folder of the traces.
+     */
+    public static final String TRACES_PROPERTY = "microblaze.traces";
+    private static final String TRACES_FOLDER = "traces";
+}
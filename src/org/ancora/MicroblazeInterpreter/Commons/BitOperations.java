@@ -17,13 +17,16 @@
 
 package org.ancora.MicroblazeInterpreter.Commons;
 
-import org.ancora.jCommons.Console;
-import org.ancora.jCommons.DefaultConsole;
-
-
 /**
  * Contains static methods used in MicroBlaze instructions.
  *
+ * <p>The methods used by the instructions only use int arithmetic, and are
+ * branch-free except for the check of the value of writeBit. Arguments are
+ * only validated when the checked mode is enabled, with the system property
+ * CHECKED_PROPERTY set to true when the program starts
+ * (ex.: -Dmicroblaze.checked=true). Since CHECKED is a constant, the
+ * validation is removed by the compiler when it is disabled.
+ *
  * @author Joao Bispo
  */
 public class BitOperations {
@@ -38,32 +41,15 @@ public class BitOperations {
      * @return 1 if there is carry out, or 0 if not.
      */
     public static int getCarryOutAdd(int rA, int rB, int carry) {
-        if(carry != 0 && carry != 1) {
-            console.warn("getCarryOut: Carry is different than 0 or 1 ("+
-                    carry+")");
+        if(CHECKED) {
+            checkCarry("getCarryOutAdd", carry);
         }
 
-        //System.out.println("rA:"+Integer.toBinaryString(rA));
-        //System.out.println("rB:"+Integer.toBinaryString(rB));
-
-        // Extend operands to long and mask them
-        long lRa = rA & MASK_32_BITS;
-        long lRb = rB & MASK_32_BITS;
-        // Carry must be 0 or 1, it shouldn't need to be masked.
-        long lCarry = carry;
-
-
-        //System.out.println("lRa:"+Long.toBinaryString(lRa));
-        //System.out.println("lRb:"+Long.toBinaryString(lRb));
-
-        // Do the summation
-        long result = lRa + lRb + lCarry;
-
-        //System.out.println("Result:"+Long.toBinaryString(result));
-
-        // Get the carry bit
-        int carryOut = (int) ((result & MASK_BIT_33) >>> 32);
-        return carryOut;
+        // The carry out of the most significant bit is set if both operands
+        // have it set, or if one of them has it and the carry into the bit
+        // (bit 31 of the result, inverted) is set.
+        final int result = rA + rB + carry;
+        return ((rA & rB) | ((rA | rB) & ~result)) >>> 31;
     }
 
     /**
@@ -76,32 +62,29 @@ public class BitOperations {
      * @return 1 if there is carry out, or 0 if not.
      */
     public static int getCarryOutRsub(int rA, int rB, int carry) {
-        if(carry != 0 && carry != 1) {
-            console.warn("getCarryOut: Carry is different than 0 or 1 ("+
-                    carry+")");
+        if(CHECKED) {
+            checkCarry("getCarryOutRsub", carry);
         }
 
-        //System.out.println("rA:"+Integer.toBinaryString(rA));
-        //System.out.println("rB:"+Integer.toBinaryString(rB));
-
-        // Extend operands to long and mask them
-        long lRa = rA & MASK_32_BITS;
-        long lRb = rB & MASK_32_BITS;
-        // Carry must be 0 or 1, it shouldn't need to be masked.
-        long lCarry = carry;
-
-
-        //System.out.println("lRa:"+Long.toBinaryString(lRa));
-        //System.out.println("lRb:"+Long.toBinaryString(lRb));
-
-        // Do the summation
-        long result = lRb + ~lRa + lCarry;
-
-        //System.out.println("Result:"+Long.toBinaryString(result));
+        // Gives the same result as the previous version, which did the sum
+        // with longs: since ~rA was extended with ones, bit 32 of that sum is
+        // the inverse of the carry out of the 32-bit sum.
+        final int notRa = ~rA;
+        final int result = rB + notRa + carry;
+        return ~((notRa & rB) | ((notRa | rB) & ~result)) >>> 31;
+    }
 
-        // Get the carry bit
-        int carryOut = (int) ((result & MASK_BIT_33) >>> 32);
-        return carryOut;
+    /**
+     * Warns if the carry is not 0 or 1. Only used in the checked mode.
+     */
+    private static void checkCarry(String method, int carry) {
+        if(carry != 0 && carry != 1) {
+            WarningLog warnings = WarningLog.getLog();
+            if(warnings.accept(method)) {
+                warnings.warn(method + ": Carry is different than 0 or 1 ("+
+                        carry+")");
+            }
+        }
     }
 
     /**
@@ -126,10 +109,8 @@ public class BitOperations {
      * @return
      */
     public static boolean unsignedComp(int a, int b) {
-            // Unsigned Comparison
-            long longA = a & MASK_32_BITS;
-            long longB = b & MASK_32_BITS;
-            return longA > longB;
+            // Flipping the sign bit maps the unsigned order to the signed one
+            return (a ^ Integer.MIN_VALUE) > (b ^ Integer.MIN_VALUE);
     }
    /**
     * Sets a specific bit of an int.
@@ -165,19 +146,22 @@ public class BitOperations {
     * @param bit the bit to write
     * @param value 0 for clearing the bit, 1 for setting the bit
     * @param target the integer where the bit will be written
-    * @return the updated value of the integer
+    * @return the updated value of the integer, or target if value is not 0
+    * or 1 (only warned in checked mode)
     */
    public static int writeBit(int bit, int value, int target) {
-      if(value == 0) {
-         return clearBit(bit, target);
-      }
-      else if(value == 1) {
-         return setBit(bit, target);
-      }
-      else {
-         console.warn("writeBit: Value is not 1 or 0 ("+value+")");
+      if((value & ~MASK_BIT_1) != 0) {
+         if(CHECKED) {
+            WarningLog warnings = WarningLog.getLog();
+            if(warnings.accept("writeBit")) {
+               warnings.warn("writeBit: Value is not 1 or 0 ("+value+")");
+            }
+         }
          return target;
       }
+
+      final int mask = 1 << bit;
+      return (target & ~mask) | (value << bit);
    }
    
    /**
@@ -291,13 +275,18 @@ public class BitOperations {
 
    // INSTANCE VARIABLES
     // Definitions
+    /**
+     * System property which enables the validation of arguments.
+     */
+    public static final String CHECKED_PROPERTY = "microblaze.checked";
+    /**
+     * If true, arguments are validated and warnings are shown. Read once,
+     * when the class is loaded.
+     */
+    public static final boolean CHECKED = Boolean.getBoolean(CHECKED_PROPERTY);
     private static final long MASK_32_BITS = 0xFFFFFFFFL;
-    private static final long MASK_BIT_33 = 0x100000000L;
     private static final int MASK_BIT_1 = 0x1;
     private static final String ZERO = "0";
     private static final String HEX_PREFIX = "0x";
 
-    // Utilities
-    private static final Console console = DefaultConsole.getConsole();
-
 }
@@ -0,0 +1,493 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Commons;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * Writes warnings to a Console from a separate thread, so the code which
+ * warns (ex.: the execution of instructions) does not wait for the console.
+ *
+ * <p>Warnings are added to a lock-free queue, and a daemon thread writes the
+ * queued warnings in batches, FLUSH_INTERVAL_MILLIS after the first warning
+ * of the batch. The thread is only started by the first warning, sleeps while
+ * there are no warnings, and is stopped by close. Warnings which are still
+ * queued are written by flush, and when the JVM exits.
+ *
+ * <p>Each warning has a key, which identifies where it comes from, and
+ * optionally the address of the instruction which caused it. Code which
+ * warns first calls accept, and only builds the message if it returns true:
+ * <br>- Warnings with an address are only shown the first time the key
+ * appears with that address;
+ * <br>- Each key shows at most MESSAGES_PER_SECOND warnings per second.
+ * <p>Only the addresses of shown warnings are recorded, in a table of at
+ * most MAX_ADDRESSES addresses per key. When the table is full, warnings
+ * from new addresses are only rate limited.
+ * <p>Every occurrence is counted, and summary shows how many warnings of
+ * each key were not shown.
+ *
+ * <p>The code which warns uses getLog. Runs which must not share their
+ * counts (ex.: the traces of a batch) bind their own log with setLog.
+ *
+ * @author Joao Bispo
+ */
+public class WarningLog {
+
+    /**
+     * @param console where the warnings are written
+     */
+    public WarningLog(Console console) {
+        this.console = console;
+        queue = new ConcurrentLinkedQueue<Message>();
+        keys = new ConcurrentHashMap<String, KeyCounts>();
+        pending = new AtomicBoolean(false);
+        writer = null;
+    }
+
+    /**
+     * @return the log bound to the current thread by setLog, or the log
+     * shared by the interpreter, which writes to the DefaultConsole
+     */
+    public static WarningLog getLog() {
+        return currentLog.get();
+    }
+
+    /**
+     * Binds a log to the current thread, and to the threads it starts
+     * afterwards (ex.: the decoders of a PipelinedTraceMemory).
+     *
+     * @param warningLog the log of the run, or null to use the shared log
+     * again
+     */
+    public static void setLog(WarningLog warningLog) {
+        if (warningLog == null) {
+            currentLog.remove();
+        } else {
+            currentLog.set(warningLog);
+        }
+    }
+
+    /**
+     * Counts an occurrence of a warning caused by the instruction in the given
+     * address.
+     *
+     * @param key where the warning comes from (ex.: "lw")
+     * @param address address of the instruction
+     * @return true if the warning should be shown, false if it is repeated
+     * or the key has exceeded its rate. Threads which warn for the same new
+     * address at the same time can both show it.
+     */
+    public boolean accept(String key, int address) {
+        KeyCounts counts = getCounts(key);
+        counts.occurrences.incrementAndGet();
+        AddressSet addresses = counts.getAddresses();
+        if (addresses.contains(address) || !counts.acquire()) {
+            return false;
+        }
+
+        addresses.add(address);
+        return true;
+    }
+
+    /**
+     * Counts an occurrence of a warning which is not caused by a specific
+     * instruction. These warnings are only rate limited.
+     *
+     * @param key where the warning comes from
+     * @return true if the warning should be shown
+     */
+    public boolean accept(String key) {
+        KeyCounts counts = getCounts(key);
+        counts.occurrences.incrementAndGet();
+
+        return counts.acquire();
+    }
+
+    private KeyCounts getCounts(String key) {
+        KeyCounts counts = keys.get(key);
+        if (counts == null) {
+            KeyCounts newCounts = new KeyCounts();
+            counts = keys.putIfAbsent(key, newCounts);
+            if (counts == null) {
+                counts = newCounts;
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Queues a warning, written with Console.warn.
+     *
+     * @param message
+     */
+    public void warn(String message) {
+        queue.add(new Message(false, message));
+        signal();
+    }
+
+    /**
+     * Queues a continuation of the previous warning, written with
+     * Console.more.
+     *
+     * @param message
+     */
+    public void more(String message) {
+        queue.add(new Message(true, message));
+        signal();
+    }
+
+    /**
+     * Wakes the writer thread, if it is not already going to write, starting
+     * it if needed.
+     */
+    private void signal() {
+        if (!pending.compareAndSet(false, true)) {
+            return;
+        }
+
+        Thread thread = writer;
+        if (thread == null) {
+            thread = startWriter();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    private synchronized Thread startWriter() {
+        if (writer == null) {
+            Thread thread = new Thread(new Runnable() {
+
+                public void run() {
+                    write();
+                }
+            }, "WarningLog");
+            thread.setDaemon(true);
+            writer = thread;
+            thread.start();
+        }
+
+        return writer;
+    }
+
+    /**
+     * Loop of the writer thread, until close replaces it.
+     */
+    private void write() {
+        final Thread current = Thread.currentThread();
+        while (writer == current) {
+            if (!pending.get()) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            // Gives the run time to queue more warnings for the same batch
+            LockSupport.parkNanos(this, FLUSH_INTERVAL_NANOS);
+            pending.set(false);
+            flush();
+        }
+    }
+
+    /**
+     * Stops the writer thread and writes the queued warnings. Warnings queued
+     * afterwards start a new writer.
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            thread = writer;
+            writer = null;
+        }
+
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        pending.set(false);
+        flush();
+    }
+
+    /**
+     * Writes the queued warnings to the console. Called by the writer thread,
+     * and by code which is going to write to the console after the warnings.
+     */
+    public void flush() {
+        synchronized (console) {
+            Message message = queue.poll();
+            while (message != null) {
+                if (message.more) {
+                    console.more(message.text);
+                } else {
+                    console.warn(message.text);
+                }
+                message = queue.poll();
+            }
+        }
+    }
+
+    /**
+     * @param key
+     * @return how many times a warning with the given key occurred
+     */
+    public long getOccurrences(String key) {
+        KeyCounts counts = keys.get(key);
+        return counts == null ? 0 : counts.occurrences.get();
+    }
+
+    /**
+     * @param key
+     * @return how many warnings with the given key were shown
+     */
+    public long getShown(String key) {
+        KeyCounts counts = keys.get(key);
+        return counts == null ? 0 : counts.shown.get();
+    }
+
+    /**
+     * @return for each key with warnings which were not shown, the number of
+     * occurrences and of shown warnings, sorted by key. Empty if all the
+     * warnings were shown.
+     */
+    public String summary() {
+        List<String> sortedKeys = new ArrayList<String>(keys.keySet());
+        Collections.sort(sortedKeys);
+
+        StringBuilder builder = new StringBuilder();
+        for (String key : sortedKeys) {
+            KeyCounts counts = keys.get(key);
+            final long occurrences = counts.occurrences.get();
+            final long shown = counts.shown.get();
+            if (occurrences == shown) {
+                continue;
+            }
+
+            if (builder.length() == 0) {
+                builder.append("Repeated warnings which were not shown:\n");
+            }
+            builder.append(key).append(":").append(occurrences)
+                    .append(" warnings, ").append(shown).append(" shown\n");
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Counts of the warnings with the same key.
+     */
+    private static class KeyCounts {
+
+        public KeyCounts() {
+            occurrences = new AtomicLong();
+            shown = new AtomicLong();
+            addresses = null;
+            windowStart = System.nanoTime();
+            windowMessages = new AtomicInteger();
+        }
+
+        /**
+         * @return true if the key has not exceeded its rate. Windows which
+         * start at the same time in different threads can show a few
+         * warnings more than the rate.
+         */
+        boolean acquire() {
+            final long now = System.nanoTime();
+            if (now - windowStart > RATE_WINDOW_NANOS) {
+                windowStart = now;
+                windowMessages.set(0);
+            }
+            if (windowMessages.incrementAndGet() > MESSAGES_PER_SECOND) {
+                return false;
+            }
+
+            shown.incrementAndGet();
+            return true;
+        }
+
+        /**
+         * @return the addresses of the warnings shown, created by the first
+         * warning with an address
+         */
+        AddressSet getAddresses() {
+            AddressSet set = addresses;
+            if (set == null) {
+                synchronized (this) {
+                    if (addresses == null) {
+                        addresses = new AddressSet();
+                    }
+                    set = addresses;
+                }
+            }
+
+            return set;
+        }
+
+        final AtomicLong occurrences;
+        final AtomicLong shown;
+        volatile AddressSet addresses;
+        volatile long windowStart;
+        final AtomicInteger windowMessages;
+    }
+
+    /**
+     * Lock-free set of at most MAX_ADDRESSES addresses, with open addressing
+     * and linear probing. Entries hold the address in the low 32 bits and a
+     * set bit above them, so an empty slot (zero) is never a valid entry.
+     * Addresses are never removed.
+     */
+    private static class AddressSet {
+
+        public AddressSet() {
+            entries = new AtomicLongArray(ADDRESS_TABLE_SIZE);
+            size = new AtomicInteger();
+        }
+
+        boolean contains(int address) {
+            final long entry = entry(address);
+            int slot = slot(address);
+            for (int i = 0; i < ADDRESS_TABLE_SIZE; i++) {
+                final long current = entries.get(slot);
+                if (current == entry) {
+                    return true;
+                }
+                if (current == 0) {
+                    return false;
+                }
+                slot = (slot + 1) & ADDRESS_TABLE_MASK;
+            }
+
+            return false;
+        }
+
+        /**
+         * Adds the address, unless the set already has MAX_ADDRESSES
+         * addresses.
+         */
+        void add(int address) {
+            if (size.get() >= MAX_ADDRESSES) {
+                return;
+            }
+
+            final long entry = entry(address);
+            int slot = slot(address);
+            for (int i = 0; i < ADDRESS_TABLE_SIZE; i++) {
+                if (entries.compareAndSet(slot, 0, entry)) {
+                    size.incrementAndGet();
+                    return;
+                }
+                if (entries.get(slot) == entry) {
+                    return;
+                }
+                slot = (slot + 1) & ADDRESS_TABLE_MASK;
+            }
+        }
+
+        private static long entry(int address) {
+            return (address & MASK_32_BITS) | PRESENT_BIT;
+        }
+
+        private static int slot(int address) {
+            return (address * HASH_MULTIPLIER) >>> ADDRESS_TABLE_SHIFT;
+        }
+
+        private final AtomicLongArray entries;
+        private final AtomicInteger size;
+    }
+
+    private static class Message {
+
+        public Message(boolean more, String text) {
+            this.more = more;
+            this.text = text;
+        }
+
+        final boolean more;
+        final String text;
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private final Console console;
+    private final Queue<Message> queue;
+    private final ConcurrentMap<String, KeyCounts> keys;
+    /**
+     * True from the first queued warning until the writer takes the batch.
+     */
+    private final AtomicBoolean pending;
+    private volatile Thread writer;
+
+    // Definitions
+    /**
+     * Maximum number of warnings shown per key, in each second.
+     */
+    public static final int MESSAGES_PER_SECOND = 20;
+    public static final long FLUSH_INTERVAL_MILLIS = 10;
+    private static final long FLUSH_INTERVAL_NANOS = FLUSH_INTERVAL_MILLIS * 1000000L;
+    private static final long RATE_WINDOW_NANOS = 1000000000L;
+    /**
+     * Maximum number of addresses recorded per key.
+     */
+    public static final int MAX_ADDRESSES = 1024;
+    /**
+     * Twice MAX_ADDRESSES, so the table of addresses is at most half full.
+     */
+    private static final int ADDRESS_TABLE_BITS = 11;
+    private static final int ADDRESS_TABLE_SIZE = 1 << ADDRESS_TABLE_BITS;
+    private static final int ADDRESS_TABLE_MASK = ADDRESS_TABLE_SIZE - 1;
+    private static final int ADDRESS_TABLE_SHIFT = 32 - ADDRESS_TABLE_BITS;
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+    private static final long MASK_32_BITS = 0xFFFFFFFFL;
+    private static final long PRESENT_BIT = 1L << 32;
+    private static final WarningLog log = new WarningLog(DefaultConsole.getConsole());
+    private static final InheritableThreadLocal<WarningLog> currentLog =
+            new InheritableThreadLocal<WarningLog>() {
+
+        @Override
+        protected WarningLog initialValue() {
+            return log;
+        }
+    };
+
+    /**
+     * Writes the queued warnings when the JVM exits. Must come after the
+     * definition of log.
+     */
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+
+            public void run() {
+                log.flush();
+            }
+        }));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory;
+
+/**
+ * Transfers ranges of bytes between arrays and a DataMemory, one word at a
+ * time. Byte n of a word is in bits 8*n to 8*n+7, as in DataMemoryPlus.
+ *
+ * @author Joao Bispo
+ */
+class ByteRanges {
+
+    /**
+     * Loads length bytes from the memory, starting at byteAddress.
+     */
+    static void load(DataMemory memory, int byteAddress, byte[] bytes,
+            int offset, int length) {
+        int address = byteAddress;
+        final int end = offset + length;
+        int index = offset;
+        while (index < end) {
+            final int word = memory.loadWord(address);
+            // Bytes from the current position until the end of the word
+            int position = address & WORD_MASK;
+            while (position < WORD_BYTES && index < end) {
+                bytes[index] = (byte) (word >>> (position * BYTE_SIZE));
+                position++;
+                index++;
+                address++;
+            }
+        }
+    }
+
+    /**
+     * Stores length bytes in the memory, starting at byteAddress.
+     */
+    static void store(DataMemory memory, int byteAddress, byte[] bytes,
+            int offset, int length) {
+        int address = byteAddress;
+        final int end = offset + length;
+        int index = offset;
+        while (index < end) {
+            final int wordAddress = address;
+            int value = 0;
+            int mask = 0;
+            int position = address & WORD_MASK;
+            while (position < WORD_BYTES && index < end) {
+                final int shift = position * BYTE_SIZE;
+                value |= (bytes[index] & BYTE_MASK) << shift;
+                mask |= BYTE_MASK << shift;
+                position++;
+                index++;
+                address++;
+            }
+
+            memory.storeMasked(wordAddress, value, mask);
+        }
+    }
+
+    // Definitions
+    private static final int WORD_BYTES = 4;
+    private static final int WORD_MASK = WORD_BYTES - 1;
+    private static final int BYTE_SIZE = 8;
+    private static final int BYTE_MASK = 0xFF;
+}
@@ -18,12 +18,24 @@ package org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory;
 
 import java.util.HashMap;
 import java.util.Map;
-import javax.imageio.stream.MemoryCacheImageInputStream;
 import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
 
 /**
  * Memory with cache for a data memory made of MemorySegments.
  *
+ * <p>Segments are kept in a two-level radix table, indexed by the bits of the
+ * segment address: the higher bits select a table of segments, which is
+ * created on demand, and the lower bits select the segment in that table.
+ * In front of the table there is a small direct-mapped cache of the most
+ * recently used segments, so that programs which alternate between stack,
+ * globals and heap do not keep replacing a single cached segment. Looking up
+ * a segment which already exists never allocates.
+ *
+ * <p>A memory can be forked into independent copies (see fork). The copies
+ * share the segments which existed at the time of the fork, and a segment is
+ * only copied by the first memory which writes it. Each segment has an
+ * owner, and a memory only writes the segments it owns.
+ *
  * @author Joao
  */
 public class CachedSegments implements DataMemory {
@@ -43,33 +55,118 @@ public class CachedSegments implements DataMemory {
      * 
      */
     public CachedSegments() {
-        segments = new HashMap<Integer, MemorySegment>();
+        this(new UninitializedReads(UninitializedReadPolicy.warn));
+    }
+
+    /**
+     * @param uninitializedReads what to do when a word is read before being
+     * written. Shared by all the segments.
+     */
+    public CachedSegments(UninitializedReads uninitializedReads) {
+        this.uninitializedReads = uninitializedReads;
+        segments = new MemorySegment[DIRECTORY_SIZE][];
+        numSegments = 0;
+        owner = new Object();
 
         // Stats
         accesses = 0;
         misses = 0;
-        noSegment = 0;
+        copies = 0;
 
         // Cache
-        cachedAddress = -1;
+        cachedAddresses = new int[CACHE_SIZE];
+        cachedSegments = new MemorySegment[CACHE_SIZE];
+        // No segment has address -1, segment addresses only have 20 bits
+        for (int i = 0; i < CACHE_SIZE; i++) {
+            cachedAddresses[i] = -1;
+        }
 
     }
 
+    /**
+     * Reading a word which has not been written can write it (see
+     * UninitializedReadPolicy), so those reads use a segment owned by this
+     * memory.
+     */
     public int loadWord(int wordAddress) {
-        return getSegment(wordAddress).loadWord(wordAddress);
+        MemorySegment segment = getSegment(wordAddress);
+        if (segment.owner != owner && !segment.isWordWritten(wordAddress)) {
+            segment = copySegment(wordAddress);
+        }
+        return segment.loadWord(wordAddress);
     }
 
     public void storeWord(int wordAddress, int value) {
-        getSegment(wordAddress).storeWord(wordAddress, value);
+        getWritableSegment(wordAddress).storeWord(wordAddress, value);
     }
 
+    /**
+     * Does not create the segment of the address, if it does not exist.
+     */
     public boolean isWordWritten(int wordAddress) {
-        return getSegment(wordAddress).isWordWritten(wordAddress);
+        MemorySegment segment = findSegment(wordAddress);
+        return segment != null && segment.isWordWritten(wordAddress);
+    }
+
+    public void storeMasked(int wordAddress, int value, int mask) {
+        getWritableSegment(wordAddress).storeMasked(wordAddress, value, mask);
+    }
+
+    /**
+     * Loads the bytes of each segment in the range with a single segment
+     * lookup. As in loadWord, shared segments are copied before reading
+     * words which have not been written.
+     */
+    public void loadBytes(int byteAddress, byte[] bytes, int offset, int length) {
+        int address = byteAddress;
+        int index = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            final int size = Math.min(remaining, bytesToSegmentEnd(address));
+            MemorySegment segment = getSegment(address);
+            if (segment.owner != owner && !segment.isRangeWritten(address, size)) {
+                segment = copySegment(address);
+            }
+            segment.loadBytes(address, bytes, index, size);
+            address += size;
+            index += size;
+            remaining -= size;
+        }
+    }
+
+    /**
+     * Stores the bytes of each segment in the range with a single segment
+     * lookup.
+     */
+    public void storeBytes(int byteAddress, byte[] bytes, int offset, int length) {
+        int address = byteAddress;
+        int index = offset;
+        int remaining = length;
+        while (remaining > 0) {
+            final int size = Math.min(remaining, bytesToSegmentEnd(address));
+            getWritableSegment(address).storeBytes(address, bytes, index, size);
+            address += size;
+            index += size;
+            remaining -= size;
+        }
+    }
+
+    /**
+     * @param byteAddress
+     * @return the number of bytes from the address until the end of its
+     * segment
+     */
+    private int bytesToSegmentEnd(int byteAddress) {
+        return SEGMENT_BYTES - (byteAddress & (SEGMENT_BYTES - 1));
     }
 
     /**
      * Returns the segments corresponding to the given word-aligned address.
      * The segment is created, if it doesn't already exist.
+     *
+     * <p>If the memory has been forked, the segment can be shared with other
+     * memories and should only be read; getWritableSegment returns a segment
+     * which can be written.
      * 
      * @param segmentAddress
      * @return
@@ -77,19 +174,109 @@ public class CachedSegments implements DataMemory {
     public MemorySegment getSegment(int wordAddress) {
         final int segmentAddress = segmentAddress(wordAddress);
 
-        MemorySegment segment = getSegmentFromCache(segmentAddress);
-        //return segments.get(segmentAddress);
+        // Count access
+        accesses++;
 
-        // Check if segment exists
-        if (segment != null) {
-            return segment;
+        // Verify if segment is in cache
+        final int cacheIndex = segmentAddress & CACHE_MASK;
+        if (cachedAddresses[cacheIndex] == segmentAddress) {
+            return cachedSegments[cacheIndex];
         }
 
-        // Create segment and store it in table.
-        segment = new MemorySegment(SEGMENT_SIZE_POWER);
-        segments.put(segmentAddress, segment);
-        return getSegmentFromCache(segmentAddress);
+        // It is not in cache. Get it from the table, creating it if needed.
+        // There's no need to "store" the previously cached segment because
+        // writes in cached value is a reference.
+        MemorySegment segment = getSegmentFromTable(segmentAddress);
+        cachedAddresses[cacheIndex] = segmentAddress;
+        cachedSegments[cacheIndex] = segment;
+        misses++;
+        return segment;
+    }
 
+    /**
+     * Returns the segment corresponding to the given word-aligned address,
+     * without creating it or counting the access.
+     *
+     * @param wordAddress
+     * @return the segment, or null if it does not exist
+     */
+    private MemorySegment findSegment(int wordAddress) {
+        final int segmentAddress = segmentAddress(wordAddress);
+        final int cacheIndex = segmentAddress & CACHE_MASK;
+        if (cachedAddresses[cacheIndex] == segmentAddress) {
+            return cachedSegments[cacheIndex];
+        }
+
+        MemorySegment[] table = segments[segmentAddress >>> TABLE_POWER];
+        if (table == null) {
+            return null;
+        }
+        return table[segmentAddress & TABLE_MASK];
+    }
+
+    /**
+     * Returns the segment corresponding to the given word-aligned address,
+     * copying it first if it is shared with other memories.
+     *
+     * @param wordAddress
+     * @return a segment owned by this memory
+     */
+    public MemorySegment getWritableSegment(int wordAddress) {
+        MemorySegment segment = getSegment(wordAddress);
+        if (segment.owner != owner) {
+            segment = copySegment(wordAddress);
+        }
+
+        return segment;
+    }
+
+    /**
+     * Replaces the segment of the given address, in the table and in the
+     * cache, with a copy owned by this memory. The segment must be in the
+     * cache (see getSegment).
+     *
+     * @param wordAddress
+     * @return the copy
+     */
+    private MemorySegment copySegment(int wordAddress) {
+        final int segmentAddress = segmentAddress(wordAddress);
+        final int cacheIndex = segmentAddress & CACHE_MASK;
+
+        MemorySegment copy = new MemorySegment(cachedSegments[cacheIndex],
+                uninitializedReads);
+        copy.owner = owner;
+        segments[segmentAddress >>> TABLE_POWER][segmentAddress & TABLE_MASK] = copy;
+        cachedSegments[cacheIndex] = copy;
+        copies++;
+
+        return copy;
+    }
+
+    /**
+     * Creates a copy of this memory, which shares the current segments with
+     * this memory. Forking copies the tables of segments; each segment is
+     * copied by the first memory which writes it, this one or the fork.
+     *
+     * <p>Memories which share segments can be used by different threads,
+     * since shared segments are never written.
+     *
+     * @param uninitializedReads what to do when a word is read before being
+     * written in the fork
+     * @return the fork
+     */
+    public CachedSegments fork(UninitializedReads uninitializedReads) {
+        CachedSegments fork = new CachedSegments(uninitializedReads);
+        for (int directoryIndex = 0; directoryIndex < DIRECTORY_SIZE; directoryIndex++) {
+            if (segments[directoryIndex] != null) {
+                fork.segments[directoryIndex] = segments[directoryIndex].clone();
+            }
+        }
+        fork.numSegments = numSegments;
+
+        // The current segments are now shared; this memory copies them too
+        owner = new Object();
+
+        return fork;
     }
 
     /**
@@ -103,45 +290,76 @@ public class CachedSegments implements DataMemory {
     }
 
     /**
-     * Returns a segment.
+     * Returns a segment from the radix table. The segment is created, if it
+     * doesn't already exist.
      *
      * @param segmentAddress
      * @return
      */
-    private MemorySegment getSegmentFromCache(int segmentAddress) {
-        // Count access
-        accesses++;
-
-        // Verify if segment is in cache
-        if (cachedAddress == segmentAddress) {
-            return cachedSegment;
+    private MemorySegment getSegmentFromTable(int segmentAddress) {
+        final int directoryIndex = segmentAddress >>> TABLE_POWER;
+        final int tableIndex = segmentAddress & TABLE_MASK;
+
+        MemorySegment[] table = segments[directoryIndex];
+        if (table == null) {
+            table = new MemorySegment[TABLE_SIZE];
+            segments[directoryIndex] = table;
         }
 
-        // It is not in cache. Verify if segment exists
-        MemorySegment segment = segments.get(segmentAddress);
-
+        MemorySegment segment = table[tableIndex];
         if (segment == null) {
-            noSegment++;
-            return segment;
+            segment = new MemorySegment(SEGMENT_SIZE_POWER, uninitializedReads);
+            segment.owner = owner;
+            table[tableIndex] = segment;
+            numSegments++;
         }
 
-        // Cache the new segment. There's no need to "store" the previously
-        // cached segment because writes in cached value is a reference.
-        cachedAddress = segmentAddress;
-        cachedSegment = segment;
-        misses++;
         return segment;
     }
 
+    public UninitializedReads getUninitializedReads() {
+        return uninitializedReads;
+    }
+
+    public long getAccesses() {
+        return accesses;
+    }
+
+    /**
+     * @return how many accesses did not find the segment in the cache,
+     * including the ones which created a segment.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of created segments.
+     */
+    public int getNumSegments() {
+        return numSegments;
+    }
+
+    /**
+     * @return how many shared segments were copied by this memory
+     */
+    public long getCopies() {
+        return copies;
+    }
+
     public String stats() {
         StringBuilder builder = new StringBuilder(100);
 
-        float hitrate = (float) (accesses - misses - noSegment) / (float) (accesses);
+        final long hits = accesses - misses;
+        float hitrate = (float) hits / (float) (accesses);
         hitrate *= 100;
 
         builder.append("Total Acesses:" + accesses + "\n");
+        builder.append("Cache hits:" + hits + "\n");
+        builder.append("Cache misses:" + misses + "\n");
         builder.append("Hit-rate:" + hitrate + "\n");
-        builder.append("Number of created segments:" + segments.size() + "\n");
+        builder.append("Number of created segments:" + numSegments + "\n");
+        builder.append("Copied segments:" + copies + "\n");
 
         return builder.toString();
     }
@@ -196,9 +414,19 @@ public class CachedSegments implements DataMemory {
     private Map<Integer, int[]> getWrittenWords() {
         Map<Integer, int[]> words = new HashMap<Integer, int[]>();
 
-        for (Integer key : segments.keySet()) {
-            MemorySegment seg = segments.get(key);
-            words.put(key, seg.writtenWordAddresses());
+        for (int directoryIndex = 0; directoryIndex < DIRECTORY_SIZE; directoryIndex++) {
+            MemorySegment[] table = segments[directoryIndex];
+            if (table == null) {
+                continue;
+            }
+
+            for (int tableIndex = 0; tableIndex < TABLE_SIZE; tableIndex++) {
+                MemorySegment seg = table[tableIndex];
+                if (seg != null) {
+                    int key = (directoryIndex << TABLE_POWER) | tableIndex;
+                    words.put(key, seg.writtenWordAddresses());
+                }
+            }
         }
 
         return words;
@@ -220,18 +448,48 @@ public class CachedSegments implements DataMemory {
     }
     //INSTANCE VARIABLES
     // State
-    private final Map<Integer, MemorySegment> segments;
+    /**
+     * Radix table, indexed by the higher and then by the lower bits of the
+     * segment address.
+     */
+    private final MemorySegment[][] segments;
+    private int numSegments;
+    private final UninitializedReads uninitializedReads;
+    /**
+     * Owner of the segments which this memory can write. Replaced when the
+     * memory is forked.
+     */
+    private Object owner;
     // Stats
-    private int accesses;
-    private int misses;
-    private int noSegment;
+    private long accesses;
+    private long misses;
+    private long copies;
     // Cache
-    private int cachedAddress;
-    private MemorySegment cachedSegment;
+    private final int[] cachedAddresses;
+    private final MemorySegment[] cachedSegments;
     //Constants
     /**
      * Exponent of a base two power. Size of the segment, in words.
      */
-    public final int SEGMENT_SIZE_POWER = 10;
-    private final int INT_SIZE_BITS = 32;
+    public static final int SEGMENT_SIZE_POWER = 10;
+    private static final int INT_SIZE_BITS = 32;
+    private static final int SEGMENT_BYTES = 1 << (SEGMENT_SIZE_POWER + MemorySegment.WORD_POWER);
+    /**
+     * Number of bits of a segment address.
+     */
+    private static final int SEGMENT_ADDRESS_BITS =
+            INT_SIZE_BITS - SEGMENT_SIZE_POWER - MemorySegment.WORD_POWER;
+    /**
+     * Exponent of a base two power. Number of segments in each table of the
+     * second level.
+     */
+    private static final int TABLE_POWER = SEGMENT_ADDRESS_BITS / 2;
+    private static final int TABLE_SIZE = 1 << TABLE_POWER;
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+    private static final int DIRECTORY_SIZE = 1 << (SEGMENT_ADDRESS_BITS - TABLE_POWER);
+    /**
+     * Number of entries of the segment cache. Must be a power of two.
+     */
+    private static final int CACHE_SIZE = 8;
+    private static final int CACHE_MASK = CACHE_SIZE - 1;
 }
@@ -77,5 +77,43 @@ public interface DataMemory {
      * @return
      */
     public boolean isWordWritten(int wordAddress);
+
+   /**
+    * Replaces the bits selected by mask, in the word aligned memory location
+    * indicated by wordAddress, with the corresponding bits of value. The
+    * other bits of the word are kept, or are zero if the word has not been
+    * written. The word is marked as written.
+    *
+    * <p>Used for storing bytes and halfwords with a single access to the
+    * memory.
+    *
+    * @param wordAddress a byte-addressed, word-aligned memory location
+    * @param value
+    * @param mask the bits of the word which are written
+    */
+   public void storeMasked(int wordAddress, int value, int mask);
+
+   /**
+    * Loads length bytes, starting at byteAddress, into the array. Byte n of a
+    * word is in bits 8*n to 8*n+7 (see DataMemoryPlus).
+    *
+    * <p>If a position has not been written yet, a warning is shown.
+    *
+    * @param byteAddress a byte-addressed memory location
+    * @param bytes
+    * @param offset first position of the array which is written
+    * @param length number of bytes
+    */
+   public void loadBytes(int byteAddress, byte[] bytes, int offset, int length);
+
+   /**
+    * Stores length bytes of the array, starting at byteAddress.
+    *
+    * @param byteAddress a byte-addressed memory location
+    * @param bytes
+    * @param offset first position of the array which is read
+    * @param length number of bytes
+    */
+   public void storeBytes(int byteAddress, byte[] bytes, int offset, int length);
     
 }
@@ -17,8 +17,6 @@
 
 package org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory;
 
-import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
-
 /**
  * Adds byte and halfword operations to a DataMemory object.
  *
@@ -66,21 +64,13 @@ public class DataMemoryPlus implements DataMemory {
     * @param value
     */
    public void storeHalfword(int halfwordAddress, int value) {
-       int word = 0;
-
-       // Check if word has been written
-       if(dataMemory.isWordWritten(halfwordAddress)) {
-           word = dataMemory.loadWord(halfwordAddress);
-       }
-
        // Extract which halfword
        final int offset = (halfwordAddress >>> 1) & MASK_1_BIT;
        final int position = offset * HALFWORD_SIZE;
 
-       final int finalWord = BitOperations.writeBits(position, HALFWORD_SIZE, value, word);
-
-       // Store word
-       dataMemory.storeWord(halfwordAddress, finalWord);
+       // Store halfword, keeping the rest of the word
+       dataMemory.storeMasked(halfwordAddress, value << position,
+               MASK_16_BITS << position);
    }
 
    /**
@@ -118,21 +108,13 @@ public class DataMemoryPlus implements DataMemory {
     * @param value
     */
    public void storeByte(int byteAddress, int value) {
-       int word = 0;
-
-       // Check if word has been written
-       if(dataMemory.isWordWritten(byteAddress)) {
-           word = dataMemory.loadWord(byteAddress);
-       }
-
-       // Extract which halfword
+       // Extract which byte
        final int offset = byteAddress  & MASK_2_BITS;
        final int position = offset * BYTE_SIZE;
 
-       final int finalWord = BitOperations.writeBits(position, BYTE_SIZE, value, word);
-
-       // Store word
-        dataMemory.storeWord(byteAddress, finalWord);
+       // Store byte, keeping the rest of the word
+       dataMemory.storeMasked(byteAddress, value << position,
+               MASK_8_BITS << position);
     }
 
        public int loadWord(int wordAddress) {
@@ -151,6 +133,18 @@ public class DataMemoryPlus implements DataMemory {
         return dataMemory.isWordWritten(wordAddress);
     }
 
+    public void storeMasked(int wordAddress, int value, int mask) {
+        dataMemory.storeMasked(wordAddress, value, mask);
+    }
+
+    public void loadBytes(int byteAddress, byte[] bytes, int offset, int length) {
+        dataMemory.loadBytes(byteAddress, bytes, offset, length);
+    }
+
+    public void storeBytes(int byteAddress, byte[] bytes, int offset, int length) {
+        dataMemory.storeBytes(byteAddress, bytes, offset, length);
+    }
+
     // INSTANCE VARIABLES
     // State
     private final DataMemory dataMemory;
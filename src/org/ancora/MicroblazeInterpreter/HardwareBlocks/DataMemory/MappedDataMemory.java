@@ -0,0 +1,376 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * Data memory which keeps the words outside of the Java heap, in a sparse
+ * scratch file mapped in memory.
+ *
+ * <p>The file covers the 4 GB address space, followed by a bitmap with one
+ * bit per word which indicates if the word has been written. The operating
+ * system only allocates the pages of the file which are written, so the
+ * memory used grows with the footprint of the program, while the heap only
+ * keeps a fixed number of buffers and a small set with the pages of the
+ * bitmap which have been written.
+ *
+ * <p>All the file is mapped when the memory is created, which needs a 64-bit
+ * virtual machine. The scratch file is deleted as soon as it is mapped,
+ * when the operating system allows it. The operating system only frees
+ * the file when it is unmapped, so memories which are no longer needed must
+ * be closed, or else the mappings and the file are only released when the
+ * virtual machine exits.
+ *
+ * @author Joao Bispo
+ */
+public class MappedDataMemory implements DataMemory {
+
+    /**
+     * Creates a memory backed by a temporary scratch file, which warns about
+     * uninitialized reads.
+     *
+     * @return the new memory, or null if the scratch file could not be
+     * created or mapped
+     */
+    public static MappedDataMemory newInstance() {
+        return newInstance(new UninitializedReads(UninitializedReadPolicy.warn));
+    }
+
+    /**
+     * Creates a memory backed by a temporary scratch file.
+     *
+     * @param uninitializedReads what to do when a word is read before being
+     * written
+     * @return the new memory, or null if the scratch file could not be
+     * created or mapped
+     */
+    public static MappedDataMemory newInstance(UninitializedReads uninitializedReads) {
+        File scratchFile;
+        try {
+            scratchFile = File.createTempFile(SCRATCH_PREFIX, SCRATCH_SUFFIX);
+        } catch (IOException ex) {
+            DefaultConsole.getConsole().warn("newInstance: IOException while " +
+                    "trying to create the scratch file!");
+            Logger.getLogger(MappedDataMemory.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        }
+
+        return newInstance(scratchFile, uninitializedReads);
+    }
+
+    /**
+     * Creates a memory backed by the given scratch file. Previous contents of
+     * the file are lost.
+     *
+     * @param scratchFile
+     * @param uninitializedReads what to do when a word is read before being
+     * written
+     * @return the new memory, or null if the scratch file could not be
+     * created or mapped
+     */
+    public static MappedDataMemory newInstance(File scratchFile,
+            UninitializedReads uninitializedReads) {
+        ByteBuffer[] chunks = new ByteBuffer[NUM_CHUNKS];
+        ByteBuffer bitmap;
+
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(scratchFile, "rw");
+            // Discard previous contents, the file must be sparse
+            file.setLength(0);
+            file.setLength(FILE_SIZE);
+
+            FileChannel channel = file.getChannel();
+            for (int i = 0; i < NUM_CHUNKS; i++) {
+                chunks[i] = map(channel, (long) i * CHUNK_SIZE, CHUNK_SIZE);
+            }
+            bitmap = map(channel, MEMORY_SIZE, BITMAP_SIZE);
+        } catch (IOException ex) {
+            DefaultConsole.getConsole().warn("newInstance: IOException while " +
+                    "trying to map the scratch file! (" +
+                    scratchFile.getAbsolutePath() + ")");
+            Logger.getLogger(MappedDataMemory.class.getName()).log(Level.SEVERE, null, ex);
+            close(file);
+            scratchFile.delete();
+            return null;
+        }
+
+        // Mappings stay valid after the file is closed
+        close(file);
+        if (!scratchFile.delete()) {
+            scratchFile.deleteOnExit();
+        }
+
+        return new MappedDataMemory(chunks, bitmap, uninitializedReads, scratchFile);
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, int size)
+            throws IOException {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        buffer.order(ByteOrder.nativeOrder());
+        return buffer;
+    }
+
+    private static void close(RandomAccessFile file) {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            file.close();
+        } catch (IOException ex) {
+            Logger.getLogger(MappedDataMemory.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private MappedDataMemory(ByteBuffer[] chunks, ByteBuffer bitmap,
+            UninitializedReads uninitializedReads, File scratchFile) {
+        this.chunks = chunks;
+        this.uninitializedReads = uninitializedReads;
+        this.bitmap = bitmap;
+        this.scratchFile = scratchFile;
+        writtenPages = new BitSet(BITMAP_SIZE >>> PAGE_POWER);
+    }
+
+    /**
+     * Unmaps the address space and the bitmap, so the operating system can
+     * free the scratch file, and deletes the file if it still exists. The
+     * memory cannot be used afterwards. Does nothing if the memory is already
+     * closed.
+     *
+     * <p>If the buffers cannot be unmapped explicitly in this virtual
+     * machine, they are unmapped when they are garbage collected.
+     */
+    public void close() {
+        if (chunks == null) {
+            return;
+        }
+
+        ByteBuffer[] oldChunks = chunks;
+        ByteBuffer oldBitmap = bitmap;
+        // Accesses after close fail with an exception, instead of reading
+        // unmapped memory
+        chunks = null;
+        bitmap = null;
+        writtenPages.clear();
+
+        for (int i = 0; i < oldChunks.length; i++) {
+            unmap(oldChunks[i]);
+            oldChunks[i] = null;
+        }
+        unmap(oldBitmap);
+
+        if (scratchFile.exists() && !scratchFile.delete()) {
+            console.warn("close: Could not delete the scratch file! (" +
+                    scratchFile.getAbsolutePath() + ")");
+        }
+    }
+
+    /**
+     * Releases a mapped buffer without waiting for the garbage collector,
+     * with Unsafe.invokeCleaner (Java 9 and later) or with the cleaner of
+     * the buffer (Java 8 and earlier).
+     *
+     * @param buffer a mapped buffer which is no longer used
+     */
+    private static void unmap(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            try {
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException ex) {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception ex) {
+            // Released by the garbage collector
+            Logger.getLogger(MappedDataMemory.class.getName()).log(Level.FINE, null, ex);
+        }
+    }
+
+    public int loadWord(int wordAddress) {
+        if (!isWordWritten(wordAddress)) {
+            if (uninitializedReads.read(wordAddress)) {
+                storeWord(wordAddress, 0);
+            }
+            return 0;
+        }
+
+        return chunks[wordAddress >>> CHUNK_POWER].getInt(chunkOffset(wordAddress));
+    }
+
+    public void storeWord(int wordAddress, int value) {
+        chunks[wordAddress >>> CHUNK_POWER].putInt(chunkOffset(wordAddress), value);
+        markWritten(wordAddress);
+    }
+
+    public void storeMasked(int wordAddress, int value, int mask) {
+        final ByteBuffer chunk = chunks[wordAddress >>> CHUNK_POWER];
+        final int offset = chunkOffset(wordAddress);
+
+        // Words which have not been written are zero
+        chunk.putInt(offset, (chunk.getInt(offset) & ~mask) | (value & mask));
+        markWritten(wordAddress);
+    }
+
+    private void markWritten(int wordAddress) {
+        final int word = wordAddress >>> WORD_POWER;
+        final int bitmapOffset = bitmapOffset(word);
+        final int bits = bitmap.getInt(bitmapOffset);
+        final int mask = 1 << (word & INT_MASK);
+        if ((bits & mask) == 0) {
+            bitmap.putInt(bitmapOffset, bits | mask);
+            writtenPages.set(bitmapOffset >>> PAGE_POWER);
+        }
+    }
+
+    public void loadBytes(int byteAddress, byte[] bytes, int offset, int length) {
+        ByteRanges.load(this, byteAddress, bytes, offset, length);
+    }
+
+    public void storeBytes(int byteAddress, byte[] bytes, int offset, int length) {
+        ByteRanges.store(this, byteAddress, bytes, offset, length);
+    }
+
+    public UninitializedReads getUninitializedReads() {
+        return uninitializedReads;
+    }
+
+    public boolean isWordWritten(int wordAddress) {
+        final int word = wordAddress >>> WORD_POWER;
+        return ((bitmap.getInt(bitmapOffset(word)) >>> (word & INT_MASK)) & 1) != 0;
+    }
+
+    /**
+     * @return an array with the word-aligned addresses which have been
+     * written, in ascending order.
+     */
+    public int[] writtenWordAddresses() {
+        // Count written words
+        int numWords = 0;
+        for (int page = writtenPages.nextSetBit(0); page >= 0; page = writtenPages.nextSetBit(page + 1)) {
+            final int end = (page + 1) << PAGE_POWER;
+            for (int offset = page << PAGE_POWER; offset < end; offset += INT_BYTES) {
+                numWords += Integer.bitCount(bitmap.getInt(offset));
+            }
+        }
+
+        int[] addresses = new int[numWords];
+        int index = 0;
+        for (int page = writtenPages.nextSetBit(0); page >= 0; page = writtenPages.nextSetBit(page + 1)) {
+            final int end = (page + 1) << PAGE_POWER;
+            for (int offset = page << PAGE_POWER; offset < end; offset += INT_BYTES) {
+                int bits = bitmap.getInt(offset);
+                final int firstWord = (offset / INT_BYTES) << INT_POWER;
+                while (bits != 0) {
+                    final int bit = Integer.numberOfTrailingZeros(bits);
+                    addresses[index] = (firstWord + bit) << WORD_POWER;
+                    index++;
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        return addresses;
+    }
+
+    /**
+     * @param wordAddress
+     * @return the word-aligned offset of the address in its chunk
+     */
+    private static int chunkOffset(int wordAddress) {
+        return wordAddress & CHUNK_MASK & ~WORD_MASK;
+    }
+
+    /**
+     * @param word index of a word in the address space
+     * @return the offset of the int of the bitmap which has the bit of the
+     * word
+     */
+    private static int bitmapOffset(int word) {
+        return (word >>> INT_POWER) * INT_BYTES;
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    /**
+     * The address space, divided in chunks of 2^CHUNK_POWER bytes. Null
+     * after close.
+     */
+    private ByteBuffer[] chunks;
+    /**
+     * One bit for each word of the address space. Null after close.
+     */
+    private ByteBuffer bitmap;
+    /**
+     * Pages of the bitmap which have bits set.
+     */
+    private final BitSet writtenPages;
+    private final UninitializedReads uninitializedReads;
+    private final File scratchFile;
+
+    // Utilities
+    private final Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    private static final int WORD_POWER = MemorySegment.WORD_POWER;
+    private static final int WORD_MASK = (1 << WORD_POWER) - 1;
+    /**
+     * Exponent of a base two power. Size of each mapping of the address
+     * space, in bytes. Mappings are limited to 2 GB.
+     */
+    private static final int CHUNK_POWER = 28;
+    private static final int CHUNK_SIZE = 1 << CHUNK_POWER;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int NUM_CHUNKS = 1 << (32 - CHUNK_POWER);
+    private static final long MEMORY_SIZE = 1L << 32;
+    /**
+     * Exponent of a base two power. Number of bits in an int.
+     */
+    private static final int INT_POWER = 5;
+    private static final int INT_MASK = (1 << INT_POWER) - 1;
+    private static final int INT_BYTES = 4;
+    private static final int BITMAP_SIZE = (int) (MEMORY_SIZE >>> WORD_POWER >>> 3);
+    private static final long FILE_SIZE = MEMORY_SIZE + BITMAP_SIZE;
+    /**
+     * Exponent of a base two power. Size of the pages of the bitmap which
+     * are tracked in writtenPages, in bytes.
+     */
+    private static final int PAGE_POWER = 12;
+    private static final String SCRATCH_PREFIX = "dataMemory";
+    private static final String SCRATCH_SUFFIX = ".tmp";
+}
@@ -18,9 +18,6 @@
 package org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory;
 
 import java.util.BitSet;
-import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
-import org.ancora.jCommons.Console;
-import org.ancora.jCommons.DefaultConsole;
 
 /**
  * Segment of byte-addressed memory. Memory ranges from 0 to 2^sizePower - 1.
@@ -35,11 +32,40 @@ public class MemorySegment implements DataMemory {
      * @param sizePower
      */
    public MemorySegment(int sizePower) {
+        this(sizePower, new UninitializedReads(UninitializedReadPolicy.warn));
+   }
+
+    /**
+     * Creates a byte-addressed memory with 2^sizePower 32-bit words.
+     *
+     * @param sizePower
+     * @param uninitializedReads what to do when a word is read before being
+     * written
+     */
+   public MemorySegment(int sizePower, UninitializedReads uninitializedReads) {
+        this.uninitializedReads = uninitializedReads;
         int totalSize = (int) Math.pow(BASE_2, sizePower);
 
         words = new int[totalSize];
         isWritten = new BitSet(totalSize);
         this.sizePower = sizePower;
+        owner = null;
+   }
+
+    /**
+     * Creates a copy of a segment, which is written independently of the
+     * original.
+     *
+     * @param segment
+     * @param uninitializedReads what to do when a word of the copy is read
+     * before being written
+     */
+   public MemorySegment(MemorySegment segment, UninitializedReads uninitializedReads) {
+        this.uninitializedReads = uninitializedReads;
+        words = segment.words.clone();
+        isWritten = (BitSet) segment.isWritten.clone();
+        sizePower = segment.sizePower;
+        owner = null;
    }
 
 
@@ -49,13 +75,9 @@ public class MemorySegment implements DataMemory {
         
 
         if(!isWritten.get(index)) {
-            String hexAddress = Integer.toHexString(wordAddress);
-            hexAddress = BitOperations.padHexString(hexAddress, HEX_STRING_SIZE);
-            console.warn("loadWord: Trying to read from a memory position which " +
-                    "has not been written ("+hexAddress+")");
-            console.more("Writing a zero to prevent more warnings.");
-
-            storeWord(wordAddress, 0);
+            if(uninitializedReads.read(wordAddress)) {
+                storeWord(wordAddress, 0);
+            }
             return 0;
         }
 
@@ -79,6 +101,22 @@ public class MemorySegment implements DataMemory {
         isWritten.set(index);
    }
 
+   public void storeMasked(int wordAddress, int value, int mask) {
+        final int index = arrayIndex(wordAddress);
+
+        // Words which have not been written are zero
+        words[index] = (words[index] & ~mask) | (value & mask);
+        isWritten.set(index);
+   }
+
+   public void loadBytes(int byteAddress, byte[] bytes, int offset, int length) {
+        ByteRanges.load(this, byteAddress, bytes, offset, length);
+   }
+
+   public void storeBytes(int byteAddress, byte[] bytes, int offset, int length) {
+        ByteRanges.store(this, byteAddress, bytes, offset, length);
+   }
+
 
 
 
@@ -103,6 +141,18 @@ public class MemorySegment implements DataMemory {
         return isWritten.get(index);
     }
 
+    /**
+     * @param byteAddress
+     * @param length number of bytes, which must all be inside the segment
+     * @return true if all the words with bytes in the range have been
+     * written
+     */
+    boolean isRangeWritten(int byteAddress, int length) {
+        final int first = arrayIndex(byteAddress);
+        final int last = arrayIndex(byteAddress + length - 1);
+        return isWritten.nextClearBit(first) > last;
+    }
+
    /**
     * Transforms word-aligned addresses in indexes for accessing the array.
     * 
@@ -134,6 +184,12 @@ public class MemorySegment implements DataMemory {
     private final int[] words;
     private final BitSet isWritten;
     private final int sizePower;
+    private final UninitializedReads uninitializedReads;
+    /**
+     * The memory which can write this segment, when the segment is shared by
+     * memories forked from each other (see CachedSegments.fork).
+     */
+    Object owner;
 
     // Constants
     /**
@@ -143,10 +199,6 @@ public class MemorySegment implements DataMemory {
 
     private final int BASE_2 = 2;
     private final int INT_SIZE = 32;
-    private final int HEX_STRING_SIZE = 8;
-
-    // Utilities
-    private final Console console = DefaultConsole.getConsole();
 
 
 
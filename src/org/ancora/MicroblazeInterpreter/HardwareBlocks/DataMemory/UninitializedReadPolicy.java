@@ -0,0 +1,46 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory;
+
+/**
+ * What to do when a word of the data memory is read before being written.
+ * Traces usually start in the middle of a program, so these reads are
+ * common and are not necessarily an error.
+ *
+ * @author Joao Bispo
+ */
+public enum UninitializedReadPolicy {
+
+    /**
+     * Shows a warning and writes a zero in the word, so that the same word
+     * is only reported once.
+     */
+    warn,
+    /**
+     * Same as warn, without showing warnings. The reads are only counted.
+     */
+    count,
+    /**
+     * Returns zero without writing the word. Every read of the word is
+     * counted.
+     */
+    zero,
+    /**
+     * Throws an IllegalStateException.
+     */
+    fail;
+}
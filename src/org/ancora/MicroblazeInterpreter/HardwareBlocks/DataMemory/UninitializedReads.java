@@ -0,0 +1,183 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory;
+
+import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
+import org.ancora.MicroblazeInterpreter.Commons.WarningLog;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.MicroblazeInterpreter.Support.NumberCounter;
+
+/**
+ * Applies an UninitializedReadPolicy to the reads of words which have not
+ * been written, and counts them by segment of the memory and by address of
+ * the instruction which did the read.
+ *
+ * <p>Data memories only call this class when a read is uninitialized, so
+ * there is no cost for the other reads. Only the warn policy formats
+ * Strings, and only for the warnings accepted by the WarningLog (one per
+ * instruction address).
+ *
+ * @author Joao Bispo
+ */
+public class UninitializedReads {
+
+    public UninitializedReads(UninitializedReadPolicy policy) {
+        this.policy = policy;
+        total = 0;
+        bySegment = new NumberCounter();
+        byInstruction = new NumberCounter();
+        currentInstruction = null;
+    }
+
+    /**
+     * The address of the instruction which does an uninitialized read is
+     * taken from the given record, when the read happens.
+     *
+     * @param currentInstruction the record with the instruction being
+     * executed by the processor
+     */
+    public void setCurrentInstruction(TraceRecord currentInstruction) {
+        this.currentInstruction = currentInstruction;
+    }
+
+    /**
+     * Counts a read from a word which has not been written, and applies the
+     * policy.
+     *
+     * @param wordAddress a byte-addressed, word-aligned memory location
+     * @return true if a zero should be written in the word, false if the
+     * word should be kept as not written
+     * @throws IllegalStateException if the policy is fail
+     */
+    public boolean read(int wordAddress) {
+        total++;
+        bySegment.addInt(wordAddress >>> SEGMENT_POWER);
+        if (currentInstruction != null) {
+            byInstruction.addInt(currentInstruction.getAddress());
+        }
+
+        switch (policy) {
+            case warn:
+                boolean show = currentInstruction != null
+                        ? warnings.accept("loadWord", currentInstruction.getAddress())
+                        : warnings.accept("loadWord");
+                if (show) {
+                    String hexAddress = Integer.toHexString(wordAddress);
+                    hexAddress = BitOperations.padHexString(hexAddress, HEX_STRING_SIZE);
+                    warnings.warn("loadWord: Trying to read from a memory position which " +
+                            "has not been written (" + hexAddress + ")");
+                    warnings.more("Writing a zero to prevent more warnings.");
+                }
+                return true;
+            case count:
+                return true;
+            case zero:
+                return false;
+            default:
+                throw new IllegalStateException("Trying to read from a memory " +
+                        "position which has not been written (" + hex(wordAddress) + ")");
+        }
+    }
+
+    public UninitializedReadPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the number of uninitialized reads
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the number of uninitialized reads, by segment address (the
+     * byte address shifted right by SEGMENT_POWER)
+     */
+    public NumberCounter getBySegment() {
+        return bySegment;
+    }
+
+    /**
+     * @return the number of uninitialized reads, by address of the
+     * instruction
+     */
+    public NumberCounter getByInstruction() {
+        return byInstruction;
+    }
+
+    /**
+     * @return a report with the number of uninitialized reads, by segment and
+     * by instruction
+     */
+    public String summary() {
+        StringBuilder builder = new StringBuilder(100);
+        builder.append("Uninitialized reads:" + total + "\n");
+        if (total == 0) {
+            return builder.toString();
+        }
+
+        builder.append("By segment:\n");
+        appendCounter(builder, bySegment, SEGMENT_POWER);
+        if (currentInstruction != null) {
+            builder.append("By instruction:\n");
+            appendCounter(builder, byInstruction, 0);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Appends the contents of the counter, sorted by key.
+     */
+    private void appendCounter(StringBuilder builder, NumberCounter counter,
+            int shift) {
+        for (int key : counter.sortedNumbers()) {
+            builder.append(hex(key << shift) + ":" + counter.getCount(key) + "\n");
+        }
+    }
+
+    private static String hex(int address) {
+        StringBuilder builder = new StringBuilder(HEX_STRING_SIZE + 2);
+        builder.append("0x");
+        String hexAddress = Integer.toHexString(address);
+        for (int i = hexAddress.length(); i < HEX_STRING_SIZE; i++) {
+            builder.append('0');
+        }
+        return builder.append(hexAddress).toString();
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private final UninitializedReadPolicy policy;
+    private long total;
+    private final NumberCounter bySegment;
+    private final NumberCounter byInstruction;
+    private TraceRecord currentInstruction;
+
+    // Utilities
+    private final WarningLog warnings = WarningLog.getLog();
+
+    // Definitions
+    /**
+     * Exponent of a base two power. Size of the segments used for counting,
+     * in bytes. Same as the segments of CachedSegments.
+     */
+    public static final int SEGMENT_POWER =
+            CachedSegments.SEGMENT_SIZE_POWER + MemorySegment.WORD_POWER;
+    private static final int HEX_STRING_SIZE = 8;
+}
@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory;
+
+import java.nio.ByteBuffer;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+
+/**
+ * Layout of the binary trace files, shared by BinaryTraceWriter and
+ * BinaryTraceMemory.
+ *
+ * <p>A file has three parts, all in big-endian:
+ * <br>1)Header: magic number (int), version (int), number of records (long)
+ * and position of the operation table (long);
+ * <br>2)Records: one record of RECORD_SIZE bytes per trace instruction;
+ * <br>3)Operation table: number of operations (int), followed by the length
+ * (byte) and the ASCII characters of the name of each operation.
+ *
+ * <p>Each record has the address (int), the operation (byte), the three
+ * registers (one byte each) and the immediate (int). The 7 least significant
+ * bits of the operation are the index of its name in the operation table; the
+ * most significant bit is set if the instruction has an immediate. Registers
+ * which are not defined are stored as NO_REGISTER.
+ *
+ * <p>The operations are stored by name instead of by the ordinal of the
+ * InstructionBuilder, so files stay valid when instructions are added to the
+ * interpreter, and operations which are not implemented are kept.
+ *
+ * @author Joao Bispo
+ */
+public class BinaryTraceFormat {
+
+    /**
+     * Writes a decoded trace instruction in the current position of the
+     * buffer.
+     *
+     * @param record
+     * @param operation index of the operation in the operation table
+     * @param buffer
+     */
+    public static void putRecord(TraceRecord record, int operation,
+            ByteBuffer buffer) {
+        if (record.hasImm()) {
+            operation |= IMM_FLAG;
+        }
+
+        buffer.putInt(record.getAddress());
+        buffer.put((byte) operation);
+        buffer.put(encodeRegister(record.getR1Number()));
+        buffer.put(encodeRegister(record.getR2Number()));
+        buffer.put(encodeRegister(record.getR3Number()));
+        buffer.putInt(record.getImmValue());
+    }
+
+    private static byte encodeRegister(int register) {
+        if (register == TraceRecord.NO_REGISTER) {
+            return NO_REGISTER;
+        }
+
+        return (byte) register;
+    }
+
+    /**
+     * @param register a register byte of a record
+     * @return the number of the register, or TraceRecord.NO_REGISTER
+     */
+    public static int decodeRegister(byte register) {
+        if (register == NO_REGISTER) {
+            return TraceRecord.NO_REGISTER;
+        }
+
+        return register;
+    }
+
+    // Definitions
+    /**
+     * "MBTR" in ASCII.
+     */
+    public static final int MAGIC = 0x4D425452;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+    public static final int RECORD_SIZE = 4 + 1 + 3 + 4;
+    /**
+     * Maximum number of different operations in a file.
+     */
+    public static final int MAX_OPERATIONS = 128;
+    public static final int OPERATION_MASK = 0x7F;
+    public static final int IMM_FLAG = 0x80;
+    public static final byte NO_REGISTER = (byte) 0xFF;
+    /**
+     * Suffix of binary trace files.
+     */
+    public static final String EXTENSION = ".mbt";
+}
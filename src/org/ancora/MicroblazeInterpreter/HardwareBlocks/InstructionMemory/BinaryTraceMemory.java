@@ -0,0 +1,279 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ancora.MicroblazeInterpreter.Parser.MnemonicDecoder;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * Returns trace instructions from a file in the format described in
+ * BinaryTraceFormat.
+ *
+ * <p>Records are read in blocks and decoded directly into a TraceRecord;
+ * there is no text to parse. The String version of nextInstruction rebuilds
+ * the line as it appears in the text traces. Positions used by seek are
+ * offsets in the file of the beginning of a record.
+ *
+ * @author Joao Bispo
+ */
+public class BinaryTraceMemory implements SeekableInstructionMemory {
+
+    public BinaryTraceMemory(File binaryTrace) {
+        traceFile = binaryTrace;
+        hasInitialized = false;
+        buffer = ByteBuffer.allocate(BinaryTraceFormat.RECORD_SIZE * RECORDS_PER_READ);
+        buffer.limit(0);
+        record = new TraceRecord();
+    }
+
+    /**
+     * Opens the file, checks the header and reads the operation table.
+     */
+    private void initialize() {
+        hasInitialized = true;
+
+        try {
+            file = new RandomAccessFile(traceFile, "r");
+        } catch (FileNotFoundException ex) {
+            console.warn("initialize: FileNotFoundException while trying to open " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(BinaryTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+            return;
+        }
+
+        try {
+            // Header
+            int magic = file.readInt();
+            int version = file.readInt();
+            if (magic != BinaryTraceFormat.MAGIC
+                    || version != BinaryTraceFormat.VERSION) {
+                console.warn("initialize: File is not a binary trace, or has " +
+                        "an unsupported version. (" + traceFile.getAbsolutePath() + ")");
+                close();
+                return;
+            }
+            numRecords = file.readLong();
+            remainingRecords = numRecords;
+            long tableOffset = file.readLong();
+
+            // Operation table
+            file.seek(tableOffset);
+            int numOperations = file.readInt();
+            operationOpcodes = new int[numOperations];
+            operationNames = new byte[numOperations][];
+            for (int i = 0; i < numOperations; i++) {
+                operationNames[i] = new byte[file.readUnsignedByte()];
+                file.readFully(operationNames[i]);
+                operationOpcodes[i] = MnemonicDecoder.decode(
+                        operationNames[i], 0, operationNames[i].length);
+            }
+
+            // Records
+            channel = file.getChannel();
+            channel.position(BinaryTraceFormat.HEADER_SIZE);
+        } catch (IOException ex) {
+            console.warn("initialize: IOException while trying to read the " +
+                    "header of file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(BinaryTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+            close();
+        }
+    }
+
+    /**
+     * Reads the next block of records into the buffer.
+     *
+     * @return true if there are records in the buffer
+     */
+    private boolean fill() {
+        if (channel == null || remainingRecords == 0) {
+            close();
+            return false;
+        }
+
+        long bytes = Math.min(remainingRecords * BinaryTraceFormat.RECORD_SIZE,
+                buffer.capacity());
+        buffer.clear();
+        buffer.limit((int) bytes);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    console.warn("fill: File ended before the last record. ("
+                            + traceFile.getAbsolutePath() + ")");
+                    remainingRecords = 0;
+                    break;
+                }
+            }
+        } catch (IOException ex) {
+            console.warn("fill: IOException while trying to read " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(BinaryTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+            remainingRecords = 0;
+        }
+        buffer.flip();
+
+        // Discard incomplete records
+        buffer.limit(buffer.limit() - buffer.limit() % BinaryTraceFormat.RECORD_SIZE);
+        remainingRecords -= buffer.remaining() / BinaryTraceFormat.RECORD_SIZE;
+
+        return buffer.hasRemaining();
+    }
+
+    public void close() {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            file.close();
+        } catch (IOException ex) {
+            console.warn("close: IOException while trying to close " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(BinaryTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        file = null;
+        channel = null;
+    }
+
+    /**
+     * Decodes the next record of the file.
+     *
+     * @param record where the instruction will be written
+     * @return true if an instruction was decoded, or false if the end of the
+     * file has been reached
+     */
+    public boolean nextInstruction(TraceRecord record) {
+        if (!hasInitialized) {
+            initialize();
+        }
+
+        if (!buffer.hasRemaining() && !fill()) {
+            return false;
+        }
+
+        record.clear();
+        record.setAddress(buffer.getInt());
+
+        final int operation = buffer.get() & 0xFF;
+        final int index = operation & BinaryTraceFormat.OPERATION_MASK;
+        if (index >= operationOpcodes.length) {
+            console.warn("nextInstruction: Record with invalid operation ("
+                    + index + ").");
+        } else {
+            record.setOpcode(operationOpcodes[index]);
+            record.setMnemonic(operationNames[index], 0, operationNames[index].length);
+        }
+
+        record.setR1Number(BinaryTraceFormat.decodeRegister(buffer.get()));
+        record.setR2Number(BinaryTraceFormat.decodeRegister(buffer.get()));
+        record.setR3Number(BinaryTraceFormat.decodeRegister(buffer.get()));
+
+        final int imm = buffer.getInt();
+        if ((operation & BinaryTraceFormat.IMM_FLAG) != 0) {
+            record.setImm(imm);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the next instruction, in the same format as the text traces
+     * (ex.: "0x00000050  addik   r13, r0, 7544").
+     *
+     * @return the next instruction, or null if the end of the file has been
+     * reached
+     */
+    public String nextInstruction() {
+        if (!nextInstruction(record)) {
+            return null;
+        }
+
+        return record.toTraceLine();
+    }
+
+    /**
+     * @return the offset in the file of the record after the last instruction
+     * returned
+     */
+    public long getPosition() {
+        if (!hasInitialized) {
+            initialize();
+        }
+
+        long read = numRecords - remainingRecords
+                - buffer.remaining() / BinaryTraceFormat.RECORD_SIZE;
+        return BinaryTraceFormat.HEADER_SIZE + read * BinaryTraceFormat.RECORD_SIZE;
+    }
+
+    public boolean seek(long position) {
+        if (!hasInitialized) {
+            initialize();
+        }
+
+        final long offset = position - BinaryTraceFormat.HEADER_SIZE;
+        if (channel == null || offset < 0
+                || offset % BinaryTraceFormat.RECORD_SIZE != 0
+                || offset / BinaryTraceFormat.RECORD_SIZE > numRecords) {
+            return false;
+        }
+
+        try {
+            channel.position(position);
+        } catch (IOException ex) {
+            console.warn("seek: IOException while trying to read " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(BinaryTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+            return false;
+        }
+        remainingRecords = numRecords - offset / BinaryTraceFormat.RECORD_SIZE;
+        buffer.limit(0);
+
+        return true;
+    }
+
+    // INSTANCE VARIABLES
+
+    // File Input
+    private final File traceFile;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private final ByteBuffer buffer;
+
+    // State
+    private boolean hasInitialized;
+    private long numRecords;
+    private long remainingRecords;
+    private int[] operationOpcodes;
+    private byte[][] operationNames;
+    private final TraceRecord record;
+
+    // Utilities
+    private Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    private static final int RECORDS_PER_READ = 4096;
+}
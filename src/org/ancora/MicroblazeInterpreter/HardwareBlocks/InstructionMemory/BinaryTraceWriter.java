@@ -0,0 +1,214 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * Writes decoded trace instructions to a file, in the format described in
+ * BinaryTraceFormat.
+ *
+ * <p>The operation table is only known after all the instructions are
+ * written, so it is written at the end of the file, and the header is
+ * updated when the writer is closed.
+ *
+ * @author Joao Bispo
+ */
+public class BinaryTraceWriter {
+
+    /**
+     * Creates a writer. If the file exists, it is overwritten.
+     *
+     * @param binaryTrace
+     */
+    public BinaryTraceWriter(File binaryTrace) {
+        traceFile = binaryTrace;
+        buffer = ByteBuffer.allocate(BinaryTraceFormat.RECORD_SIZE * RECORDS_PER_WRITE);
+        opcodeToOperation = new int[InstructionBuilder.values().length];
+        Arrays.fill(opcodeToOperation, NO_OPERATION);
+        operations = new ArrayList<String>();
+        numRecords = 0;
+
+        try {
+            file = new RandomAccessFile(traceFile, "rw");
+            file.setLength(0);
+            channel = file.getChannel();
+            channel.position(BinaryTraceFormat.HEADER_SIZE);
+        } catch (FileNotFoundException ex) {
+            console.warn("BinaryTraceWriter: FileNotFoundException while trying " +
+                    "to open file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(BinaryTraceWriter.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (IOException ex) {
+            console.warn("BinaryTraceWriter: IOException while trying to " +
+                    "prepare file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(BinaryTraceWriter.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Adds a decoded trace instruction to the file.
+     *
+     * @param record
+     * @return true if the instruction was added, false if the file has too
+     * many different operations or could not be opened
+     */
+    public boolean write(TraceRecord record) {
+        if (channel == null) {
+            return false;
+        }
+
+        int operation = getOperation(record);
+        if (operation == NO_OPERATION) {
+            return false;
+        }
+
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        BinaryTraceFormat.putRecord(record, operation, buffer);
+        numRecords++;
+
+        return true;
+    }
+
+    /**
+     * @return the index of the operation of the record in the operation
+     * table. New operations are added to the table.
+     */
+    private int getOperation(TraceRecord record) {
+        final int opcode = record.getOpcode();
+        if (opcode != TraceRecord.UNKNOWN_OPCODE
+                && opcodeToOperation[opcode] != NO_OPERATION) {
+            return opcodeToOperation[opcode];
+        }
+
+        // Operation not seen yet, or not implemented
+        String name = record.getOpName();
+        int operation = operations.indexOf(name);
+        if (operation == -1) {
+            if (operations.size() == BinaryTraceFormat.MAX_OPERATIONS) {
+                console.warn("write: Trace has more than "
+                        + BinaryTraceFormat.MAX_OPERATIONS + " different "
+                        + "operations. Ignoring '" + name + "'.");
+                return NO_OPERATION;
+            }
+            operation = operations.size();
+            operations.add(name);
+        }
+
+        if (opcode != TraceRecord.UNKNOWN_OPCODE) {
+            opcodeToOperation[opcode] = operation;
+        }
+
+        return operation;
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     */
+    private void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException ex) {
+            console.warn("flush: IOException while trying to write to " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(BinaryTraceWriter.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the remaining records, the operation table and the header, and
+     * closes the file.
+     */
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+
+        flush();
+
+        try {
+            final long tableOffset = channel.position();
+
+            // Operation table
+            file.writeInt(operations.size());
+            for (String name : operations) {
+                file.writeByte(name.length());
+                file.writeBytes(name);
+            }
+
+            // Header
+            file.seek(0);
+            file.writeInt(BinaryTraceFormat.MAGIC);
+            file.writeInt(BinaryTraceFormat.VERSION);
+            file.writeLong(numRecords);
+            file.writeLong(tableOffset);
+
+            file.close();
+        } catch (IOException ex) {
+            console.warn("close: IOException while trying to finish " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(BinaryTraceWriter.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        channel = null;
+        file = null;
+    }
+
+    public long getNumRecords() {
+        return numRecords;
+    }
+
+    // INSTANCE VARIABLES
+
+    // File Output
+    private final File traceFile;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private final ByteBuffer buffer;
+
+    // State
+    private final int[] opcodeToOperation;
+    private final List<String> operations;
+    private long numRecords;
+
+    // Utilities
+    private Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    private static final int RECORDS_PER_WRITE = 4096;
+    private static final int NO_OPERATION = -1;
+}
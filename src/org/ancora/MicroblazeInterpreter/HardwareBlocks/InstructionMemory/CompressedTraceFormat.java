@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Layout of the compressed trace files, shared by CompressedTraceWriter and
+ * CompressedTraceMemory.
+ *
+ * <p>After the header (magic number and version, as big-endian ints), each
+ * trace instruction is stored as:
+ * <br>1)A token, as a varint: the id of the static instruction in the
+ * dictionary, shifted left by one. The least significant bit is set if the
+ * address does not follow the previous one (previous address + 4);
+ * <br>2)If the id is the current size of the dictionary, the definition of a
+ * new static instruction: length (byte) and ASCII characters of the name of
+ * the operation, the three registers (one byte each, NO_REGISTER if not
+ * defined), a byte which is 1 if there is an immediate and, in that case,
+ * the immediate as a zigzag varint;
+ * <br>3)If the bit of the token is set, the difference to the expected
+ * address as a zigzag varint.
+ *
+ * <p>The dictionary is built while the file is read, so the file can be
+ * decoded as a stream. The end of the file marks the end of the trace.
+ *
+ * <p>Varints store 7 bits per byte, least significant group first; the most
+ * significant bit of each byte is set if more bytes follow. Zigzag maps
+ * signed numbers to unsigned, so small negative numbers stay small.
+ *
+ * @author Joao Bispo
+ */
+public class CompressedTraceFormat {
+
+    /**
+     * Writes a value as a varint.
+     *
+     * @param value interpreted as unsigned
+     * @param stream
+     * @throws IOException
+     */
+    public static void writeVarint(int value, OutputStream stream) throws IOException {
+        while ((value & ~VARINT_MASK) != 0) {
+            stream.write((value & VARINT_MASK) | VARINT_CONTINUE);
+            value >>>= VARINT_BITS;
+        }
+        stream.write(value);
+    }
+
+    public static int zigzagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static int zigzagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Definitions
+    /**
+     * "MBTC" in ASCII.
+     */
+    public static final int MAGIC = 0x4D425443;
+    public static final int VERSION = 1;
+    public static final int ADDRESS_STEP = 4;
+    public static final int JUMP_FLAG = 0x1;
+    public static final int VARINT_BITS = 7;
+    public static final int VARINT_MASK = 0x7F;
+    public static final int VARINT_CONTINUE = 0x80;
+    /**
+     * Suffix of compressed trace files.
+     */
+    public static final String EXTENSION = ".mbc";
+}
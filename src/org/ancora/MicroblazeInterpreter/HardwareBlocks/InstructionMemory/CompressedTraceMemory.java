@@ -0,0 +1,285 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ancora.MicroblazeInterpreter.Parser.MnemonicDecoder;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * Returns trace instructions from a file in the format described in
+ * CompressedTraceFormat.
+ *
+ * <p>The file is decoded as a stream: the dictionary of static instructions
+ * is rebuilt as the definitions are found, and each instruction is copied
+ * from the dictionary to the record given by the caller.
+ *
+ * @author Joao Bispo
+ */
+public class CompressedTraceMemory implements InstructionMemory {
+
+    public CompressedTraceMemory(File compressedTrace) {
+        traceFile = compressedTrace;
+        hasInitialized = false;
+        truncated = false;
+        buffer = new byte[BUFFER_SIZE];
+        position = 0;
+        limit = 0;
+        dictionary = new TraceRecord[INITIAL_DICTIONARY_SIZE];
+        dictionarySize = 0;
+        nextAddress = 0;
+        record = new TraceRecord();
+        name = new byte[MAX_NAME_SIZE];
+    }
+
+    /**
+     * Opens the file and checks the header.
+     */
+    private void initialize() {
+        hasInitialized = true;
+
+        try {
+            stream = new FileInputStream(traceFile);
+        } catch (FileNotFoundException ex) {
+            console.warn("initialize: FileNotFoundException while trying to open " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(CompressedTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+            return;
+        }
+
+        int magic = readInt();
+        int version = readInt();
+        if (magic != CompressedTraceFormat.MAGIC
+                || version != CompressedTraceFormat.VERSION) {
+            console.warn("initialize: File is not a compressed trace, or has " +
+                    "an unsupported version. (" + traceFile.getAbsolutePath() + ")");
+            close();
+        }
+    }
+
+    /**
+     * Decodes the next instruction of the file.
+     *
+     * @param record where the instruction will be written
+     * @return true if an instruction was decoded, or false if the end of the
+     * file has been reached
+     */
+    public boolean nextInstruction(TraceRecord record) {
+        if (!hasInitialized) {
+            initialize();
+        }
+
+        // Check end of file
+        if (position == limit && !fill()) {
+            return false;
+        }
+
+        final int token = readVarint();
+        final int id = token >>> 1;
+        if (id == dictionarySize) {
+            readDefinition();
+        } else if (id > dictionarySize) {
+            console.warn("nextInstruction: Invalid instruction id (" + id
+                    + "). (" + traceFile.getAbsolutePath() + ")");
+            close();
+            return false;
+        }
+
+        int address = nextAddress;
+        if ((token & CompressedTraceFormat.JUMP_FLAG) != 0) {
+            address += CompressedTraceFormat.zigzagDecode(readVarint());
+        }
+
+        if (truncated) {
+            console.warn("nextInstruction: File ends in the middle of an " +
+                    "instruction. (" + traceFile.getAbsolutePath() + ")");
+            close();
+            return false;
+        }
+        nextAddress = address + CompressedTraceFormat.ADDRESS_STEP;
+
+        record.copyFrom(dictionary[id]);
+        record.setAddress(address);
+
+        return true;
+    }
+
+    /**
+     * Reads the definition of a static instruction and adds it to the
+     * dictionary.
+     */
+    private void readDefinition() {
+        TraceRecord definition = new TraceRecord();
+
+        final int nameSize = readByte();
+        for (int i = 0; i < nameSize; i++) {
+            name[i] = (byte) readByte();
+        }
+        definition.setMnemonic(name, 0, nameSize);
+        definition.setOpcode(MnemonicDecoder.decode(name, 0, nameSize));
+
+        definition.setR1Number(BinaryTraceFormat.decodeRegister((byte) readByte()));
+        definition.setR2Number(BinaryTraceFormat.decodeRegister((byte) readByte()));
+        definition.setR3Number(BinaryTraceFormat.decodeRegister((byte) readByte()));
+
+        if (readByte() != 0) {
+            definition.setImm(CompressedTraceFormat.zigzagDecode(readVarint()));
+        }
+
+        // Grow dictionary
+        if (dictionarySize == dictionary.length) {
+            TraceRecord[] newDictionary = new TraceRecord[dictionary.length * 2];
+            System.arraycopy(dictionary, 0, newDictionary, 0, dictionarySize);
+            dictionary = newDictionary;
+        }
+        dictionary[dictionarySize] = definition;
+        dictionarySize++;
+    }
+
+    private int readVarint() {
+        int value = 0;
+        int shift = 0;
+        int b = readByte();
+        while ((b & CompressedTraceFormat.VARINT_CONTINUE) != 0) {
+            value |= (b & CompressedTraceFormat.VARINT_MASK) << shift;
+            shift += CompressedTraceFormat.VARINT_BITS;
+            b = readByte();
+        }
+
+        return value | (b << shift);
+    }
+
+    private int readInt() {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    /**
+     * @return the next byte of the file, or 0 if the file ended. Bytes are
+     * only read after the end of the file if it was truncated.
+     */
+    private int readByte() {
+        if (position == limit && !fill()) {
+            truncated = true;
+            return 0;
+        }
+
+        final int b = buffer[position] & 0xFF;
+        position++;
+        return b;
+    }
+
+    /**
+     * Reads the next block of the file into the buffer.
+     *
+     * @return true if there are bytes in the buffer
+     */
+    private boolean fill() {
+        if (stream == null) {
+            return false;
+        }
+
+        int read = -1;
+        try {
+            read = stream.read(buffer);
+        } catch (IOException ex) {
+            console.warn("fill: IOException while trying to read " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(CompressedTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+        }
+
+        if (read <= 0) {
+            close();
+            return false;
+        }
+
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    public void close() {
+        position = 0;
+        limit = 0;
+        if (stream == null) {
+            return;
+        }
+
+        try {
+            stream.close();
+        } catch (IOException ex) {
+            console.warn("close: IOException while trying to close " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(CompressedTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        stream = null;
+    }
+
+    /**
+     * Returns the next instruction, in the same format as the text traces.
+     *
+     * @return the next instruction, or null if the end of the file has been
+     * reached
+     */
+    public String nextInstruction() {
+        if (!nextInstruction(record)) {
+            return null;
+        }
+
+        return record.toTraceLine();
+    }
+
+    // INSTANCE VARIABLES
+
+    // File Input
+    private final File traceFile;
+    private FileInputStream stream;
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+
+    // State
+    private boolean hasInitialized;
+    /**
+     * True if the file ended while reading an instruction or the header.
+     */
+    private boolean truncated;
+    private TraceRecord[] dictionary;
+    private int dictionarySize;
+    private int nextAddress;
+    private final TraceRecord record;
+    private final byte[] name;
+
+    // Utilities
+    private Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_DICTIONARY_SIZE = 1024;
+    private static final int MAX_NAME_SIZE = 255;
+}
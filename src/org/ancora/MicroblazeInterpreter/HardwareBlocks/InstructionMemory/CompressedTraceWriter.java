@@ -0,0 +1,191 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * Writes decoded trace instructions to a file, in the format described in
+ * CompressedTraceFormat.
+ *
+ * @author Joao Bispo
+ */
+public class CompressedTraceWriter {
+
+    /**
+     * Creates a writer. If the file exists, it is overwritten.
+     *
+     * @param compressedTrace
+     */
+    public CompressedTraceWriter(File compressedTrace) {
+        traceFile = compressedTrace;
+        dictionary = new HashMap<String, Integer>();
+        nextAddress = 0;
+        numRecords = 0;
+
+        try {
+            stream = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(traceFile), BUFFER_SIZE));
+            stream.writeInt(CompressedTraceFormat.MAGIC);
+            stream.writeInt(CompressedTraceFormat.VERSION);
+        } catch (FileNotFoundException ex) {
+            console.warn("CompressedTraceWriter: FileNotFoundException while " +
+                    "trying to open file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(CompressedTraceWriter.class.getName()).log(Level.SEVERE, null, ex);
+        } catch (IOException ex) {
+            console.warn("CompressedTraceWriter: IOException while trying to " +
+                    "write to file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(CompressedTraceWriter.class.getName()).log(Level.SEVERE, null, ex);
+            stream = null;
+        }
+    }
+
+    /**
+     * Adds a decoded trace instruction to the file.
+     *
+     * @param record
+     * @return true if the instruction was added
+     */
+    public boolean write(TraceRecord record) {
+        if (stream == null) {
+            return false;
+        }
+
+        // Static instructions are identified by the operation and arguments
+        String key = record.toString();
+        Integer id = dictionary.get(key);
+        boolean isNew = id == null;
+        if (isNew) {
+            id = dictionary.size();
+            dictionary.put(key, id);
+        }
+
+        final int jump = record.getAddress() - nextAddress;
+        int token = id << 1;
+        if (jump != 0) {
+            token |= CompressedTraceFormat.JUMP_FLAG;
+        }
+
+        try {
+            CompressedTraceFormat.writeVarint(token, stream);
+            if (isNew) {
+                writeDefinition(record);
+            }
+            if (jump != 0) {
+                CompressedTraceFormat.writeVarint(
+                        CompressedTraceFormat.zigzagEncode(jump), stream);
+            }
+        } catch (IOException ex) {
+            console.warn("write: IOException while trying to write to " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(CompressedTraceWriter.class.getName()).log(Level.SEVERE, null, ex);
+            return false;
+        }
+
+        nextAddress = record.getAddress() + CompressedTraceFormat.ADDRESS_STEP;
+        numRecords++;
+        return true;
+    }
+
+    /**
+     * Writes the definition of a new static instruction.
+     */
+    private void writeDefinition(TraceRecord record) throws IOException {
+        String name = record.getOpName();
+        stream.writeByte(name.length());
+        stream.writeBytes(name);
+
+        stream.writeByte(encodeRegister(record.getR1Number()));
+        stream.writeByte(encodeRegister(record.getR2Number()));
+        stream.writeByte(encodeRegister(record.getR3Number()));
+
+        if (record.hasImm()) {
+            stream.writeByte(1);
+            CompressedTraceFormat.writeVarint(
+                    CompressedTraceFormat.zigzagEncode(record.getImmValue()), stream);
+        } else {
+            stream.writeByte(0);
+        }
+    }
+
+    private static int encodeRegister(int register) {
+        if (register == TraceRecord.NO_REGISTER) {
+            return BinaryTraceFormat.NO_REGISTER;
+        }
+
+        return register;
+    }
+
+    /**
+     * Writes the remaining data and closes the file.
+     */
+    public void close() {
+        if (stream == null) {
+            return;
+        }
+
+        try {
+            stream.close();
+        } catch (IOException ex) {
+            console.warn("close: IOException while trying to close " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(CompressedTraceWriter.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        stream = null;
+    }
+
+    public long getNumRecords() {
+        return numRecords;
+    }
+
+    /**
+     * @return the number of different static instructions written
+     */
+    public int getDictionarySize() {
+        return dictionary.size();
+    }
+
+    // INSTANCE VARIABLES
+
+    // File Output
+    private final File traceFile;
+    private DataOutputStream stream;
+
+    // State
+    private final Map<String, Integer> dictionary;
+    private int nextAddress;
+    private long numRecords;
+
+    // Utilities
+    private Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    private static final int BUFFER_SIZE = 64 * 1024;
+}
@@ -17,6 +17,8 @@
 
 package org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory;
 
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+
 /**
  * Holds trace instructions for execution.
  *
@@ -29,4 +31,20 @@ public interface InstructionMemory {
      * instructions.
      */
     public String nextInstruction();
+
+    /**
+     * Decodes the next instruction to execute into the given record.
+     *
+     * @param record where the instruction will be written
+     * @return true if an instruction was decoded, or false if there are no
+     * more instructions.
+     */
+    public boolean nextInstruction(TraceRecord record);
+
+    /**
+     * Releases the file and any threads used by the memory. The memory
+     * should not be read after being closed. Closing more than once has no
+     * effect.
+     */
+    public void close();
 }
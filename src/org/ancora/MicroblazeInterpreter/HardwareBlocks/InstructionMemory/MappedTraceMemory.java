@@ -0,0 +1,316 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ancora.MicroblazeInterpreter.Parser.TraceLineParser;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * Finds and returns trace instructions in a file, which is memory-mapped
+ * instead of being read through a Reader.
+ *
+ * <p>Line boundaries and the "0x" prefix are found directly on the bytes of
+ * the file, and the parser receives the offsets of the line. No Strings are
+ * created when the instructions are decoded with
+ * nextInstruction(TraceRecord).
+ *
+ * <p>The file is mapped in windows of WINDOW_SIZE bytes, so traces bigger
+ * than the address space of the JVM can still be executed. When a line
+ * crosses the end of a window, a new window is mapped starting at the
+ * beginning of that line. Lines bigger than a window are mapped with a
+ * bigger window.
+ *
+ * <p>Positions used by seek are offsets in the file of the beginning of a
+ * line. The file stays open after its end is reached, so seek can still be
+ * used, until close is called.
+ *
+ * <p>Assumes the trace is in ASCII (or UTF-8 with only ASCII characters).
+ *
+ * @author Joao Bispo
+ */
+public class MappedTraceMemory implements SeekableInstructionMemory {
+
+    public MappedTraceMemory(File mbTrace) {
+        this(mbTrace, WINDOW_SIZE);
+    }
+
+    /**
+     * @param mbTrace
+     * @param windowSize maximum number of bytes mapped at the same time
+     */
+    public MappedTraceMemory(File mbTrace, int windowSize) {
+        traceFile = mbTrace;
+        this.windowSize = windowSize;
+        hasInitialized = false;
+        lineParser = new TraceLineParser();
+    }
+
+    /**
+     * Opens the file and maps the first window.
+     */
+    private void initialize() {
+        hasInitialized = true;
+
+        try {
+            file = new RandomAccessFile(traceFile, "r");
+        } catch (FileNotFoundException ex) {
+            console.warn("initialize: FileNotFoundException while trying to open " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(MappedTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+            return;
+        }
+
+        channel = file.getChannel();
+        try {
+            fileSize = channel.size();
+        } catch (IOException ex) {
+            console.warn("initialize: IOException while trying to read the size " +
+                    "of file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(MappedTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+            close();
+            return;
+        }
+
+        map(0, windowSize);
+    }
+
+    /**
+     * Maps a window of the file starting at the given position.
+     *
+     * @param start position in the file
+     * @param maxSize maximum number of bytes of the window
+     * @return true if the window could be mapped
+     */
+    private boolean map(long start, long maxSize) {
+        long size = Math.min(maxSize, fileSize - start);
+
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        } catch (IOException ex) {
+            console.warn("map: IOException while trying to map file! (" +
+                    traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(MappedTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+            close();
+            return false;
+        }
+
+        windowStart = start;
+        position = 0;
+        return true;
+    }
+
+    /**
+     * Releases the file. The mapped buffer is released by the garbage
+     * collector. Afterwards, nextInstruction returns no instructions and seek
+     * fails.
+     */
+    public void close() {
+        buffer = null;
+        if (file == null) {
+            return;
+        }
+
+        try {
+            file.close();
+        } catch (IOException ex) {
+            console.warn("close: IOException while trying to close " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(MappedTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        file = null;
+        channel = null;
+    }
+
+    /**
+     * Finds the next line of the file, and stores its boundaries in lineBegin
+     * and lineEnd. The line terminator is not included.
+     *
+     * @return true if a line was found, false if the end of the file has been
+     * reached
+     */
+    private boolean nextLine() {
+        if (!hasInitialized) {
+            initialize();
+        }
+
+        while (buffer != null) {
+            final int limit = buffer.limit();
+
+            if (position == limit) {
+                // Window ended at a line boundary
+                if (windowStart + limit >= fileSize) {
+                    // End of the file, which is kept open for seek
+                    buffer = null;
+                    return false;
+                }
+                if (!map(windowStart + limit, windowSize)) {
+                    return false;
+                }
+                continue;
+            }
+
+            int index = position;
+            while (index < limit && buffer.get(index) != NEW_LINE) {
+                index++;
+            }
+
+            final boolean lastWindow = windowStart + limit >= fileSize;
+            if (index == limit && !lastWindow) {
+                // Line crosses the end of the window. If the line started at
+                // the beginning of the window, it needs a bigger window.
+                long size = position > 0 ? windowSize : 2L * limit;
+                if (!map(windowStart + position, size)) {
+                    return false;
+                }
+                continue;
+            }
+
+            lineBegin = position;
+            lineEnd = index;
+            position = index < limit ? index + 1 : index;
+
+            // Remove carriage return
+            if (lineEnd > lineBegin && buffer.get(lineEnd - 1) == CARRIAGE_RETURN) {
+                lineEnd--;
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if the current line starts with "0x"
+     */
+    private boolean isTraceInstruction() {
+        return lineEnd - lineBegin >= TRACE_PREFIX.length
+                && buffer.get(lineBegin) == TRACE_PREFIX[0]
+                && buffer.get(lineBegin + 1) == TRACE_PREFIX[1];
+    }
+
+    /**
+     * Returns the next line which qualifies as a trace instruction. A line
+     * is considered as a trace instruction if it starts with "0x".
+     *
+     * <p>Creates a String for each instruction; nextInstruction(TraceRecord)
+     * should be preferred.
+     *
+     * @return the next String which qualifies as an instruction, or null if
+     * the end of the file has been reached
+     */
+    public String nextInstruction() {
+        while (nextLine()) {
+            if (isTraceInstruction()) {
+                StringBuilder builder = new StringBuilder(lineEnd - lineBegin);
+                for (int i = lineBegin; i < lineEnd; i++) {
+                    builder.append((char) buffer.get(i));
+                }
+                return builder.toString();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Decodes the next line which qualifies as a trace instruction.
+     *
+     * @param record where the instruction will be written
+     * @return true if an instruction was decoded, or false if the end of the
+     * file has been reached
+     */
+    public boolean nextInstruction(TraceRecord record) {
+        while (nextLine()) {
+            if (isTraceInstruction()
+                    && lineParser.parse(buffer, lineBegin, lineEnd, record)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the offset in the file of the line after the last instruction
+     * returned
+     */
+    public long getPosition() {
+        if (!hasInitialized) {
+            initialize();
+        }
+
+        if (buffer == null) {
+            return fileSize;
+        }
+
+        return windowStart + position;
+    }
+
+    public boolean seek(long position) {
+        if (!hasInitialized) {
+            initialize();
+        }
+
+        if (channel == null || position < 0 || position > fileSize) {
+            return false;
+        }
+
+        return map(position, windowSize);
+    }
+
+    // INSTANCE VARIABLES
+
+    // File Input
+    private final File traceFile;
+    private final int windowSize;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long fileSize;
+    private MappedByteBuffer buffer;
+
+    // State
+    private boolean hasInitialized;
+    private long windowStart;
+    private int position;
+    private int lineBegin;
+    private int lineEnd;
+    private final TraceLineParser lineParser;
+
+    // Utilities
+    private Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    /**
+     * Default number of bytes mapped at the same time (256MB).
+     */
+    public static final int WINDOW_SIZE = 256 * 1024 * 1024;
+    private static final byte[] TRACE_PREFIX = {'0', 'x'};
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+}
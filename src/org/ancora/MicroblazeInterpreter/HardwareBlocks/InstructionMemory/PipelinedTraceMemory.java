@@ -0,0 +1,629 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ancora.MicroblazeInterpreter.Parser.TraceLineParser;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * Returns trace instructions from a text trace which is read and decoded by
+ * other threads, while the instructions are executed.
+ *
+ * <p>The file is divided in chunks of CHUNK_SIZE bytes. Decoder threads take
+ * the chunks in order, read them and decode their lines into the arrays of a
+ * slot of a ring buffer. A chunk has the lines which start inside it, so a
+ * line which crosses the end of a chunk is decoded by the thread of that
+ * chunk. The thread which executes the instructions takes the slots in the
+ * same order as the chunks, so the instructions are returned in the order
+ * of the file.
+ *
+ * <p>The ring buffer is bounded: a decoder waits while the slot of its chunk
+ * still has instructions which were not returned. Slots and their arrays are
+ * reused, so after the first chunks no memory is allocated.
+ *
+ * <p>Only the thread which executes the instructions can call the methods of
+ * this class. The decoders stop at the end of the file or when the memory is
+ * closed, so a memory which is not read until the end must be closed.
+ *
+ * @author Joao Bispo
+ */
+public class PipelinedTraceMemory implements InstructionMemory {
+
+    /**
+     * @param mbTrace a text trace
+     * @param decoderThreads number of threads which decode the trace
+     */
+    public PipelinedTraceMemory(File mbTrace, int decoderThreads) {
+        this(mbTrace, decoderThreads, CHUNK_SIZE);
+    }
+
+    /**
+     * @param mbTrace a text trace
+     * @param decoderThreads number of threads which decode the trace
+     * @param chunkSize number of bytes of each chunk
+     */
+    public PipelinedTraceMemory(File mbTrace, int decoderThreads, int chunkSize) {
+        traceFile = mbTrace;
+        this.decoderThreads = decoderThreads;
+        this.chunkSize = chunkSize;
+        hasInitialized = false;
+        cancelled = false;
+        threads = new Thread[0];
+        nextDecodedChunk = new AtomicInteger(0);
+        slots = new Slot[decoderThreads * SLOTS_PER_THREAD];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot(i, slots.length);
+        }
+        currentSlot = null;
+        currentChunk = 0;
+        index = 0;
+        record = new TraceRecord();
+    }
+
+    /**
+     * Opens the file and starts the decoders.
+     */
+    private void initialize() {
+        hasInitialized = true;
+
+        try {
+            file = new RandomAccessFile(traceFile, "r");
+        } catch (FileNotFoundException ex) {
+            console.warn("initialize: FileNotFoundException while trying to open " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(PipelinedTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+            numChunks = 0;
+            return;
+        }
+
+        channel = file.getChannel();
+        try {
+            fileSize = channel.size();
+        } catch (IOException ex) {
+            console.warn("initialize: IOException while trying to read the size " +
+                    "of file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(PipelinedTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+            close();
+            numChunks = 0;
+            return;
+        }
+        numChunks = (int) ((fileSize + chunkSize - 1) / chunkSize);
+
+        threads = new Thread[decoderThreads];
+        for (int i = 0; i < decoderThreads; i++) {
+            threads[i] = new Thread(new Decoder(channel), "Trace decoder " + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Stops the decoders, waits for them to end and closes the file. The
+     * memory returns no more instructions after being closed.
+     */
+    public void close() {
+        cancelled = true;
+        for (Slot slot : slots) {
+            slot.cancel();
+        }
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads = new Thread[0];
+        currentSlot = null;
+        currentChunk = numChunks;
+
+        closeFile();
+    }
+
+    /**
+     * Closes the file, which must not be in use by the decoders.
+     */
+    private void closeFile() {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            file.close();
+        } catch (IOException ex) {
+            console.warn("close: IOException while trying to close " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(PipelinedTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        file = null;
+        channel = null;
+    }
+
+    /**
+     * Copies the next decoded instruction to the record.
+     *
+     * @param record where the instruction will be written
+     * @return true if an instruction was decoded, or false if the end of the
+     * file has been reached
+     */
+    public boolean nextInstruction(TraceRecord record) {
+        if (!hasInitialized) {
+            initialize();
+        }
+
+        while (currentSlot == null || index == currentSlot.size) {
+            if (!nextSlot()) {
+                return false;
+            }
+        }
+
+        currentSlot.copyTo(index, record);
+        index++;
+        return true;
+    }
+
+    /**
+     * Gives the current slot back to the decoders and waits for the slot of
+     * the next chunk.
+     *
+     * @return true if there is a next chunk
+     */
+    private boolean nextSlot() {
+        if (currentSlot != null) {
+            currentSlot.release();
+            currentSlot = null;
+        }
+
+        if (currentChunk >= numChunks) {
+            close();
+            return false;
+        }
+
+        Slot slot = slots[currentChunk % slots.length];
+        if (!slot.awaitDecoded() || slot.failed) {
+            // The decoder already reported the problem. The other decoders
+            // can still be reading the file.
+            close();
+            return false;
+        }
+
+        currentSlot = slot;
+        currentChunk++;
+        index = 0;
+        return true;
+    }
+
+    /**
+     * Returns the next instruction, in the same format as the text traces.
+     *
+     * @return the next instruction, or null if the end of the file has been
+     * reached
+     */
+    public String nextInstruction() {
+        if (!nextInstruction(record)) {
+            return null;
+        }
+
+        return record.toTraceLine();
+    }
+
+    /**
+     * Takes chunks in order, and decodes each one into its slot.
+     */
+    private class Decoder implements Runnable {
+
+        /**
+         * @param input the file, which is read with absolute positions so
+         * it can be shared by all decoders
+         */
+        public Decoder(FileChannel input) {
+            this.input = input;
+            lineParser = new TraceLineParser();
+            scratch = new TraceRecord();
+        }
+
+        public void run() {
+            int chunk = nextDecodedChunk.getAndIncrement();
+            while (chunk < numChunks && !cancelled) {
+                Slot slot = slots[chunk % slots.length];
+                if (!slot.awaitFree(chunk)) {
+                    return;
+                }
+
+                boolean success = false;
+                try {
+                    success = decode(chunk, slot);
+                } catch (RuntimeException ex) {
+                    if (!cancelled) {
+                        console.warn("run: Exception while decoding file! (" +
+                                traceFile.getAbsolutePath() + ")");
+                        Logger.getLogger(PipelinedTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+                    }
+                } finally {
+                    // Also for errors, so the reader never waits for the slot
+                    slot.publish(!success);
+                }
+
+                chunk = nextDecodedChunk.getAndIncrement();
+            }
+        }
+
+        /**
+         * Reads a chunk and decodes the lines which start inside it.
+         *
+         * @return true if the chunk could be read
+         */
+        private boolean decode(int chunk, Slot slot) {
+            final long start = (long) chunk * chunkSize;
+            final long end = Math.min(start + chunkSize, fileSize);
+
+            // Starts one byte earlier, to know if a line starts at the
+            // beginning of the chunk
+            final long readStart = chunk == 0 ? 0 : start - 1;
+            int limit = read(slot, readStart, 0, (int) (end - readStart));
+            if (limit < 0) {
+                return false;
+            }
+
+            // Continue reading until the end of the last line, which is the
+            // first new line after the chunk
+            boolean lineEnded = slot.text[limit - 1] == NEW_LINE;
+            while (!lineEnded && readStart + limit < fileSize) {
+                int read = read(slot, readStart + limit, limit, EXTRA_READ_SIZE);
+                if (read < 0) {
+                    return false;
+                }
+
+                final int readEnd = limit + read;
+                while (limit < readEnd && !lineEnded) {
+                    lineEnded = slot.text[limit] == NEW_LINE;
+                    limit++;
+                }
+            }
+
+            final byte[] text = slot.text;
+            final int chunkEnd = (int) (end - readStart);
+            int lineBegin = 0;
+            if (chunk > 0) {
+                // Skip the line which started in the previous chunk
+                while (lineBegin < chunkEnd && text[lineBegin] != NEW_LINE) {
+                    lineBegin++;
+                }
+                lineBegin++;
+            }
+
+            slot.size = 0;
+            while (lineBegin < chunkEnd) {
+                int lineEnd = lineBegin;
+                while (lineEnd < limit && text[lineEnd] != NEW_LINE) {
+                    lineEnd++;
+                }
+                final int next = lineEnd + 1;
+
+                // Remove carriage return
+                if (lineEnd > lineBegin && text[lineEnd - 1] == CARRIAGE_RETURN) {
+                    lineEnd--;
+                }
+
+                if (lineEnd - lineBegin >= TRACE_PREFIX.length
+                        && text[lineBegin] == TRACE_PREFIX[0]
+                        && text[lineBegin + 1] == TRACE_PREFIX[1]
+                        && lineParser.parse(text, lineBegin, lineEnd, scratch)) {
+                    slot.add(scratch);
+                }
+
+                lineBegin = next;
+            }
+
+            return true;
+        }
+
+        /**
+         * Reads bytes of the file into the text of the slot.
+         *
+         * @param slot
+         * @param position position in the file
+         * @param offset position in the text of the slot
+         * @param length maximum number of bytes to read
+         * @return the number of bytes read, or -1 if there was an error
+         */
+        private int read(Slot slot, long position, int offset, int length) {
+            length = (int) Math.min(length, fileSize - position);
+            slot.ensureText(offset + length);
+
+            ByteBuffer buffer = ByteBuffer.wrap(slot.text, offset, length);
+            try {
+                while (buffer.hasRemaining()) {
+                    int read = input.read(buffer, position + buffer.position() - offset);
+                    if (read < 0) {
+                        break;
+                    }
+                }
+            } catch (IOException ex) {
+                // Interrupted reads close the channel when the memory is closed
+                if (cancelled) {
+                    return -1;
+                }
+                console.warn("read: IOException while trying to read " +
+                        "file! (" + traceFile.getAbsolutePath() + ")");
+                Logger.getLogger(PipelinedTraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+                return -1;
+            }
+
+            return buffer.position() - offset;
+        }
+
+        // INSTANCE VARIABLES
+        private final FileChannel input;
+        private final TraceLineParser lineParser;
+        private final TraceRecord scratch;
+    }
+
+    /**
+     * A position of the ring buffer. Holds the text of a chunk and its
+     * decoded instructions, in one array per field.
+     *
+     * <p>A slot receives the chunks whose index modulo the number of slots is
+     * the index of the slot. The decoder of a chunk owns the slot from the
+     * moment awaitFree returns until it calls publish; the executing thread
+     * owns it from the moment awaitDecoded returns until it calls release.
+     */
+    private static class Slot {
+
+        public Slot(int firstChunk, int numSlots) {
+            this.numSlots = numSlots;
+            nextChunk = firstChunk;
+            decoded = false;
+            failed = false;
+            cancelled = false;
+            text = new byte[0];
+            size = 0;
+            allocate(INITIAL_INSTRUCTIONS);
+        }
+
+        private void allocate(int capacity) {
+            int[] newAddresses = new int[capacity];
+            int[] newOpcodes = new int[capacity];
+            int[] newR1 = new int[capacity];
+            int[] newR2 = new int[capacity];
+            int[] newR3 = new int[capacity];
+            int[] newImms = new int[capacity];
+            boolean[] newHasImm = new boolean[capacity];
+            byte[] newMnemonicSizes = new byte[capacity];
+            byte[] newMnemonics = new byte[capacity * TraceRecord.MAX_MNEMONIC_SIZE];
+            if (size > 0) {
+                System.arraycopy(addresses, 0, newAddresses, 0, size);
+                System.arraycopy(opcodes, 0, newOpcodes, 0, size);
+                System.arraycopy(r1, 0, newR1, 0, size);
+                System.arraycopy(r2, 0, newR2, 0, size);
+                System.arraycopy(r3, 0, newR3, 0, size);
+                System.arraycopy(imms, 0, newImms, 0, size);
+                System.arraycopy(hasImm, 0, newHasImm, 0, size);
+                System.arraycopy(mnemonicSizes, 0, newMnemonicSizes, 0, size);
+                System.arraycopy(mnemonics, 0, newMnemonics, 0,
+                        size * TraceRecord.MAX_MNEMONIC_SIZE);
+            }
+            addresses = newAddresses;
+            opcodes = newOpcodes;
+            r1 = newR1;
+            r2 = newR2;
+            r3 = newR3;
+            imms = newImms;
+            hasImm = newHasImm;
+            mnemonicSizes = newMnemonicSizes;
+            mnemonics = newMnemonics;
+        }
+
+        /**
+         * Makes sure the text can hold the given number of bytes, keeping
+         * its contents.
+         */
+        public void ensureText(int capacity) {
+            if (capacity <= text.length) {
+                return;
+            }
+
+            byte[] newText = new byte[Math.max(capacity, text.length * 2)];
+            System.arraycopy(text, 0, newText, 0, text.length);
+            text = newText;
+        }
+
+        /**
+         * Stores a decoded instruction after the ones already in the slot.
+         */
+        public void add(TraceRecord record) {
+            if (size == addresses.length) {
+                allocate(size * 2);
+            }
+
+            addresses[size] = record.getAddress();
+            opcodes[size] = record.getOpcode();
+            r1[size] = record.getR1Number();
+            r2[size] = record.getR2Number();
+            r3[size] = record.getR3Number();
+            imms[size] = record.getImmValue();
+            hasImm[size] = record.hasImm();
+            mnemonicSizes[size] = (byte) record.getMnemonic(mnemonics,
+                    size * TraceRecord.MAX_MNEMONIC_SIZE);
+            size++;
+        }
+
+        /**
+         * Writes the instruction in the given position to the record.
+         */
+        public void copyTo(int index, TraceRecord record) {
+            record.clear();
+            record.setAddress(addresses[index]);
+            record.setOpcode(opcodes[index]);
+            record.setMnemonic(mnemonics, index * TraceRecord.MAX_MNEMONIC_SIZE,
+                    mnemonicSizes[index]);
+            record.setR1Number(r1[index]);
+            record.setR2Number(r2[index]);
+            record.setR3Number(r3[index]);
+            if (hasImm[index]) {
+                record.setImm(imms[index]);
+            }
+        }
+
+        /**
+         * Waits until the slot can receive the given chunk.
+         *
+         * @return false if the thread was interrupted or the memory was
+         * closed
+         */
+        public synchronized boolean awaitFree(int chunk) {
+            while (nextChunk != chunk || decoded) {
+                if (cancelled) {
+                    return false;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Makes the decoded chunk available to the executing thread.
+         *
+         * @param failed true if the chunk could not be decoded
+         */
+        public synchronized void publish(boolean failed) {
+            this.failed = failed;
+            decoded = true;
+            notifyAll();
+        }
+
+        /**
+         * Waits until the next chunk of the slot has been decoded.
+         *
+         * @return false if the thread was interrupted or the memory was
+         * closed
+         */
+        public synchronized boolean awaitDecoded() {
+            while (!decoded) {
+                if (cancelled) {
+                    return false;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Wakes the threads waiting for the slot, which return because the
+         * memory was closed.
+         */
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        /**
+         * Gives the slot to the decoder of the next chunk which uses it.
+         */
+        public synchronized void release() {
+            decoded = false;
+            nextChunk += numSlots;
+            notifyAll();
+        }
+
+        // INSTANCE VARIABLES
+        // Synchronization, guarded by the slot
+        private final int numSlots;
+        private int nextChunk;
+        private boolean decoded;
+        private boolean failed;
+        private boolean cancelled;
+
+        // Contents, owned by the decoder or by the executing thread
+        private byte[] text;
+        private int size;
+        private int[] addresses;
+        private int[] opcodes;
+        private int[] r1;
+        private int[] r2;
+        private int[] r3;
+        private int[] imms;
+        private boolean[] hasImm;
+        private byte[] mnemonicSizes;
+        private byte[] mnemonics;
+    }
+
+    // INSTANCE VARIABLES
+
+    // File Input
+    private final File traceFile;
+    private final int chunkSize;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long fileSize;
+    private int numChunks;
+
+    // Decoders
+    private final int decoderThreads;
+    private final AtomicInteger nextDecodedChunk;
+    private final Slot[] slots;
+    private Thread[] threads;
+    private volatile boolean cancelled;
+
+    // State
+    private boolean hasInitialized;
+    private Slot currentSlot;
+    private int currentChunk;
+    private int index;
+    private final TraceRecord record;
+
+    // Utilities
+    private Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    /**
+     * Default number of bytes of each chunk (1MB).
+     */
+    public static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int SLOTS_PER_THREAD = 2;
+    private static final int EXTRA_READ_SIZE = 4 * 1024;
+    private static final int INITIAL_INSTRUCTIONS = 1024;
+    private static final byte[] TRACE_PREFIX = {'0', 'x'};
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+}
@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory;
+
+/**
+ * InstructionMemory which can continue reading its trace from a saved
+ * position, without reading the instructions before it.
+ *
+ * <p>Positions are only valid for the same trace file and the same class of
+ * InstructionMemory.
+ *
+ * @author Joao Bispo
+ */
+public interface SeekableInstructionMemory extends InstructionMemory {
+
+    /**
+     * @return the position in the trace of the next instruction
+     */
+    public long getPosition();
+
+    /**
+     * Continues reading the trace from the given position.
+     *
+     * @param position a value returned by getPosition
+     * @return true if the position is valid and the trace could be read from
+     * it
+     */
+    public boolean seek(long position);
+}
@@ -26,6 +26,8 @@ import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.ancora.MicroblazeInterpreter.Parser.TraceLineParser;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
 import org.ancora.jCommons.Console;
 import org.ancora.jCommons.DefaultConsole;
 
@@ -39,6 +41,7 @@ public class TraceMemory implements InstructionMemory {
     public TraceMemory(File mbTrace) {
         traceFile = mbTrace;
         hasInitialized = false;
+        lineParser = new TraceLineParser();
     }
 
     /**
@@ -88,6 +91,9 @@ public class TraceMemory implements InstructionMemory {
         if(!hasInitialized) {
             initialize();
         }
+        if(reader == null) {
+            return null;
+        }
         
         // While there are lines and a trace instruction was not found, loop.
         String line = null;
@@ -108,6 +114,45 @@ public class TraceMemory implements InstructionMemory {
     }
 
 
+    /**
+     * Decodes the next line which qualifies as a trace instruction.
+     *
+     * @param record where the instruction will be written
+     * @return true if an instruction was decoded, or false if the end of the
+     * stream has been reached
+     */
+    public boolean nextInstruction(TraceRecord record) {
+        String line = nextInstruction();
+        while (line != null) {
+            if (lineParser.parse(line, record)) {
+                return true;
+            }
+
+            line = nextInstruction();
+        }
+
+        return false;
+    }
+
+    /**
+     * Closes the file.
+     */
+    public void close() {
+        if(reader == null) {
+            return;
+        }
+
+        try {
+            reader.close();
+        } catch (IOException ex) {
+            console.warn("close: IOException while trying to close " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(TraceMemory.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        reader = null;
+        hasInitialized = true;
+    }
+
     /**
      * Reads a line from a BufferedReader
      *
@@ -139,6 +184,7 @@ public class TraceMemory implements InstructionMemory {
 
     // State
     private boolean hasInitialized;
+    private final TraceLineParser lineParser;
 
     // Utilities
     private Console console = DefaultConsole.getConsole();
@@ -0,0 +1,322 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.InstructionMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.SeekableInstructionMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialRegister;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * Saves the architectural state of a processor to a file, and restores it in
+ * a new processor, so a trace can be resumed from a given instruction
+ * without executing the instructions before it.
+ *
+ * <p>A file has, in big-endian:
+ * <br>1)Header: magic number (int), version (int) and number of trace
+ * instructions executed (long);
+ * <br>2)Trace position: class name of the instruction memory (UTF) and
+ * position given by SeekableInstructionMemory (long), or NO_POSITION;
+ * <br>3)Registers: number of registers (int) and their values, number of
+ * special registers (int) and their values, in the order of SpecialRegister;
+ * <br>4)Lock register: steps to unlock (byte) and stored immediate (int);
+ * <br>5)Clock: latency (int);
+ * <br>6)Data memory: number of runs (int), followed by the address of the
+ * first word (int), the number of words (int) and the words of each run of
+ * consecutive written words.
+ *
+ * <p>The instruction count of an MbProcessor is restored from the number of
+ * trace instructions of the header, so the counts and the progress of a
+ * resumed run continue from the checkpoint, like the clock. Other counters
+ * which are not part of the state of the processor (not implemented
+ * operations, uninitialized reads, profiles) are not saved.
+ *
+ * @author Joao Bispo
+ */
+public class Checkpoint {
+
+    /**
+     * Saves the state of the processor. The processor should have stopped
+     * after a trace instruction (see MbProcessor.runFor).
+     *
+     * @param processor
+     * @param instructions number of trace instructions executed until now
+     * @param checkpointFile file to write; if it exists, it is overwritten
+     * @return true if the file was written
+     */
+    public static boolean save(MicroBlazeProcessor processor, long instructions,
+            File checkpointFile) {
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(checkpointFile), BUFFER_SIZE));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(instructions);
+
+            // Trace position
+            InstructionMemory memory = processor.getInstructionMemory();
+            out.writeUTF(memory.getClass().getName());
+            if (memory instanceof SeekableInstructionMemory) {
+                out.writeLong(((SeekableInstructionMemory) memory).getPosition());
+            } else {
+                out.writeLong(NO_POSITION);
+            }
+
+            // Registers
+            RegisterFile registers = processor.getRegisterFile();
+            out.writeInt(registers.numRegisters());
+            for (int i = 0; i < registers.numRegisters(); i++) {
+                out.writeInt(registers.read(i));
+            }
+
+            SpecialPurposeRegisters spr = processor.getSpecialRegisters();
+            out.writeInt(SPECIAL_REGISTERS.length);
+            for (SpecialRegister register : SPECIAL_REGISTERS) {
+                out.writeInt(spr.read(register));
+            }
+
+            LockRegister lockRegister = processor.getLockRegister();
+            out.writeByte(lockRegister.getStepsToUnlock());
+            out.writeInt(lockRegister.getStoredImmediate());
+
+            out.writeInt(processor.getClock().getLatency());
+
+            writeMemory(processor.getDataMemory(), out);
+
+            // Errors of the last write only appear when the buffer is
+            // flushed, and close does not report them
+            out.flush();
+        } catch (IOException ex) {
+            console.warn("save: IOException while trying to write file! ("
+                    + checkpointFile.getAbsolutePath() + ")");
+            Logger.getLogger(Checkpoint.class.getName()).log(Level.SEVERE, null, ex);
+            return false;
+        } finally {
+            close(out, checkpointFile);
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the written words of the memory, grouped in runs of consecutive
+     * addresses.
+     */
+    private static void writeMemory(DataMemory memory, DataOutputStream out)
+            throws IOException {
+        int[] addresses = memory.writtenWordAddresses();
+        Arrays.sort(addresses);
+
+        int numRuns = 0;
+        for (int i = 0; i < addresses.length; i++) {
+            if (i == 0 || addresses[i] != addresses[i - 1] + WORD_SIZE) {
+                numRuns++;
+            }
+        }
+
+        out.writeInt(numRuns);
+        int begin = 0;
+        while (begin < addresses.length) {
+            int end = begin + 1;
+            while (end < addresses.length
+                    && addresses[end] == addresses[end - 1] + WORD_SIZE) {
+                end++;
+            }
+
+            out.writeInt(addresses[begin]);
+            out.writeInt(end - begin);
+            for (int i = begin; i < end; i++) {
+                out.writeInt(memory.loadWord(addresses[i]));
+            }
+            begin = end;
+        }
+    }
+
+    /**
+     * Restores the state saved in the file into a processor which has not
+     * run yet, and positions its instruction memory after the last
+     * instruction executed.
+     *
+     * <p>If the instruction memory is seekable and of the same class as the
+     * one saved, it continues from the saved position. Otherwise, the
+     * executed instructions are read from the trace and discarded.
+     *
+     * @param processor a new processor, running the same trace
+     * @param checkpointFile
+     * @return the number of trace instructions executed before the
+     * checkpoint, or -1 if the state could not be restored
+     */
+    public static long restore(MicroBlazeProcessor processor, File checkpointFile) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(checkpointFile), BUFFER_SIZE));
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                console.warn("restore: File is not a checkpoint, or has an "
+                        + "unsupported version. (" + checkpointFile.getAbsolutePath() + ")");
+                return -1;
+            }
+            final long instructions = in.readLong();
+            final String memoryClass = in.readUTF();
+            final long position = in.readLong();
+
+            RegisterFile registers = processor.getRegisterFile();
+            final int numRegisters = in.readInt();
+            if (numRegisters != registers.numRegisters()) {
+                console.warn("restore: Checkpoint has " + numRegisters
+                        + " registers, processor has " + registers.numRegisters() + ".");
+                return -1;
+            }
+            for (int i = 0; i < numRegisters; i++) {
+                registers.write(i, in.readInt());
+            }
+
+            if (in.readInt() != SPECIAL_REGISTERS.length) {
+                console.warn("restore: Checkpoint has different special "
+                        + "registers. (" + checkpointFile.getAbsolutePath() + ")");
+                return -1;
+            }
+            SpecialPurposeRegisters spr = processor.getSpecialRegisters();
+            for (SpecialRegister register : SPECIAL_REGISTERS) {
+                spr.write(register, in.readInt());
+            }
+
+            final int stepsToUnlock = in.readByte();
+            processor.getLockRegister().restore(stepsToUnlock, in.readInt());
+
+            processor.getClock().setLatency(in.readInt());
+
+            readMemory(processor.getDataMemory(), in);
+
+            if (!positionTrace(processor.getInstructionMemory(), memoryClass,
+                    position, instructions)) {
+                return -1;
+            }
+            if (processor instanceof MbProcessor) {
+                ((MbProcessor) processor).setInstructionCount(instructions);
+            }
+
+            return instructions;
+        } catch (IOException ex) {
+            console.warn("restore: IOException while trying to read file! ("
+                    + checkpointFile.getAbsolutePath() + ")");
+            Logger.getLogger(Checkpoint.class.getName()).log(Level.SEVERE, null, ex);
+            return -1;
+        } finally {
+            close(in, checkpointFile);
+        }
+    }
+
+    private static void readMemory(DataMemory memory, DataInputStream in)
+            throws IOException {
+        final int numRuns = in.readInt();
+        for (int run = 0; run < numRuns; run++) {
+            int address = in.readInt();
+            final int numWords = in.readInt();
+            for (int i = 0; i < numWords; i++) {
+                memory.storeWord(address, in.readInt());
+                address += WORD_SIZE;
+            }
+        }
+    }
+
+    /**
+     * Puts the instruction memory after the given number of instructions.
+     *
+     * @return true if the trace has at least that number of instructions
+     */
+    private static boolean positionTrace(InstructionMemory memory,
+            String memoryClass, long position, long instructions) {
+        if (position != NO_POSITION
+                && memory instanceof SeekableInstructionMemory
+                && memory.getClass().getName().equals(memoryClass)) {
+            if (((SeekableInstructionMemory) memory).seek(position)) {
+                return true;
+            }
+            console.warn("restore: Could not go to position " + position
+                    + " of the trace. Reading the instructions before it.");
+        }
+
+        TraceRecord record = new TraceRecord();
+        for (long i = 0; i < instructions; i++) {
+            if (!memory.nextInstruction(record)) {
+                console.warn("restore: Trace ended after " + i + " instructions, "
+                        + "checkpoint was taken after " + instructions + ".");
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static void close(Closeable stream, File checkpointFile) {
+        if (stream == null) {
+            return;
+        }
+
+        try {
+            stream.close();
+        } catch (IOException ex) {
+            console.warn("close: IOException while trying to close file! ("
+                    + checkpointFile.getAbsolutePath() + ")");
+            Logger.getLogger(Checkpoint.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    // Utilities
+    private static final Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    /**
+     * "MBCK" in ASCII.
+     */
+    public static final int MAGIC = 0x4D42434B;
+    public static final int VERSION = 1;
+    /**
+     * Trace position of instruction memories which are not seekable.
+     */
+    public static final long NO_POSITION = -1;
+    /**
+     * Suffix of checkpoint files.
+     */
+    public static final String EXTENSION = ".mbk";
+    private static final SpecialRegister[] SPECIAL_REGISTERS = SpecialRegister.values();
+    private static final int WORD_SIZE = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+}
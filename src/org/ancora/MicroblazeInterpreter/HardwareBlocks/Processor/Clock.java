@@ -39,4 +39,12 @@ public interface Clock {
      * @return
      */
     public int getLatency();
+
+    /**
+     * Sets the total latency of the clock, when a processor is restored from
+     * a checkpoint.
+     *
+     * @param latency
+     */
+    public void setLatency(int latency);
 }
@@ -66,6 +66,10 @@ public class CycleClock implements Clock {
         return latency;
     }
 
+    public void setLatency(int latency) {
+        this.latency = latency;
+    }
+
     // INSTANCE VARIABLES
     // State
     private final LockRegister lockReg;
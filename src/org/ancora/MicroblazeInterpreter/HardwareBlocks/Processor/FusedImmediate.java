@@ -0,0 +1,77 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor;
+
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
+import org.ancora.MicroblazeInterpreter.Instructions.Instruction;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+
+/**
+ * An imm followed by a type B instruction which uses the LockRegister.
+ *
+ * <p>The second instruction is built with the 32-bit immediate already
+ * formed by the imm and its own 16 bits, so it does not depend on the lock
+ * state. The LockRegister, the Program Counter and the latency are updated
+ * as the imm and its step in CycleClock would; when the fused instruction is
+ * stepped, the LockRegister ends unlocked, as after the two instructions.
+ *
+ * @author Joao Bispo
+ */
+public class FusedImmediate extends FusedInstruction {
+
+    /**
+     * @param first the imm instruction
+     * @param upperHalf the immediate of the imm instruction
+     * @param second the type B instruction, built with the whole immediate
+     * @param secondRecord the second trace instruction, with its original
+     * immediate
+     * @param processor the processor which executes the instructions
+     */
+    public FusedImmediate(Instruction first, int upperHalf, Instruction second,
+            TraceRecord secondRecord, MbProcessor processor) {
+        super(first, second, secondRecord, processor);
+        this.upperHalf = upperHalf;
+        lockReg = processor.getLockRegister();
+        spr = processor.getSpecialRegisters();
+    }
+
+    @Override
+    public void execute() {
+        // The imm state is not locked, so the immediate is used as it is
+        lockReg.setImediate(upperHalf);
+        spr.incrementPc();
+        current.setAddress(secondAddress);
+        second.execute();
+        // Step of the imm
+        lockReg.step();
+    }
+
+    @Override
+    public int latency() {
+        return first.latency() + second.latency();
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private final int upperHalf;
+
+    // Hardware Blocks
+    private final LockRegister lockReg;
+    private final SpecialPurposeRegisters spr;
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor;
+
+import org.ancora.MicroblazeInterpreter.Instructions.Instruction;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+
+/**
+ * Two instructions which are executed one after the other with a single
+ * dispatch of the processor.
+ *
+ * <p>A fused instruction is stored in the InstructionCache in place of its
+ * first instruction. It can only be executed when the next trace instruction
+ * is the one it was built with (see matches); otherwise the processor
+ * executes only the first instruction.
+ *
+ * <p>The results are the same as executing and stepping the instructions
+ * separately: the first instruction is stepped here, and the second is
+ * stepped by the processor with the latency and the branch of the fused
+ * instruction.
+ *
+ * @author Joao Bispo
+ */
+public class FusedInstruction implements Instruction {
+
+    /**
+     * @param first the instruction of the first trace instruction
+     * @param second the instruction of the second trace instruction
+     * @param secondRecord the second trace instruction
+     * @param processor the processor which executes the instructions
+     */
+    public FusedInstruction(Instruction first, Instruction second,
+            TraceRecord secondRecord, MbProcessor processor) {
+        this.first = first;
+        this.second = second;
+        this.secondRecord = new TraceRecord();
+        this.secondRecord.copyFrom(secondRecord);
+        secondAddress = secondRecord.getAddress();
+        clock = processor.getClock();
+        current = processor.getCurrentInstruction();
+    }
+
+    /**
+     * @param record the trace instruction after the first instruction
+     * @return true if it is the second instruction of this fused instruction
+     */
+    public boolean matches(TraceRecord record) {
+        return secondRecord.isSameInstruction(record);
+    }
+
+    /**
+     * @return the instruction of the first trace instruction, to be executed
+     * alone when the next trace instruction does not match
+     */
+    public Instruction getFirst() {
+        return first;
+    }
+
+    public void execute() {
+        first.execute();
+        clock.step(first);
+        // The second instruction is now the one being executed
+        current.setAddress(secondAddress);
+        second.execute();
+    }
+
+    public int latency() {
+        return second.latency();
+    }
+
+    public boolean isBranch() {
+        return second.isBranch();
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    protected final Instruction first;
+    protected final Instruction second;
+    protected final int secondAddress;
+    private final TraceRecord secondRecord;
+
+    // Hardware Blocks
+    protected final TraceRecord current;
+    private final Clock clock;
+}
@@ -0,0 +1,176 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor;
+
+import org.ancora.MicroblazeInterpreter.Instructions.Instruction;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+
+/**
+ * Direct-mapped cache of decoded instructions, indexed by the address of the
+ * instruction.
+ *
+ * <p>Instructions built by an InstructionBuilder are already bound to the
+ * hardware blocks of the processor and read their operands when executed,
+ * so the same object can be executed every time the address appears in the
+ * trace.
+ *
+ * <p>Each entry keeps a copy of the decoded trace instruction it was built
+ * from. A lookup only hits if the operation and the arguments are the same,
+ * so self-modified code or different instructions which map to the same
+ * address are built again.
+ *
+ * @author Joao Bispo
+ */
+public class InstructionCache {
+
+    /**
+     * Creates a cache with 2^DEFAULT_SIZE_POWER entries.
+     */
+    public InstructionCache() {
+        this(DEFAULT_SIZE_POWER);
+    }
+
+    /**
+     * Creates a cache with 2^sizePower entries.
+     *
+     * @param sizePower
+     */
+    public InstructionCache(int sizePower) {
+        final int size = 1 << sizePower;
+
+        addresses = new int[size];
+        records = new TraceRecord[size];
+        instructions = new Instruction[size];
+        mask = size - 1;
+
+        // Stats
+        hits = 0;
+        misses = 0;
+        mismatches = 0;
+    }
+
+    /**
+     * Returns the instruction built for the address of the given record, if
+     * it was built from the same trace instruction.
+     *
+     * @param record a decoded trace instruction
+     * @return the cached instruction, or null if there is no valid entry
+     */
+    public Instruction lookup(TraceRecord record) {
+        final int address = record.getAddress();
+        final int index = index(address);
+        final Instruction instruction = instructions[index];
+
+        // Check if entry belongs to this address
+        if (instruction == null || addresses[index] != address) {
+            misses++;
+            return null;
+        }
+
+        // Check if it was built from the same instruction
+        if (!records[index].isSameInstruction(record)) {
+            mismatches++;
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return instruction;
+    }
+
+    /**
+     * Stores an instruction in the cache, replacing the previous entry in
+     * the same position.
+     *
+     * @param record the decoded trace instruction used to build it
+     * @param instruction the built instruction
+     */
+    public void store(TraceRecord record, Instruction instruction) {
+        final int address = record.getAddress();
+        final int index = index(address);
+
+        // Records are reused between entries
+        if (records[index] == null) {
+            records[index] = new TraceRecord();
+        }
+
+        addresses[index] = address;
+        records[index].copyFrom(record);
+        instructions[index] = instruction;
+    }
+
+    /**
+     * Converts an instruction address into an index of the table. Instruction
+     * addresses are word-aligned, so the two least significant bits are
+     * discarded.
+     *
+     * @param address
+     * @return
+     */
+    private int index(int address) {
+        return (address >>> WORD_POWER) & mask;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return how many lookups found an entry for the address, but built from
+     * a different trace instruction.
+     */
+    public long getMismatches() {
+        return mismatches;
+    }
+
+    public String stats() {
+        StringBuilder builder = new StringBuilder(100);
+
+        long accesses = hits + misses;
+        float hitrate = (float) hits / (float) accesses;
+        hitrate *= 100;
+
+        builder.append("Total Acesses:" + accesses + "\n");
+        builder.append("Hit-rate:" + hitrate + "\n");
+        builder.append("Mismatches:" + mismatches + "\n");
+
+        return builder.toString();
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private final int[] addresses;
+    private final TraceRecord[] records;
+    private final Instruction[] instructions;
+    private final int mask;
+    // Stats
+    private long hits;
+    private long misses;
+    private long mismatches;
+
+    // Constants
+    /**
+     * Exponent of a base two power. Default number of entries of the cache.
+     */
+    public static final int DEFAULT_SIZE_POWER = 12;
+    private static final int WORD_POWER = 2;
+}
@@ -0,0 +1,166 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor;
+
+import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
+import org.ancora.MicroblazeInterpreter.Instructions.Instruction;
+import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+
+/**
+ * Decides which pairs of consecutive instructions are fused, and builds the
+ * fused instructions.
+ *
+ * <p>Fused pairs:
+ * <br>- imm and the next instruction. If it is a type B instruction which uses
+ * the LockRegister, it is built with the whole 32-bit immediate;
+ * <br>- rsub, rsubk, cmp or cmpu and a conditional branch;
+ * <br>- add, addk, addi or addik and a load.
+ *
+ * <p>Only instructions in consecutive addresses are fused, so an instruction
+ * in a delay slot is not fused with the target of the branch.
+ *
+ * @author Joao Bispo
+ */
+public class InstructionFusion {
+
+    /**
+     * @param head a trace instruction
+     * @param tail the trace instruction executed after head
+     * @return true if the instructions can be fused
+     */
+    public static boolean canFuse(TraceRecord head, TraceRecord tail) {
+        if (tail.getAddress() != head.getAddress() + INSTRUCTION_SIZE) {
+            return false;
+        }
+
+        final int headOpcode = head.getOpcode();
+        final int tailOpcode = tail.getOpcode();
+        if (headOpcode == TraceRecord.UNKNOWN_OPCODE
+                || tailOpcode == TraceRecord.UNKNOWN_OPCODE) {
+            return false;
+        }
+
+        return KINDS[headOpcode * NUM_OPCODES + tailOpcode] != NONE;
+    }
+
+    /**
+     * Builds the fused instruction of two trace instructions which can be
+     * fused (see canFuse).
+     *
+     * @param head the first trace instruction
+     * @param first the instruction built for head
+     * @param tail the second trace instruction
+     * @param second the instruction built for tail
+     * @param processor the processor which executes the instructions
+     * @return the fused instruction
+     */
+    public static FusedInstruction fuse(TraceRecord head, Instruction first,
+            TraceRecord tail, Instruction second, MbProcessor processor) {
+        final int kind = KINDS[head.getOpcode() * NUM_OPCODES + tail.getOpcode()];
+        if (kind != IMMEDIATE) {
+            return new FusedInstruction(first, second, tail, processor);
+        }
+
+        // Same immediate as LockRegister.processImmediate
+        final int upperHalf = head.getImmValue();
+        TraceRecord wideRecord = new TraceRecord();
+        wideRecord.copyFrom(tail);
+        wideRecord.setImm(BitOperations.writeBits(16, 16, upperHalf,
+                tail.getImmValue()));
+        Instruction wide = InstructionBuilder.getBuilder(tail.getOpcode())
+                .build(wideRecord, processor);
+
+        return new FusedImmediate(first, upperHalf, wide, tail, processor);
+    }
+
+    private static void add(byte[] kinds, InstructionBuilder[] heads,
+            InstructionBuilder[] tails, byte kind) {
+        for (InstructionBuilder head : heads) {
+            for (InstructionBuilder tail : tails) {
+                kinds[head.ordinal() * NUM_OPCODES + tail.ordinal()] = kind;
+            }
+        }
+    }
+
+    private static byte[] buildKinds() {
+        byte[] kinds = new byte[NUM_OPCODES * NUM_OPCODES];
+
+        InstructionBuilder[] imm = {InstructionBuilder.imm};
+        add(kinds, imm, InstructionBuilder.values(), PAIR);
+        add(kinds, imm, LOCK_USERS, IMMEDIATE);
+        add(kinds, COMPARES, CONDITIONAL_BRANCHES, PAIR);
+        add(kinds, ADDRESS_COMPUTES, LOADS, PAIR);
+
+        return kinds;
+    }
+
+    // Definitions
+    private static final int INSTRUCTION_SIZE = 4;
+    private static final int NUM_OPCODES = InstructionBuilder.values().length;
+    private static final byte NONE = 0;
+    private static final byte PAIR = 1;
+    private static final byte IMMEDIATE = 2;
+
+    /**
+     * Type B instructions which combine their immediate with the one of a
+     * previous imm.
+     */
+    private static final InstructionBuilder[] LOCK_USERS = {
+        InstructionBuilder.addi, InstructionBuilder.addic,
+        InstructionBuilder.addik, InstructionBuilder.addikc,
+        InstructionBuilder.andi, InstructionBuilder.ori, InstructionBuilder.xori,
+        InstructionBuilder.beqi, InstructionBuilder.beqid,
+        InstructionBuilder.bgei, InstructionBuilder.bgeid,
+        InstructionBuilder.bgti, InstructionBuilder.bgtid,
+        InstructionBuilder.blei, InstructionBuilder.bleid,
+        InstructionBuilder.blti, InstructionBuilder.bltid,
+        InstructionBuilder.bnei, InstructionBuilder.bneid,
+        InstructionBuilder.bri, InstructionBuilder.brai,
+        InstructionBuilder.brid, InstructionBuilder.braid,
+        InstructionBuilder.brlid, InstructionBuilder.bralid,
+        InstructionBuilder.lbui, InstructionBuilder.lhui, InstructionBuilder.lwi,
+        InstructionBuilder.sbi, InstructionBuilder.shi, InstructionBuilder.swi
+    };
+    private static final InstructionBuilder[] COMPARES = {
+        InstructionBuilder.rsub, InstructionBuilder.rsubk,
+        InstructionBuilder.cmp, InstructionBuilder.cmpu
+    };
+    private static final InstructionBuilder[] CONDITIONAL_BRANCHES = {
+        InstructionBuilder.beqi, InstructionBuilder.beqid,
+        InstructionBuilder.bgei, InstructionBuilder.bgeid,
+        InstructionBuilder.bgti, InstructionBuilder.bgtid,
+        InstructionBuilder.blei, InstructionBuilder.bleid,
+        InstructionBuilder.blti, InstructionBuilder.bltid,
+        InstructionBuilder.bnei, InstructionBuilder.bneid
+    };
+    private static final InstructionBuilder[] ADDRESS_COMPUTES = {
+        InstructionBuilder.add, InstructionBuilder.addk,
+        InstructionBuilder.addi, InstructionBuilder.addik
+    };
+    private static final InstructionBuilder[] LOADS = {
+        InstructionBuilder.lw, InstructionBuilder.lwi,
+        InstructionBuilder.lhu, InstructionBuilder.lhui,
+        InstructionBuilder.lbu, InstructionBuilder.lbui
+    };
+    /**
+     * Kind of fusion, indexed by the opcode of the head times NUM_OPCODES
+     * plus the opcode of the tail. Must come after the other definitions.
+     */
+    private static final byte[] KINDS = buildKinds();
+}
@@ -0,0 +1,307 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor;
+
+import java.util.Arrays;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.InstructionMemory;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * A trace decoded once into a table of static instructions and a stream of
+ * ids, one per trace instruction, which index the table.
+ *
+ * <p>Static instructions are identified by their address, operation and
+ * arguments, as in the InstructionCache; each one is decoded and stored
+ * once, and every time it appears again in the trace only its id is added
+ * to the stream. A linked trace does not depend on any processor, so the
+ * same trace can be executed by several processors (see ThreadedEngine).
+ *
+ * <p>The stream is kept in memory, using four bytes per trace instruction,
+ * and has at most MAX_SIZE instructions. Linking costs about as much as a
+ * run of the trace, so it only pays off when the trace is executed several
+ * times (ex.: the same trace with different configurations, or forked data
+ * memories, as in VariantRunner).
+ *
+ * @author Joao Bispo
+ */
+public class LinkedTrace {
+
+    public LinkedTrace() {
+        records = new TraceRecord[INITIAL_STATIC_SIZE];
+        chain = new int[INITIAL_STATIC_SIZE];
+        numStatic = 0;
+        ids = new int[INITIAL_STREAM_SIZE];
+        size = 0;
+        tableAddresses = new int[INITIAL_TABLE_SIZE];
+        tableIds = new int[INITIAL_TABLE_SIZE];
+        Arrays.fill(tableIds, NO_ID);
+        tableSize = 0;
+    }
+
+    /**
+     * Reads the remaining instructions of the given instruction memory into
+     * a new linked trace, and closes the memory.
+     *
+     * @param memory
+     * @return the linked trace, or null if the trace has more than MAX_SIZE
+     * instructions
+     */
+    public static LinkedTrace link(InstructionMemory memory) {
+        return link(memory, null);
+    }
+
+    /**
+     * Same as link, publishing the number of instructions read every
+     * MbProcessor.PUBLISH_INTERVAL instructions. The cycles of the progress
+     * are always zero, and the PC is the address of the last instruction
+     * read.
+     *
+     * @param memory
+     * @param progress where the progress is published, or null
+     * @return the linked trace, or null if the trace has more than MAX_SIZE
+     * instructions
+     */
+    public static LinkedTrace link(InstructionMemory memory,
+            ProcessorProgress progress) {
+        LinkedTrace trace = new LinkedTrace();
+        TraceRecord record = new TraceRecord();
+        while (memory.nextInstruction(record)) {
+            if (trace.add(record) == NO_ID) {
+                console.warn("link: Trace has more than " + MAX_SIZE
+                        + " instructions, and cannot be linked.");
+                memory.close();
+                return null;
+            }
+
+            if (progress != null && trace.size % MbProcessor.PUBLISH_INTERVAL == 0) {
+                progress.publish(trace.size, 0, record.getAddress());
+            }
+        }
+
+        memory.close();
+
+        if (progress != null) {
+            progress.publish(trace.size, 0, record.getAddress());
+        }
+        return trace;
+    }
+
+    /**
+     * Adds a trace instruction to the end of the stream.
+     *
+     * @param record a decoded trace instruction
+     * @return the id of the static instruction of the record, or -1 if the
+     * stream already has MAX_SIZE instructions
+     */
+    public int add(TraceRecord record) {
+        if (size == ids.length) {
+            if (size == MAX_SIZE) {
+                return NO_ID;
+            }
+
+            // Doubles the capacity, without overflowing
+            int[] newIds = new int[(int) Math.min(2L * size, MAX_SIZE)];
+            System.arraycopy(ids, 0, newIds, 0, size);
+            ids = newIds;
+        }
+
+        final int id = getId(record);
+        ids[size] = id;
+        size++;
+
+        return id;
+    }
+
+    /**
+     * Returns the id of the static instruction of the given record, adding a
+     * new static instruction if it has not appeared before.
+     *
+     * <p>Addresses are kept in a hash table with linear probing, which
+     * points to the last static instruction added for each address. Static
+     * instructions with the same address (ex.: self-modified code) are
+     * chained, from the newest to the oldest.
+     *
+     * @param record
+     * @return the id of the static instruction
+     */
+    private int getId(TraceRecord record) {
+        final int address = record.getAddress();
+        int index = index(address);
+        while (tableIds[index] != NO_ID) {
+            if (tableAddresses[index] == address) {
+                // Search the static instructions of the address
+                int id = tableIds[index];
+                while (id != NO_ID) {
+                    if (records[id].isSameInstruction(record)) {
+                        return id;
+                    }
+                    id = chain[id];
+                }
+
+                final int newId = addStatic(record, tableIds[index]);
+                tableIds[index] = newId;
+                return newId;
+            }
+            index = (index + 1) & (tableIds.length - 1);
+        }
+
+        // New address
+        final int newId = addStatic(record, NO_ID);
+        tableAddresses[index] = address;
+        tableIds[index] = newId;
+        tableSize++;
+        if (tableSize * 2 > tableIds.length) {
+            growTable();
+        }
+
+        return newId;
+    }
+
+    /**
+     * @param record
+     * @param next the id of the previous static instruction with the same
+     * address, or NO_ID
+     * @return the id of the new static instruction
+     */
+    private int addStatic(TraceRecord record, int next) {
+        if (numStatic == records.length) {
+            TraceRecord[] newRecords = new TraceRecord[numStatic * 2];
+            System.arraycopy(records, 0, newRecords, 0, numStatic);
+            records = newRecords;
+
+            int[] newChain = new int[numStatic * 2];
+            System.arraycopy(chain, 0, newChain, 0, numStatic);
+            chain = newChain;
+        }
+
+        TraceRecord copy = new TraceRecord();
+        copy.copyFrom(record);
+        records[numStatic] = copy;
+        chain[numStatic] = next;
+        numStatic++;
+
+        return numStatic - 1;
+    }
+
+    /**
+     * Doubles the hash table of addresses, and inserts the addresses again.
+     */
+    private void growTable() {
+        final int[] oldAddresses = tableAddresses;
+        final int[] oldIds = tableIds;
+
+        tableAddresses = new int[oldIds.length * 2];
+        tableIds = new int[oldIds.length * 2];
+        Arrays.fill(tableIds, NO_ID);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] == NO_ID) {
+                continue;
+            }
+
+            int index = index(oldAddresses[i]);
+            while (tableIds[index] != NO_ID) {
+                index = (index + 1) & (tableIds.length - 1);
+            }
+            tableAddresses[index] = oldAddresses[i];
+            tableIds[index] = oldIds[i];
+        }
+    }
+
+    /**
+     * Instruction addresses are word-aligned, so the two least significant
+     * bits are discarded.
+     *
+     * @param address
+     * @return the first position of the address in the hash table
+     */
+    private int index(int address) {
+        return (address >>> WORD_POWER) & (tableIds.length - 1);
+    }
+
+    /**
+     * @return the number of trace instructions in the stream
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of different static instructions
+     */
+    public int getNumStatic() {
+        return numStatic;
+    }
+
+    /**
+     * @param id
+     * @return the decoded trace instruction of the static instruction with
+     * the given id. The record should not be modified.
+     */
+    public TraceRecord getRecord(int id) {
+        return records[id];
+    }
+
+    /**
+     * @param index position in the stream
+     * @return the id of the static instruction at the given position
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @return the array with the stream of ids, without copying. Only the
+     * first size() positions are valid.
+     */
+    int[] getIds() {
+        return ids;
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private TraceRecord[] records;
+    /**
+     * Id of the previous static instruction with the same address, indexed
+     * by id.
+     */
+    private int[] chain;
+    private int numStatic;
+    private int[] ids;
+    private int size;
+    // Hash table of addresses
+    private int[] tableAddresses;
+    private int[] tableIds;
+    private int tableSize;
+
+    // Utilities
+    private static final Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    /**
+     * Maximum number of instructions of a linked trace, the largest size of
+     * an array in most virtual machines.
+     */
+    public static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+    private static final int INITIAL_STATIC_SIZE = 1024;
+    private static final int INITIAL_STREAM_SIZE = 64 * 1024;
+    private static final int INITIAL_TABLE_SIZE = 2048;
+    private static final int NO_ID = -1;
+    private static final int WORD_POWER = 2;
+}
@@ -16,20 +16,17 @@
  */
 package org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import org.ancora.MicroblazeInterpreter.Commons.WarningLog;
 import org.ancora.MicroblazeInterpreter.Configuration.MbConfiguration;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemoryPlus;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.InstructionMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.ProcessorProfile.Phase;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
 import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
 import org.ancora.MicroblazeInterpreter.Instructions.Instruction;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
-import org.ancora.MicroblazeInterpreter.Parser.TraceData;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
 import org.ancora.MicroblazeInterpreter.Support.NumberCounter;
 import org.ancora.jCommons.Console;
 import org.ancora.jCommons.DefaultConsole;
@@ -59,28 +56,41 @@ public class MbProcessor implements MicroBlazeProcessor {
         this.configuration = configuration;
 
 
-        notImplemented = new HashSet<String>();
+        notImplemented = new UnknownOperations();
+        instructionCache = new InstructionCache();
+        profile = null;
+        addressCounter = null;
+        fusion = true;
+        fusedExecutions = 0;
+        progress = null;
+        instructionCount = 0;
+        record = new TraceRecord();
+        nextRecord = new TraceRecord();
     }
 
+    /**
+     * Runs the rest of the trace. The instruction memory is closed at the end
+     * of the run, even if an instruction fails.
+     */
     public void run() {
-        // Fetch instruction
-        String instruction = instructionMemory.nextInstruction();
-        // Initialize address counter
-        NumberCounter counter = new NumberCounter();
-
-        // Run Trace File
-        while (instruction != null) {
-            // Process instruction
-            processInstruction(instruction, counter);
+        try {
+            runTrace();
+        } finally {
+            instructionMemory.close();
+        }
 
-            // Fetch next instruction
-            instruction = instructionMemory.nextInstruction();
+        if (progress != null) {
+            progress.finish();
         }
 
+        // Show the warnings of the run before the results
+        warnings.flush();
+
         // Show how many not implemented operations where found
         int notImplementedNumber = notImplemented.size();
         if (notImplementedNumber > 0) {
             console.warn(notImplementedNumber + " instructions not implemented.");
+            console.warn("Occurrences:\n" + notImplemented);
         }
 
         // Show contents of counter
@@ -89,30 +99,93 @@ public class MbProcessor implements MicroBlazeProcessor {
 
     }
 
+    private void runTrace() {
+        // Run Trace File
+        if (profile != null) {
+            runProfiled();
+        } else if (fusion) {
+            runFused();
+        } else {
+            final NumberCounter counter = addressCounter;
+            int pending = 0;
+            while (instructionMemory.nextInstruction(record)) {
+                // Count instruction address
+                if (counter != null) {
+                    counter.addInt(record.getAddress());
+                }
+                // Process instruction
+                processInstruction(record);
+                // Publish progress
+                if (++pending == PUBLISH_INTERVAL) {
+                    addInstructions(pending);
+                    pending = 0;
+                }
+            }
+            addInstructions(pending);
+        }
+    }
+
     /**
-     * Processes the given instruction.
+     * Runs at most the given number of trace instructions, and stops with the
+     * instruction memory positioned after the last one. The processor can
+     * continue with run or another call to runFor.
+     *
+     * <p>Instructions are executed one by one, without fusion or profiling,
+     * so the processor stops exactly at the given instruction (ex.: to save a
+     * Checkpoint).
      *
-     * @param instruction
+     * @param instructions maximum number of trace instructions to run
+     * @return the number of trace instructions read, which is smaller than
+     * the given number if the trace ended
      */
-    private void processInstruction(String instruction, NumberCounter counter) {
-        // Check instruction address
-        String stringAddress = InstructionParser.getMemoryAddress(instruction);
-        int decodedAddress = Integer.valueOf(stringAddress, 16);
-        counter.addInt(decodedAddress);
+    public long runFor(long instructions) {
+        final NumberCounter counter = addressCounter;
+        long executed = 0;
+        int pending = 0;
+        while (executed < instructions
+                && instructionMemory.nextInstruction(record)) {
+            if (counter != null) {
+                counter.addInt(record.getAddress());
+            }
+            processInstruction(record);
+            executed++;
+            if (++pending == PUBLISH_INTERVAL) {
+                addInstructions(pending);
+                pending = 0;
+            }
+        }
+        addInstructions(pending);
 
-        // Check if instruction is in cache
+        return executed;
+    }
 
-        // If instruction is not in cache, create it an add to cache
+    /**
+     * Adds trace instructions to the total executed by the processor, and
+     * publishes the progress, if enabled. Called by the run loops every
+     * PUBLISH_INTERVAL instructions and when they end, so the loops only
+     * increment a local variable per instruction.
+     *
+     * @param executed instructions executed since the last call
+     */
+    void addInstructions(int executed) {
+        instructionCount += executed;
+        if (progress != null) {
+            progress.publish(instructionCount, clock.getLatency(),
+                    specialRegisters.getPc());
+        }
+    }
 
-        TraceData data = InstructionParser.parseInstruction(instruction);
-        String opName = data.getOpName();
-        InstructionBuilder instBuilder = getInstruction(opName);
+    /**
+     * Processes the given instruction.
+     *
+     * @param record
+     */
+    private void processInstruction(TraceRecord record) {
+        Instruction inst = decode(record);
         // Check if instruction could be built
-        if (instBuilder == null) {
+        if (inst == null) {
             return;
         }
-        // Build instruction
-        Instruction inst = instBuilder.build(data, this);
 
         // Executes Instructions
         inst.execute();
@@ -122,43 +195,186 @@ public class MbProcessor implements MicroBlazeProcessor {
     }
 
     /**
-     * Returns the InstructionBuilder that corresponds to the given name.
+     * Same as the loop in run, reading one trace instruction ahead to execute
+     * fused instructions (see InstructionFusion).
      *
-     * @param opName
-     * @return
+     * <p>When a fused instruction is found in the cache and the next trace
+     * instruction is its second instruction, both are executed with a single
+     * dispatch. Otherwise, instructions are executed one by one, and each pair
+     * which can be fused replaces its first instruction in the cache.
      */
-    private InstructionBuilder getInstruction(String opName) {
-        InstructionBuilder instBuilder = null;
+    private void runFused() {
+        final NumberCounter counter = addressCounter;
+        int pending = 0;
+        boolean hasInstruction = instructionMemory.nextInstruction(record);
+        while (hasInstruction) {
+            if (counter != null) {
+                counter.addInt(record.getAddress());
+            }
+            Instruction inst = decodeCached(record);
+            final boolean hasNext = instructionMemory.nextInstruction(nextRecord);
+
+            boolean canFuse = true;
+            if (inst instanceof FusedInstruction) {
+                FusedInstruction fused = (FusedInstruction) inst;
+                if (hasNext && fused.matches(nextRecord)) {
+                    if (counter != null) {
+                        counter.addInt(nextRecord.getAddress());
+                    }
+                    fused.execute();
+                    clock.step(fused);
+                    fusedExecutions++;
+                    pending += 2;
+                    if (pending >= PUBLISH_INTERVAL) {
+                        addInstructions(pending);
+                        pending = 0;
+                    }
+                    hasInstruction = instructionMemory.nextInstruction(record);
+                    continue;
+                }
+
+                // Next instruction is different, do not fuse again
+                inst = fused.getFirst();
+                canFuse = false;
+            }
 
-        try {
-            instBuilder = InstructionBuilder.valueOf(opName);
-        } catch (IllegalArgumentException ex) {
-            if (!notImplemented.contains(opName)) {
-                console.warn("getInstruction: Asked for a MicroBlaze Instruction " +
-                        "which is not implemented (" + opName + ")");
-                notImplemented.add(opName);
+            if (inst != null) {
+                inst.execute();
+                clock.step(inst);
+
+                if (canFuse && hasNext
+                        && InstructionFusion.canFuse(record, nextRecord)) {
+                    Instruction second = decode(nextRecord);
+                    instructionCache.store(record, InstructionFusion.fuse(
+                            record, inst, nextRecord, second, this));
+                }
+            }
+
+            if (++pending >= PUBLISH_INTERVAL) {
+                addInstructions(pending);
+                pending = 0;
+            }
+            record.copyFrom(nextRecord);
+            hasInstruction = hasNext;
+        }
+        addInstructions(pending);
+    }
+
+    /**
+     * Same as the loop in run, measuring the time of each phase of the
+     * processing of the instructions in the profile.
+     */
+    private void runProfiled() {
+        long time = System.nanoTime();
+        int pending = 0;
+        while (true) {
+            boolean hasInstruction = instructionMemory.nextInstruction(record);
+            long now = System.nanoTime();
+            profile.addTime(Phase.fetch, now - time);
+            time = now;
+            if (!hasInstruction) {
+                addInstructions(pending);
+                return;
+            }
+            if (++pending == PUBLISH_INTERVAL) {
+                addInstructions(pending);
+                pending = 0;
+            }
+
+            if (addressCounter != null) {
+                addressCounter.addInt(record.getAddress());
             }
+            Instruction inst = decode(record);
+            now = System.nanoTime();
+            profile.addTime(Phase.build, now - time);
+            time = now;
+            if (inst == null) {
+                continue;
+            }
+
+            inst.execute();
+            now = System.nanoTime();
+            profile.addTime(Phase.execute, now - time);
+            time = now;
+
+            clock.step(inst);
+            now = System.nanoTime();
+            profile.addTime(Phase.step, now - time);
+            time = now;
+
+            profile.addInstruction(record.getOpcode(), inst.latency());
         }
-        return instBuilder;
     }
 
     /**
-     * Show contents of address counter.
+     * Returns the instruction for the given record, from the cache or built
+     * and added to the cache.
      *
-     * @param counter
+     * <p>Fused instructions in the cache are returned as their first
+     * instruction, since only runFused checks the next trace instruction.
+     * This also keeps fused instructions from being fused again as the
+     * second instruction of a pair.
+     *
+     * @param record
+     * @return the instruction, or null if the operation is not implemented
      */
-    private void showCounter(NumberCounter counter) {
-        Map<Integer, Integer> map = counter.getTable();
-        System.out.println("Number of addresses:" + map.size());
+    Instruction decode(TraceRecord record) {
+        Instruction inst = decodeCached(record);
+        if (inst instanceof FusedInstruction) {
+            return ((FusedInstruction) inst).getFirst();
+        }
+
+        return inst;
+    }
 
-        // Get keyset and sort it
-        Set<Integer> keys = map.keySet();
-        Integer[] keysArray = keys.toArray(new Integer[keys.size()]);
-        Arrays.sort(keysArray);
+    /**
+     * Same as decode, but returns fused instructions as they are in the
+     * cache (see runFused).
+     *
+     * @param record
+     * @return the instruction, or null if the operation is not implemented
+     */
+    private Instruction decodeCached(TraceRecord record) {
+        // Check if instruction is in cache
+        Instruction inst = instructionCache.lookup(record);
 
-        for (Integer key : keysArray) {
-            System.out.println("Address:" + key + ";Count:" + map.get(key));
+        // If instruction is not in cache, create it an add to cache
+        if (inst == null) {
+            InstructionBuilder instBuilder = getInstruction(record);
+            // Check if instruction could be built
+            if (instBuilder == null) {
+                return null;
+            }
+            // Build instruction
+            inst = instBuilder.build(record, this);
+            instructionCache.store(record, inst);
         }
+
+        return inst;
+    }
+
+    /**
+     * Returns the InstructionBuilder that corresponds to the operation of the
+     * given record. The opcode was decoded with the name of the operation, so
+     * the builder comes directly from the table indexed by ordinal.
+     *
+     * <p>Operations which are not implemented are counted, and a warning is
+     * shown the first time each one appears.
+     *
+     * @param data
+     * @return the builder, or null if the operation is not implemented
+     */
+    private InstructionBuilder getInstruction(TraceRecord data) {
+        final int opcode = data.getOpcode();
+        if (opcode != TraceRecord.UNKNOWN_OPCODE) {
+            return InstructionBuilder.getBuilder(opcode);
+        }
+
+        if (notImplemented.add(data) && warnings.accept("getInstruction")) {
+            warnings.warn("getInstruction: Asked for a MicroBlaze Instruction " +
+                    "which is not implemented (" + data.getOpName() + ")");
+        }
+        return null;
     }
 
     public InstructionMemory getInstructionMemory() {
@@ -185,6 +401,110 @@ public class MbProcessor implements MicroBlazeProcessor {
         return dataMemoryPlus;
     }
 
+    /**
+     * @return the cache of decoded instructions used by this processor
+     */
+    public InstructionCache getInstructionCache() {
+        return instructionCache;
+    }
+
+    /**
+     * Enables the measurement of runs of the processor. Measurements are
+     * added to the given profile.
+     *
+     * @param profile the profile, or null to disable the measurements
+     */
+    public void setProfile(ProcessorProfile profile) {
+        this.profile = profile;
+    }
+
+    public ProcessorProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Enables counting how many times each instruction address is executed.
+     *
+     * @param addressCounter where the addresses are counted, or null to
+     * disable the counting
+     */
+    public void setAddressCounter(NumberCounter addressCounter) {
+        this.addressCounter = addressCounter;
+    }
+
+    public NumberCounter getAddressCounter() {
+        return addressCounter;
+    }
+
+    /**
+     * Enables the fusion of pairs of instructions (see InstructionFusion).
+     * Runs with a profile are never fused, so each operation is measured.
+     *
+     * @param fusion true to fuse instructions
+     */
+    public void setFusion(boolean fusion) {
+        this.fusion = fusion;
+    }
+
+    public boolean isFusion() {
+        return fusion;
+    }
+
+    /**
+     * Enables publishing the progress of runs, so it can be read by other
+     * threads while the processor runs.
+     *
+     * @param progress where the progress is published, or null to disable
+     */
+    public void setProgress(ProcessorProgress progress) {
+        this.progress = progress;
+    }
+
+    public ProcessorProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return the number of trace instructions executed by run and runFor,
+     * including the ones with operations which are not implemented
+     */
+    public long getInstructionCount() {
+        return instructionCount;
+    }
+
+    /**
+     * Used when the state of a processor is restored or copied (ex.:
+     * Checkpoint), so the new processor continues the count of the original.
+     *
+     * @param instructionCount
+     */
+    public void setInstructionCount(long instructionCount) {
+        this.instructionCount = instructionCount;
+    }
+
+    /**
+     * @return how many times two instructions were executed as a fused
+     * instruction
+     */
+    public long getFusedExecutions() {
+        return fusedExecutions;
+    }
+
+    /**
+     * @return the record with the trace instruction being executed. The same
+     * record is reused for every instruction.
+     */
+    public TraceRecord getCurrentInstruction() {
+        return record;
+    }
+
+    /**
+     * @return the operations found in the trace which are not implemented
+     */
+    public UnknownOperations getNotImplemented() {
+        return notImplemented;
+    }
+
     // INSTANCE VARIABLES
     // State
     private final InstructionMemory instructionMemory;
@@ -195,10 +515,28 @@ public class MbProcessor implements MicroBlazeProcessor {
     private final DataMemoryPlus dataMemoryPlus;
     private final MbConfiguration configuration;
 
+    // Decoded instructions
+    private final InstructionCache instructionCache;
+    private final TraceRecord record;
+    private final TraceRecord nextRecord;
+    private boolean fusion;
+    private long fusedExecutions;
+    private ProcessorProgress progress;
+    private long instructionCount;
+
     // Debug
-    private final Set<String> notImplemented;
+    private final UnknownOperations notImplemented;
+    private ProcessorProfile profile;
+    private NumberCounter addressCounter;
     // Utilities
     private final Console console = DefaultConsole.getConsole();
+    private final WarningLog warnings = WarningLog.getLog();
+
+    // Definitions
+    /**
+     * Number of trace instructions between publications of the progress.
+     */
+    public static final int PUBLISH_INTERVAL = 1 << 16;
 
     public MbConfiguration getConfiguration() {
         return configuration;
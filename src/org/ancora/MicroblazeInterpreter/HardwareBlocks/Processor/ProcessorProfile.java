@@ -0,0 +1,183 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor;
+
+import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
+
+/**
+ * Measurements of a run of the processor: the time spent in each phase of
+ * the processing of an instruction, and the number of instructions and
+ * cycles of each operation.
+ *
+ * <p>Values are kept in arrays of primitives, indexed by the ordinal of the
+ * Phase and of the InstructionBuilder. The processor only measures runs
+ * when it is given a profile (see MbProcessor.setProfile).
+ *
+ * @author Joao Bispo
+ */
+public class ProcessorProfile {
+
+    /**
+     * Phases of the processing of an instruction.
+     */
+    public enum Phase {
+
+        /**
+         * Reading and parsing the next instruction of the trace.
+         */
+        fetch,
+        /**
+         * Looking up the instruction in the cache, and building it when it
+         * is not there.
+         */
+        build,
+        /**
+         * Executing the instruction.
+         */
+        execute,
+        /**
+         * Advancing the clock.
+         */
+        step;
+    }
+
+    public ProcessorProfile() {
+        phaseNanos = new long[Phase.values().length];
+        counts = new long[NUM_OPCODES];
+        cycles = new long[NUM_OPCODES];
+    }
+
+    /**
+     * Adds time to a phase.
+     *
+     * @param phase
+     * @param nanos
+     */
+    public void addTime(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Counts an executed instruction.
+     *
+     * @param opcode the ordinal of the InstructionBuilder of the instruction
+     * @param latency the cycles of the instruction
+     */
+    public void addInstruction(int opcode, int latency) {
+        counts[opcode]++;
+        cycles[opcode] += latency;
+    }
+
+    public long getTime(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return the time of all the phases, in nanoseconds
+     */
+    public long getTotalTime() {
+        long total = 0;
+        for (long nanos : phaseNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    /**
+     * @param opcode the ordinal of an InstructionBuilder
+     * @return the number of executed instructions with the operation
+     */
+    public long getCount(int opcode) {
+        return counts[opcode];
+    }
+
+    /**
+     * @param opcode the ordinal of an InstructionBuilder
+     * @return the sum of the latencies of the executed instructions with the
+     * operation
+     */
+    public long getCycles(int opcode) {
+        return cycles[opcode];
+    }
+
+    /**
+     * Returns the profile in CSV. Each line has a kind (phase or operation),
+     * a name and two values: the nanoseconds of a phase, or the number of
+     * instructions and cycles of an operation. Operations which were not
+     * executed are not included.
+     *
+     * @return
+     */
+    public String toCsv() {
+        StringBuilder builder = new StringBuilder(1024);
+        builder.append("kind,name,value,cycles\n");
+        for (Phase phase : Phase.values()) {
+            builder.append("phase,").append(phase.name()).append(",")
+                    .append(getTime(phase)).append(",\n");
+        }
+        for (int opcode = 0; opcode < NUM_OPCODES; opcode++) {
+            if (counts[opcode] == 0) {
+                continue;
+            }
+            builder.append("operation,").append(InstructionBuilder.getBuilder(opcode).name())
+                    .append(",").append(counts[opcode])
+                    .append(",").append(cycles[opcode]).append("\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the profile in JSON, with an object with the nanoseconds of
+     * each phase and an object with the count and cycles of each executed
+     * operation.
+     *
+     * @return
+     */
+    public String toJson() {
+        StringBuilder builder = new StringBuilder(1024);
+        builder.append("{\n  \"phases\": {");
+        String separator = "\n";
+        for (Phase phase : Phase.values()) {
+            builder.append(separator).append("    \"").append(phase.name())
+                    .append("\": ").append(getTime(phase));
+            separator = ",\n";
+        }
+        builder.append("\n  },\n  \"operations\": {");
+        separator = "\n";
+        for (int opcode = 0; opcode < NUM_OPCODES; opcode++) {
+            if (counts[opcode] == 0) {
+                continue;
+            }
+            builder.append(separator).append("    \"")
+                    .append(InstructionBuilder.getBuilder(opcode).name())
+                    .append("\": {\"count\": ").append(counts[opcode])
+                    .append(", \"cycles\": ").append(cycles[opcode]).append("}");
+            separator = ",\n";
+        }
+        builder.append("\n  }\n}\n");
+        return builder.toString();
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private final long[] phaseNanos;
+    private final long[] counts;
+    private final long[] cycles;
+
+    // Definitions
+    private static final int NUM_OPCODES = InstructionBuilder.values().length;
+}
@@ -0,0 +1,87 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor;
+
+/**
+ * Progress of a run of the processor, which can be read by other threads
+ * while the processor runs (ex.: ProgressReporter).
+ *
+ * <p>The processor counts instructions in local variables and only
+ * publishes the progress every MbProcessor.PUBLISH_INTERVAL instructions, so
+ * the values lag behind the processor by at most that number of
+ * instructions. The values are written by a single thread; they may come
+ * from different publications when read by other threads.
+ *
+ * @author Joao Bispo
+ */
+public class ProcessorProgress {
+
+    public ProcessorProgress() {
+        instructions = 0;
+        cycles = 0;
+        pc = 0;
+        finished = false;
+    }
+
+    /**
+     * Called by the processor.
+     *
+     * @param instructions trace instructions executed until now
+     * @param cycles latency of the clock
+     * @param pc program counter
+     */
+    public void publish(long instructions, int cycles, int pc) {
+        this.cycles = cycles;
+        this.pc = pc;
+        // Written last, so readers that see it also see the other values
+        this.instructions = instructions;
+    }
+
+    /**
+     * Called by the processor when the trace ends.
+     */
+    public void finish() {
+        finished = true;
+    }
+
+    public long getInstructions() {
+        return instructions;
+    }
+
+    public int getCycles() {
+        return cycles;
+    }
+
+    public int getPc() {
+        return pc;
+    }
+
+    /**
+     * @return true if the processor reached the end of the trace
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private volatile long instructions;
+    private volatile int cycles;
+    private volatile int pc;
+    private volatile boolean finished;
+}
@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor;
+
+import org.ancora.MicroblazeInterpreter.Instructions.Instruction;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.MicroblazeInterpreter.Support.NumberCounter;
+
+/**
+ * Executes a LinkedTrace on a processor with threaded code: the instructions
+ * of all the static instructions of the trace are built before the run, in
+ * a table indexed by id, and the run follows the stream of ids.
+ *
+ * <p>Executing a trace instruction is an access to the table and the calls
+ * to execute and step; the trace is not read, decoded or looked up in the
+ * InstructionCache during the run.
+ *
+ * <p>Instructions are executed one by one, without fusion. The trace is
+ * linked once, and each processor which runs it builds its own engine (ex.:
+ * the variants of VariantRunner); a single run of a trace is not faster
+ * than MbProcessor.run, since linking reads and decodes the whole trace.
+ *
+ * @author Joao Bispo
+ */
+public class ThreadedEngine {
+
+    /**
+     * Builds the instructions of the static instructions of the trace.
+     *
+     * @param processor the processor which executes the trace
+     * @param trace
+     */
+    public ThreadedEngine(MbProcessor processor, LinkedTrace trace) {
+        this.processor = processor;
+        this.trace = trace;
+        clock = processor.getClock();
+        current = processor.getCurrentInstruction();
+
+        final int numStatic = trace.getNumStatic();
+        instructions = new Instruction[numStatic];
+        addresses = new int[numStatic];
+        for (int id = 0; id < numStatic; id++) {
+            TraceRecord record = trace.getRecord(id);
+            addresses[id] = record.getAddress();
+            // Operations which are not implemented are counted during the run
+            if (record.getOpcode() == TraceRecord.UNKNOWN_OPCODE) {
+                continue;
+            }
+
+            instructions[id] = processor.decode(record);
+        }
+    }
+
+    /**
+     * Executes all the trace instructions of the stream.
+     *
+     * @return the number of trace instructions executed, including the ones
+     * with operations which are not implemented
+     */
+    public long run() {
+        final Instruction[] instructions = this.instructions;
+        final int[] addresses = this.addresses;
+        final int[] ids = trace.getIds();
+        final int size = trace.size();
+        final NumberCounter counter = processor.getAddressCounter();
+        final Clock clock = this.clock;
+        final TraceRecord current = this.current;
+
+        int pending = 0;
+        for (int i = 0; i < size; i++) {
+            final int id = ids[i];
+            final int address = addresses[id];
+            // The address of the instruction being executed is read by the
+            // data memory when there are uninitialized reads
+            current.setAddress(address);
+            if (counter != null) {
+                counter.addInt(address);
+            }
+
+            final Instruction inst = instructions[id];
+            if (inst != null) {
+                inst.execute();
+                clock.step(inst);
+            } else {
+                processor.decode(trace.getRecord(id));
+            }
+
+            if (++pending == MbProcessor.PUBLISH_INTERVAL) {
+                processor.addInstructions(pending);
+                pending = 0;
+            }
+        }
+        processor.addInstructions(pending);
+
+        return size;
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private final LinkedTrace trace;
+    /**
+     * Instruction of each static instruction, or null if the operation is
+     * not implemented.
+     */
+    private final Instruction[] instructions;
+    private final int[] addresses;
+
+    // Hardware Blocks
+    private final MbProcessor processor;
+    private final Clock clock;
+    private final TraceRecord current;
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor;
+
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+
+/**
+ * Counts how many times each operation which is not implemented appears in
+ * a trace.
+ *
+ * <p>Operations are identified by the characters of their names, which are
+ * compared directly with the record; Strings are only created when the
+ * results are shown. Traces usually have few different operations which are
+ * not implemented, so they are kept in arrays and searched linearly.
+ *
+ * @author Joao Bispo
+ */
+public class UnknownOperations {
+
+    public UnknownOperations() {
+        names = new byte[INITIAL_SIZE][];
+        counts = new long[INITIAL_SIZE];
+        size = 0;
+    }
+
+    /**
+     * Counts the operation of the given record.
+     *
+     * @param record a trace instruction with an operation which is not
+     * implemented
+     * @return true if it is the first time the operation appears
+     */
+    public boolean add(TraceRecord record) {
+        for (int i = 0; i < size; i++) {
+            if (record.hasMnemonic(names[i])) {
+                counts[i]++;
+                return false;
+            }
+        }
+
+        // New operation
+        if (size == names.length) {
+            byte[][] newNames = new byte[size * 2][];
+            System.arraycopy(names, 0, newNames, 0, size);
+            names = newNames;
+
+            long[] newCounts = new long[size * 2];
+            System.arraycopy(counts, 0, newCounts, 0, size);
+            counts = newCounts;
+        }
+        names[size] = record.getMnemonic();
+        counts[size] = 1;
+        size++;
+
+        return true;
+    }
+
+    /**
+     * @return the number of different operations found
+     */
+    public int size() {
+        return size;
+    }
+
+    public String getName(int index) {
+        StringBuilder builder = new StringBuilder(names[index].length);
+        for (byte c : names[index]) {
+            builder.append((char) c);
+        }
+        return builder.toString();
+    }
+
+    public long getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * @return the total number of instructions with an operation which is
+     * not implemented
+     */
+    public long getTotal() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(20 * size);
+        for (int i = 0; i < size; i++) {
+            builder.append(getName(i)).append(":").append(counts[i]).append("\n");
+        }
+        return builder.toString();
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private byte[][] names;
+    private long[] counts;
+    private int size;
+
+    // Definitions
+    private static final int INITIAL_SIZE = 8;
+}
@@ -112,6 +112,40 @@ public class LockRegister {
         }
     }
 
+    /**
+     * @return how many steps the register takes to be unlocked: 2 after an
+     * imm, 1 if locked and 0 if unlocked
+     */
+    public int getStepsToUnlock() {
+        return STEPS_TO_UNLOCK - state.ordinal();
+    }
+
+    /**
+     * @return the value given by the last imm, even if the register is no
+     * longer locked
+     */
+    public int getStoredImmediate() {
+        return immediate;
+    }
+
+    /**
+     * Puts the register in the state given by getStepsToUnlock and
+     * getStoredImmediate.
+     *
+     * @param stepsToUnlock
+     * @param immediate
+     */
+    public void restore(int stepsToUnlock, int immediate) {
+        if (stepsToUnlock < 0 || stepsToUnlock > STEPS_TO_UNLOCK) {
+            console.warn("restore: Invalid number of steps (" + stepsToUnlock
+                    + "). Register stays " + state + ".");
+            return;
+        }
+
+        this.immediate = immediate;
+        state = lockState.values()[STEPS_TO_UNLOCK - stepsToUnlock];
+    }
+
     enum lockState {
         imm,
         locked,
@@ -125,4 +159,7 @@ public class LockRegister {
 
     // Utilities
     private final Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    private static final int STEPS_TO_UNLOCK = 2;
 }
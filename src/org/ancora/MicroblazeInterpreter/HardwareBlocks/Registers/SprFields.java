@@ -0,0 +1,186 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers;
+
+import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * MicroBlaze's Special Purpose Registers, implemented with one int field per
+ * register.
+ *
+ * <p>The PC and the carry bit are accessed directly, without boxing or
+ * lookups, since they are used by almost every instruction. Only supports
+ * the registers in SpecialRegister; SprMap can be used for registers which
+ * are not known at compile time.
+ *
+ * @author Joao Bispo
+ */
+public class SprFields implements SpecialPurposeRegisters {
+
+    public SprFields() {
+        pc = 0;
+        msr = 0;
+        esr = 0;
+    }
+
+    /**
+     * Reads the contents of a special purpose register.
+     *
+     * @param address the address of the register
+     * @return the contents of the register, or 0 if the register does not
+     * exist
+     */
+    public int read(int address) {
+        if (address == RPC_ADDRESS) {
+            return pc;
+        }
+        if (address == RMSR_ADDRESS) {
+            return msr;
+        }
+        if (address == RESR_ADDRESS) {
+            return esr;
+        }
+
+        console.warn("read: Trying to read from address of Special Register " +
+                "that doesn't exist (" + address + ")");
+        return 0;
+    }
+
+    /**
+     * Reads the contents of a special purpose register.
+     *
+     * @param register the register to read from
+     * @return the contents of the register
+     */
+    public int read(SpecialRegister register) {
+        switch (register) {
+            case rpc:
+                return pc;
+            case rmsr:
+                return msr;
+            case resr:
+                return esr;
+            default:
+                return read(register.getAddress());
+        }
+    }
+
+    /**
+     * Writes the contents of a special purpose register.
+     *
+     * @param register the register to write to
+     * @param value the value to be written
+     */
+    public void write(SpecialRegister register, int value) {
+        switch (register) {
+            case rpc:
+                pc = value;
+                break;
+            case rmsr:
+                msr = value;
+                break;
+            case resr:
+                esr = value;
+                break;
+            default:
+                write(register.getAddress(), value);
+                break;
+        }
+    }
+
+    /**
+     * Writes the contents of a special purpose register. If register doesn't
+     * exist, the register file is not modified (see class SpecialRegister).
+     *
+     * @param address the address of the register
+     * @param value the value to be written
+     */
+    public void write(int address, int value) {
+        if (address == RPC_ADDRESS) {
+            pc = value;
+        } else if (address == RMSR_ADDRESS) {
+            msr = value;
+        } else if (address == RESR_ADDRESS) {
+            esr = value;
+        } else {
+            console.warn("write: Trying to write to address of Special Register " +
+                    "that doesn't exist (" + address + ")");
+        }
+    }
+
+    public int getCarryBit() {
+        return (msr >>> CARRY_POSITION) & 1;
+    }
+
+    public void writeCarryBit(int carryBit) {
+        if ((carryBit & ~1) != 0) {
+            console.warn("writeCarryBit: Value is not 1 or 0 (" + carryBit + ")");
+            return;
+        }
+
+        // Carry and carry copy have the same value
+        msr = (msr & ~CARRY_MASK) | (-carryBit & CARRY_MASK);
+    }
+
+    public void writeDzoBit(int dzo) {
+        msr = BitOperations.writeBit(MsrBit.DZO.getPosition(), dzo, msr);
+    }
+
+    public void writeDecBit(int dec) {
+        esr = BitOperations.writeBit(EsrBit.DEC.getPosition(), dec, esr);
+    }
+
+    public void writeEcBits(int ec) {
+        esr = BitOperations.writeBits(EsrBit.EC.getPosition(),
+                EsrBit.EC.getSize(), ec, esr);
+    }
+
+    public int getPc() {
+        return pc;
+    }
+
+    public void writePc(int pc) {
+        this.pc = pc;
+    }
+
+    public void incrementPc() {
+        pc += 4;
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private int pc;
+    private int msr;
+    private int esr;
+
+    // Utilities
+    private final Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    private static final int RPC_ADDRESS = SpecialRegister.rpc.getAddress();
+    private static final int RMSR_ADDRESS = SpecialRegister.rmsr.getAddress();
+    private static final int RESR_ADDRESS = SpecialRegister.resr.getAddress();
+    private static final int CARRY_POSITION = MsrBit.C.getPosition();
+    /**
+     * Bits C and CC of the MSR.
+     */
+    private static final int CARRY_MASK = (1 << MsrBit.C.getPosition())
+            | (1 << MsrBit.CC.getPosition());
+}
@@ -31,8 +31,9 @@ public interface Builder {
     * Builds a MicroBlaze instruction, ready to execute.
     *
     * @param data Data parsed from a trace instruction
+    * @param variant variant bits of the instruction (see Variant)
     * @param processor a MicroBlaze Processor
     * @return MicroBlaze instruction ready to execute
     */
-   public Instruction build(TraceData data, MicroBlazeProcessor processor);
+   public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor);
 }
@@ -25,95 +25,120 @@ import org.ancora.MicroblazeInterpreter.Parser.TraceData;
  *
  * <p>To add a new instruction, after creating a class which implements the
  * MbInstruction and the MbBuilder interface, add a new enum which initializes
- * with a default constructor of that class.
+ * with a default constructor of that class and the variant bits of the
+ * instruction.
  * 
  * 
  * @author Joao Bispo
  */
-public enum InstructionBuilder implements Builder {
+public enum InstructionBuilder {
 
-   add(new MbAdd()),
-   addc(new MbAdd()),
-   addk(new MbAdd()),
-   addkc(new MbAdd()),
-   addi(new MbAddi()),
-   addic(new MbAddi()),
-   addik(new MbAddi()),
-   addikc(new MbAddi()),
-   imm(new MbImm()),
-   and(new MbAnd()),
-   andi(new MbAndi()),
-   beqi(new MbBeqi()),
-   beqid(new MbBeqi()),
-   bgei(new MbBgei()),
-   bgeid(new MbBgei()),
-   bgti(new MbBgti()),
-   bgtid(new MbBgti()),
-   blei(new MbBlei()),
-   bleid(new MbBlei()),
-   blti(new MbBlti()),
-   bltid(new MbBlti()),
-   bnei(new MbBnei()),
-   bneid(new MbBnei()),
-   br(new MbBr()),
-   bra(new MbBr()),
-   brd(new MbBr()),
-   brad(new MbBr()),
-   brld(new MbBr()),
-   brald(new MbBr()),
-   bri(new MbBri()),
-   brai(new MbBri()),
-   brid(new MbBri()),
-   braid(new MbBri()),
-   brlid(new MbBri()),
-   bralid(new MbBri()),
-   bsrli(new MbBsi()),
-   bsrai(new MbBsi()),
-   bslli(new MbBsi()),
-   cmp(new MbCmp()),
-   cmpu(new MbCmp()),
-   idiv(new MbIdiv()),
-   idivu(new MbIdiv()),
-   lbu(new MbLbu()),
-   lbui(new MbLbui()),
-   lhu(new MbLhu()),
-   lhui(new MbLhui()),
-   lw(new MbLw()),
-   lwi(new MbLwi()),
-   mul(new MbMul()),
-   or(new MbOr()),
-   ori(new MbOri()),
-   rsub(new MbRsub()),
-   rsubk(new MbRsub()),
-   rtsd(new MbRtsd()),
-   sb(new MbSb()),
-   sbi(new MbSbi()),
-   sext16(new MbSext16()),
-   sext8(new MbSext8()),
-   sh(new MbSh()),
-   shi(new MbShi()),
-   sra(new MbSra()),
-   srl(new MbSrl()),
-   sw(new MbSw()),
-   swi(new MbSwi()),
-   xori(new MbXori());
+   add(new MbAdd(), Variant.NONE),
+   addc(new MbAdd(), Variant.C),
+   addk(new MbAdd(), Variant.K),
+   addkc(new MbAdd(), Variant.K | Variant.C),
+   addi(new MbAddi(), Variant.NONE),
+   addic(new MbAddi(), Variant.C),
+   addik(new MbAddi(), Variant.K),
+   addikc(new MbAddi(), Variant.K | Variant.C),
+   imm(new MbImm(), Variant.NONE),
+   and(new MbAnd(), Variant.NONE),
+   andi(new MbAndi(), Variant.NONE),
+   beqi(new MbBeqi(), Variant.NONE),
+   beqid(new MbBeqi(), Variant.D),
+   bgei(new MbBgei(), Variant.NONE),
+   bgeid(new MbBgei(), Variant.D),
+   bgti(new MbBgti(), Variant.NONE),
+   bgtid(new MbBgti(), Variant.D),
+   blei(new MbBlei(), Variant.NONE),
+   bleid(new MbBlei(), Variant.D),
+   blti(new MbBlti(), Variant.NONE),
+   bltid(new MbBlti(), Variant.D),
+   bnei(new MbBnei(), Variant.NONE),
+   bneid(new MbBnei(), Variant.D),
+   br(new MbBr(), Variant.NONE),
+   bra(new MbBr(), Variant.A),
+   brd(new MbBr(), Variant.D),
+   brad(new MbBr(), Variant.A | Variant.D),
+   brld(new MbBr(), Variant.L | Variant.D),
+   brald(new MbBr(), Variant.A | Variant.L | Variant.D),
+   bri(new MbBri(), Variant.NONE),
+   brai(new MbBri(), Variant.A),
+   brid(new MbBri(), Variant.D),
+   braid(new MbBri(), Variant.A | Variant.D),
+   brlid(new MbBri(), Variant.L | Variant.D),
+   bralid(new MbBri(), Variant.A | Variant.L | Variant.D),
+   bsrli(new MbBsi(), Variant.NONE),
+   bsrai(new MbBsi(), Variant.T),
+   bslli(new MbBsi(), Variant.S),
+   cmp(new MbCmp(), Variant.NONE),
+   cmpu(new MbCmp(), Variant.U),
+   idiv(new MbIdiv(), Variant.NONE),
+   idivu(new MbIdiv(), Variant.U),
+   lbu(new MbLbu(), Variant.NONE),
+   lbui(new MbLbui(), Variant.NONE),
+   lhu(new MbLhu(), Variant.NONE),
+   lhui(new MbLhui(), Variant.NONE),
+   lw(new MbLw(), Variant.NONE),
+   lwi(new MbLwi(), Variant.NONE),
+   mul(new MbMul(), Variant.NONE),
+   or(new MbOr(), Variant.NONE),
+   ori(new MbOri(), Variant.NONE),
+   rsub(new MbRsub(), Variant.NONE),
+   rsubk(new MbRsub(), Variant.K),
+   rtsd(new MbRtsd(), Variant.NONE),
+   sb(new MbSb(), Variant.NONE),
+   sbi(new MbSbi(), Variant.NONE),
+   sext16(new MbSext16(), Variant.NONE),
+   sext8(new MbSext8(), Variant.NONE),
+   sh(new MbSh(), Variant.NONE),
+   shi(new MbShi(), Variant.NONE),
+   sra(new MbSra(), Variant.NONE),
+   srl(new MbSrl(), Variant.NONE),
+   sw(new MbSw(), Variant.NONE),
+   swi(new MbSwi(), Variant.NONE),
+   xori(new MbXori(), Variant.NONE);
 
 
    /**
     * Constructor
     *
     * @param builder
+    * @param variant variant bits of the instruction (see Variant)
     */
-   private InstructionBuilder(Builder builder) {
+   private InstructionBuilder(Builder builder, int variant) {
       this.builder = builder;
+      this.variant = variant;
    }
 
 
 
    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
-      return builder.build(data, processor);
+      return builder.build(data, variant, processor);
+   }
+
+   /**
+    * @return the variant bits of the instruction (see Variant)
+    */
+   public int getVariant() {
+      return variant;
+   }
+
+   /**
+    * Returns the InstructionBuilder with the given ordinal, without the copy
+    * made by values().
+    *
+    * @param opcode the ordinal of the InstructionBuilder
+    * @return
+    */
+   public static InstructionBuilder getBuilder(int opcode) {
+      return OPCODES[opcode];
    }
 
    // INSTANCE VARIABLES
    private final Builder builder;
+   private final int variant;
+
+   // Definitions
+   private static final InstructionBuilder[] OPCODES = values();
 }
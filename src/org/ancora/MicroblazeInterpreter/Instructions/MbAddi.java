@@ -22,7 +22,6 @@ import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProce
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 import org.ancora.jCommons.Console;
 import org.ancora.jCommons.DefaultConsole;
@@ -51,17 +50,18 @@ public class MbAddi implements Instruction, Builder {
         lockReg = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
-        return new MbAddi(data, processor);
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
+        return new MbAddi(data, variant, processor);
     }
 
     /**
      * Constructor for using this object as a MbInstruction
      *
      * @param data parsed trace data
+     * @param variant variant bits of the instruction
      * @param processor a MicroBlaze processor
      */
-    public MbAddi(TraceData data, MicroBlazeProcessor processor) {
+    public MbAddi(TraceData data, int variant, MicroBlazeProcessor processor) {
         // Signal this object as "executable"
         execute = true;
 
@@ -70,11 +70,8 @@ public class MbAddi implements Instruction, Builder {
         regs = processor.getRegisterFile();
         lockReg = processor.getLockRegister();
 
-        // Parse the data
-        final String opName = data.getOpName();
-
         // Check bitC
-        final boolean hasC = opName.contains(C_CHAR);
+        final boolean hasC = Variant.has(variant, Variant.C);
         if(hasC) {
             cBit = true;
         }
@@ -83,7 +80,7 @@ public class MbAddi implements Instruction, Builder {
         }
 
         // Check bitK
-        final boolean hasK = opName.contains(K_CHAR);
+        final boolean hasK = Variant.has(variant, Variant.K);
         if(hasK) {
             kBit = true;
         }
@@ -92,13 +89,13 @@ public class MbAddi implements Instruction, Builder {
         }
 
         // Get rA
-        regA = InstructionParser.parseRegister(data.getR2());
+        regA = data.getR2Number();
 
         // Get rB
-        imm = data.getImm();
+        imm = data.getImmValue();
 
         // Get rD
-        regD = InstructionParser.parseRegister(data.getR1());
+        regD = data.getR1Number();
 
     }
 
@@ -183,8 +180,6 @@ public class MbAddi implements Instruction, Builder {
     private final LockRegister lockReg;
 
     // Constants
-    private final String C_CHAR = "c";
-    private final String K_CHAR = "k";
     
     private final int LATENCY = 1;
     private final boolean IS_BRANCH = false;
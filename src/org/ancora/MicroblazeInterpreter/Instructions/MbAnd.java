@@ -18,7 +18,6 @@ package org.ancora.MicroblazeInterpreter.Instructions;
 
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -40,7 +39,7 @@ public class MbAnd implements Instruction, Builder {
         regs = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
         return new MbAnd(data, processor);
     }
 
@@ -55,13 +54,13 @@ public class MbAnd implements Instruction, Builder {
         regs = processor.getRegisterFile();
 
         // Get rA
-        regA = InstructionParser.parseRegister(data.getR2());
+        regA = data.getR2Number();
 
         // Get rB
-        regB = InstructionParser.parseRegister(data.getR3());
+        regB = data.getR3Number();
 
         // Get rD
-        regD = InstructionParser.parseRegister(data.getR1());
+        regD = data.getR1Number();
 
     }
 
@@ -19,7 +19,6 @@ package org.ancora.MicroblazeInterpreter.Instructions;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -42,7 +41,7 @@ public class MbAndi implements Instruction, Builder {
         lockReg = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
         return new MbAndi(data, processor);
     }
 
@@ -58,13 +57,13 @@ public class MbAndi implements Instruction, Builder {
         lockReg = processor.getLockRegister();
 
         // Get rA
-        regA = InstructionParser.parseRegister(data.getR2());
+        regA = data.getR2Number();
 
         // Get rB
-        imm = data.getImm();
+        imm = data.getImmValue();
 
         // Get rD
-        regD = InstructionParser.parseRegister(data.getR1());
+        regD = data.getR1Number();
 
     }
 
@@ -20,7 +20,6 @@ import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProce
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -44,30 +43,31 @@ public class MbBlti implements Instruction, Builder {
         spr = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
-        return new MbBlti(data, processor);
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
+        return new MbBlti(data, variant, processor);
     }
 
     /**
      * Constructor for using this object as a MbInstruction
      *
      * @param data parsed trace data
+     * @param variant variant bits of the instruction
      * @param processor a MicroBlaze processor
      */
-    public MbBlti(TraceData data, MicroBlazeProcessor processor) {
+    public MbBlti(TraceData data, int variant, MicroBlazeProcessor processor) {
         // Assign Hardware Blocks
         regs = processor.getRegisterFile();
         lockReg = processor.getLockRegister();
         spr = processor.getSpecialRegisters();
 
         // Get rD
-        regA = InstructionParser.parseRegister(data.getR1());
+        regA = data.getR1Number();
 
         // Get rB
-        imm = data.getImm();
+        imm = data.getImmValue();
 
-        // Check bitC
-        final boolean hasD = data.getOpName().contains(D_CHAR);
+        // Check bitD
+        final boolean hasD = Variant.has(variant, Variant.D);
         if(hasD) {
             dBit = true;
         }
@@ -126,5 +126,4 @@ public class MbBlti implements Instruction, Builder {
     
     // Constants
     private final boolean IS_BRANCH = true;
-    private final String D_CHAR = "d";
 }
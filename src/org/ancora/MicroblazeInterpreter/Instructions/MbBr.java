@@ -19,7 +19,6 @@ package org.ancora.MicroblazeInterpreter.Instructions;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -45,24 +44,25 @@ public class MbBr implements Instruction, Builder {
         spr = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
-        return new MbBr(data, processor);
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
+        return new MbBr(data, variant, processor);
     }
 
     /**
      * Constructor for using this object as a MbInstruction
      *
      * @param data parsed trace data
+     * @param variant variant bits of the instruction
      * @param processor a MicroBlaze processor
      */
-    public MbBr(TraceData data, MicroBlazeProcessor processor) {
+    public MbBr(TraceData data, int variant, MicroBlazeProcessor processor) {
         // Assign Hardware Blocks
         regs = processor.getRegisterFile();
         //lockReg = processor.getLockRegister();
         spr = processor.getSpecialRegisters();
 
         // Check bitD
-        final boolean hasD = data.getOpName().contains(D_CHAR);
+        final boolean hasD = Variant.has(variant, Variant.D);
         if (hasD) {
             dBit = true;
         } else {
@@ -70,22 +70,22 @@ public class MbBr implements Instruction, Builder {
         }
 
         // Check bitL
-        final boolean hasL = data.getOpName().contains(L_CHAR);
+        final boolean hasL = Variant.has(variant, Variant.L);
         if (hasL) {
             lBit = true;
             // Get rD
-            regD = InstructionParser.parseRegister(data.getR1());
+            regD = data.getR1Number();
             // Get rB
-            regB = InstructionParser.parseRegister(data.getR2());
+            regB = data.getR2Number();
         } else {
             lBit = false;
             // Get rB
-            regB = InstructionParser.parseRegister(data.getR1());
+            regB = data.getR1Number();
             regD = -1;
         }
 
         // Check bitA
-        final boolean hasA = data.getOpName().contains(A_CHAR);
+        final boolean hasA = Variant.has(variant, Variant.A);
         if (hasA) {
             aBit = true;
         } else {
@@ -138,7 +138,4 @@ public class MbBr implements Instruction, Builder {
     private final SpecialPurposeRegisters spr;
     // Constants
     private final boolean IS_BRANCH = true;
-    private final String D_CHAR = "d";
-    private final String L_CHAR = "d";
-    private final String A_CHAR = "d";
 }
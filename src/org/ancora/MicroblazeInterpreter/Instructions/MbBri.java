@@ -24,7 +24,6 @@ import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.MsrBit;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialRegister;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -51,17 +50,18 @@ public class MbBri implements Instruction, Builder {
         config = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
-        return new MbBri(data, processor);
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
+        return new MbBri(data, variant, processor);
     }
 
     /**
      * Constructor for using this object as a MbInstruction
      *
      * @param data parsed trace data
+     * @param variant variant bits of the instruction
      * @param processor a MicroBlaze processor
      */
-    public MbBri(TraceData data, MicroBlazeProcessor processor) {
+    public MbBri(TraceData data, int variant, MicroBlazeProcessor processor) {
         // Assign Hardware Blocks
         regs = processor.getRegisterFile();
         lockReg = processor.getLockRegister();
@@ -71,10 +71,10 @@ public class MbBri implements Instruction, Builder {
 
 
         // Get imm
-        imm = data.getImm();
+        imm = data.getImmValue();
 
         // Check bitD
-        final boolean hasD = data.getOpName().contains(D_CHAR);
+        final boolean hasD = Variant.has(variant, Variant.D);
         if (hasD) {
             dBit = true;
         } else {
@@ -82,18 +82,18 @@ public class MbBri implements Instruction, Builder {
         }
 
         // Check bitL
-        final boolean hasL = data.getOpName().contains(L_CHAR);
+        final boolean hasL = Variant.has(variant, Variant.L);
         if (hasL) {
             lBit = true;
             // Get rD
-            regD = InstructionParser.parseRegister(data.getR1());
+            regD = data.getR1Number();
         } else {
             lBit = false;
             regD = -1;
         }
 
         // Check bitA
-        final boolean hasA = data.getOpName().contains(A_CHAR);
+        final boolean hasA = Variant.has(variant, Variant.A);
         if (hasA) {
             aBit = true;
         } else {
@@ -163,7 +163,4 @@ public class MbBri implements Instruction, Builder {
     private final MbConfiguration config;
     // Constants
     private final boolean IS_BRANCH = true;
-    private final String D_CHAR = "d";
-    private final String L_CHAR = "d";
-    private final String A_CHAR = "d";
 }
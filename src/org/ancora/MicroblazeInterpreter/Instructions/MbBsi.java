@@ -20,7 +20,6 @@ import org.ancora.MicroblazeInterpreter.Configuration.MbConfiguration;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -46,33 +45,34 @@ public class MbBsi implements Instruction, Builder {
         config = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
-        return new MbBsi(data, processor);
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
+        return new MbBsi(data, variant, processor);
     }
 
     /**
      * Constructor for using this object as a MbInstruction
      *
      * @param data parsed trace data
+     * @param variant variant bits of the instruction
      * @param processor a MicroBlaze processor
      */
-    public MbBsi(TraceData data, MicroBlazeProcessor processor) {
+    public MbBsi(TraceData data, int variant, MicroBlazeProcessor processor) {
         // Assign Hardware Blocks
         regs = processor.getRegisterFile();
         lockReg = processor.getLockRegister();
         config = processor.getConfiguration();
 
         // Get rA
-        regA = InstructionParser.parseRegister(data.getR2());
+        regA = data.getR2Number();
 
         // Get rB
-        imm = data.getImm();
+        imm = data.getImmValue();
 
         // Get rD
-        regD = InstructionParser.parseRegister(data.getR1());
+        regD = data.getR1Number();
 
         // Check bitS
-        final boolean hasS = !data.getOpName().contains(R_CHAR);
+        final boolean hasS = Variant.has(variant, Variant.S);
         if(hasS) {
             sBit = true;
         }
@@ -81,7 +81,7 @@ public class MbBsi implements Instruction, Builder {
         }
 
         // Check bitT
-        final boolean hasT = data.getOpName().contains(A_CHAR);
+        final boolean hasT = Variant.has(variant, Variant.T);
         if(hasT) {
             tBit = true;
         }
@@ -142,6 +142,4 @@ public class MbBsi implements Instruction, Builder {
     
     // Constants
     private final boolean IS_BRANCH = false;
-    private final String A_CHAR = "a";
-    private final String R_CHAR = "r";
 }
@@ -19,7 +19,6 @@ package org.ancora.MicroblazeInterpreter.Instructions;
 import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -42,31 +41,32 @@ public class MbCmp implements Instruction, Builder {
         regs = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
-        return new MbCmp(data, processor);
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
+        return new MbCmp(data, variant, processor);
     }
 
     /**
      * Constructor for using this object as a MbInstruction
      *
      * @param data parsed trace data
+     * @param variant variant bits of the instruction
      * @param processor a MicroBlaze processor
      */
-    public MbCmp(TraceData data, MicroBlazeProcessor processor) {
+    public MbCmp(TraceData data, int variant, MicroBlazeProcessor processor) {
         // Assign Hardware Blocks
         regs = processor.getRegisterFile();
 
         // Get rA
-        regA = InstructionParser.parseRegister(data.getR2());
+        regA = data.getR2Number();
 
         // Get rB
-        regB = InstructionParser.parseRegister(data.getR3());
+        regB = data.getR3Number();
 
         // Get rD
-        regD = InstructionParser.parseRegister(data.getR1());
+        regD = data.getR1Number();
 
         // Check bitC
-        final boolean hasU = data.getOpName().contains(U_CHAR);
+        final boolean hasU = Variant.has(variant, Variant.U);
         if(hasU) {
             uBit = true;
         }
@@ -126,5 +126,4 @@ public class MbCmp implements Instruction, Builder {
     private final int LATENCY = 1;
     private final boolean IS_BRANCH = false;
     // Constants
-    private final String U_CHAR = "u";
 }
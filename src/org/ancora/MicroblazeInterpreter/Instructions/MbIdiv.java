@@ -21,7 +21,6 @@ import org.ancora.MicroblazeInterpreter.Configuration.MbConfiguration;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -46,33 +45,34 @@ public class MbIdiv implements Instruction, Builder {
         regs = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
-        return new MbIdiv(data, processor);
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
+        return new MbIdiv(data, variant, processor);
     }
 
     /**
      * Constructor for using this object as a MbInstruction
      *
      * @param data parsed trace data
+     * @param variant variant bits of the instruction
      * @param processor a MicroBlaze processor
      */
-    public MbIdiv(TraceData data, MicroBlazeProcessor processor) {
+    public MbIdiv(TraceData data, int variant, MicroBlazeProcessor processor) {
         // Assign Hardware Blocks
         regs = processor.getRegisterFile();
         spr = processor.getSpecialRegisters();
         config = processor.getConfiguration();
 
         // Get rA
-        regA = InstructionParser.parseRegister(data.getR2());
+        regA = data.getR2Number();
 
         // Get rB
-        regB = InstructionParser.parseRegister(data.getR3());
+        regB = data.getR3Number();
 
         // Get rD
-        regD = InstructionParser.parseRegister(data.getR1());
+        regD = data.getR1Number();
 
         // Check bitU
-        final boolean hasU = data.getOpName().contains(U_CHAR);
+        final boolean hasU = Variant.has(variant, Variant.U);
         if(hasU) {
             uBit = true;
         }
@@ -153,5 +153,4 @@ public class MbIdiv implements Instruction, Builder {
     private final MbConfiguration config;
     // Constants
     private final boolean IS_BRANCH = false;
-    private final String U_CHAR = "u";
 }
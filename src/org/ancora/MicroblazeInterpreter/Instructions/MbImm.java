@@ -51,7 +51,7 @@ public class MbImm implements Instruction, Builder {
         lockReg = processor.getLockRegister();
 
         // Parse the data
-        imm = data.getImm();
+        imm = data.getImmValue();
     }
 
 
@@ -68,7 +68,7 @@ public class MbImm implements Instruction, Builder {
         return IS_BRANCH;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
         return new MbImm(data, processor);
     }
 
@@ -20,7 +20,6 @@ import org.ancora.MicroblazeInterpreter.Configuration.MbConfiguration;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemoryPlus;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -44,7 +43,7 @@ public class MbLbu implements Instruction, Builder {
         memory = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
         return new MbLbu(data, processor);
     }
 
@@ -61,13 +60,13 @@ public class MbLbu implements Instruction, Builder {
         memory = processor.getDataMemory();
 
         // Get rA
-        regA = InstructionParser.parseRegister(data.getR2());
+        regA = data.getR2Number();
 
         // Get rB
-        regB = InstructionParser.parseRegister(data.getR3());
+        regB = data.getR3Number();
 
         // Get rD
-        regD = InstructionParser.parseRegister(data.getR1());
+        regD = data.getR1Number();
 
     }
 
@@ -21,7 +21,6 @@ import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemoryPlus
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -46,7 +45,7 @@ public class MbLbui implements Instruction, Builder {
         lockReg = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
         return new MbLbui(data, processor);
     }
 
@@ -64,13 +63,13 @@ public class MbLbui implements Instruction, Builder {
         lockReg = processor.getLockRegister();
 
         // Get rA
-        regA = InstructionParser.parseRegister(data.getR2());
+        regA = data.getR2Number();
 
         // Get rB
-        imm = data.getImm();
+        imm = data.getImmValue();
 
         // Get rD
-        regD = InstructionParser.parseRegister(data.getR1());
+        regD = data.getR1Number();
 
     }
 
@@ -17,11 +17,12 @@
 package org.ancora.MicroblazeInterpreter.Instructions;
 
 import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
+import org.ancora.MicroblazeInterpreter.Commons.WarningLog;
 import org.ancora.MicroblazeInterpreter.Configuration.MbConfiguration;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemoryPlus;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -43,9 +44,10 @@ public class MbLhu implements Instruction, Builder {
         config = null;
         regs = null;
         memory = null;
+        spr = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
         return new MbLhu(data, processor);
     }
 
@@ -60,15 +62,16 @@ public class MbLhu implements Instruction, Builder {
         regs = processor.getRegisterFile();
         config = processor.getConfiguration();
         memory = processor.getDataMemory();
+        spr = processor.getSpecialRegisters();
 
         // Get rA
-        regA = InstructionParser.parseRegister(data.getR2());
+        regA = data.getR2Number();
 
         // Get rB
-        regB = InstructionParser.parseRegister(data.getR3());
+        regB = data.getR3Number();
 
         // Get rD
-        regD = InstructionParser.parseRegister(data.getR1());
+        regD = data.getR1Number();
 
     }
 
@@ -88,8 +91,11 @@ public class MbLhu implements Instruction, Builder {
         if(bit0 == 0) {
             rD = memory.loadHalfword(halfwordAddress);
         } else {
-            System.out.println("lhu: address is not halfword aligned ("+
-                    halfwordAddress+"). Returning 0.");
+            WarningLog warnings = WarningLog.getLog();
+            if(warnings.accept("lhu", spr.getPc())) {
+                warnings.warn("lhu: address is not halfword aligned ("+
+                        halfwordAddress+"). Returning 0.");
+            }
             rD = 0;
         }
 
@@ -119,6 +125,7 @@ public class MbLhu implements Instruction, Builder {
     private final RegisterFile regs;
     private final MbConfiguration config;
     private final DataMemoryPlus memory;
+    private final SpecialPurposeRegisters spr;
     // Constants
     private final boolean IS_BRANCH = false;
 }
@@ -21,7 +21,6 @@ import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -46,27 +45,25 @@ public class MbRsub implements Instruction, Builder {
         regs = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
-        return new MbRsub(data, processor);
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
+        return new MbRsub(data, variant, processor);
     }
 
     /**
      * Constructor for using this object as a MbInstruction
      *
      * @param data parsed trace data
+     * @param variant variant bits of the instruction
      * @param processor a MicroBlaze processor
      */
-    public MbRsub(TraceData data, MicroBlazeProcessor processor) {
+    public MbRsub(TraceData data, int variant, MicroBlazeProcessor processor) {
 
         // Assign Hardware Blocks
         spr = processor.getSpecialRegisters();
         regs = processor.getRegisterFile();
 
-        // Parse the data
-        final String opName = data.getOpName();
-
         // Check bitC
-        final boolean hasC = opName.contains(C_CHAR);
+        final boolean hasC = Variant.has(variant, Variant.C);
         if(hasC) {
             cBit = true;
         }
@@ -75,7 +72,7 @@ public class MbRsub implements Instruction, Builder {
         }
 
         // Check bitK
-        final boolean hasK = opName.contains(K_CHAR);
+        final boolean hasK = Variant.has(variant, Variant.K);
         if(hasK) {
             kBit = true;
         }
@@ -84,13 +81,13 @@ public class MbRsub implements Instruction, Builder {
         }
 
         // Get rA
-        regA = InstructionParser.parseRegister(data.getR2());
+        regA = data.getR2Number();
 
         // Get rB
-        regB = InstructionParser.parseRegister(data.getR3());
+        regB = data.getR3Number();
 
         // Get rD
-        regD = InstructionParser.parseRegister(data.getR1());
+        regD = data.getR1Number();
 
     }
 
@@ -149,8 +146,6 @@ public class MbRsub implements Instruction, Builder {
     private final RegisterFile regs;
 
     // Constants
-    private final String C_CHAR = "c";
-    private final String K_CHAR = "k";
     
     private final int LATENCY = 1;
     private final boolean IS_BRANCH = false;
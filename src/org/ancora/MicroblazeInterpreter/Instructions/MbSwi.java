@@ -17,12 +17,13 @@
 package org.ancora.MicroblazeInterpreter.Instructions;
 
 import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
+import org.ancora.MicroblazeInterpreter.Commons.WarningLog;
 import org.ancora.MicroblazeInterpreter.Configuration.MbConfiguration;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemoryPlus;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
 import org.ancora.MicroblazeInterpreter.Parser.TraceData;
 
 /**
@@ -44,10 +45,11 @@ public class MbSwi implements Instruction, Builder {
         regs = null;
         config = null;
         memory = null;
+        spr = null;
         lockReg = null;
     }
 
-    public Instruction build(TraceData data, MicroBlazeProcessor processor) {
+    public Instruction build(TraceData data, int variant, MicroBlazeProcessor processor) {
         return new MbSwi(data, processor);
     }
 
@@ -62,16 +64,17 @@ public class MbSwi implements Instruction, Builder {
         regs = processor.getRegisterFile();
         config = processor.getConfiguration();
         memory = processor.getDataMemory();
+        spr = processor.getSpecialRegisters();
         lockReg = processor.getLockRegister();
 
         // Get rA
-        regA = InstructionParser.parseRegister(data.getR2());
+        regA = data.getR2Number();
 
         // Get rB
-        imm = data.getImm();
+        imm = data.getImmValue();
 
         // Get rD
-        regD = InstructionParser.parseRegister(data.getR1());
+        regD = data.getR1Number();
 
     }
 
@@ -91,8 +94,11 @@ public class MbSwi implements Instruction, Builder {
         if(bit0 == 0 & bit1 == 0) {
             memory.storeHalfword(wordAddress, rD);
         } else {
-             System.out.println("swi: address is not word aligned ("+
-                    wordAddress+"). Memory is unchanged.");
+            WarningLog warnings = WarningLog.getLog();
+            if(warnings.accept("swi", spr.getPc())) {
+                warnings.warn("swi: address is not word aligned ("+
+                        wordAddress+"). Memory is unchanged.");
+            }
         }
 
     }
@@ -119,6 +125,7 @@ public class MbSwi implements Instruction, Builder {
     private final LockRegister lockReg;
     private final MbConfiguration config;
     private final DataMemoryPlus memory;
+    private final SpecialPurposeRegisters spr;
     
     // Constants
     private final boolean IS_BRANCH = false;
@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Instructions;
+
+/**
+ * Bits which select the variant of a MicroBlaze instruction, as described in
+ * the MicroBlaze Processor Reference Guide.
+ *
+ * <p>Each InstructionBuilder has its variant bits, which are given to the
+ * builders. The bits are combined with a bitwise or
+ * (ex.: brlid is L | D).
+ *
+ * @author Joao Bispo
+ */
+public class Variant {
+
+    /**
+     * @param variant the variant bits of an instruction
+     * @param bit one of the bits of this class
+     * @return true if the bit is set in the variant
+     */
+    public static boolean has(int variant, int bit) {
+        return (variant & bit) != 0;
+    }
+
+    // Definitions
+    /**
+     * No variant bits.
+     */
+    public static final int NONE = 0;
+    /**
+     * Use the carry bit as input.
+     */
+    public static final int C = 1 << 0;
+    /**
+     * Keep the carry bit.
+     */
+    public static final int K = 1 << 1;
+    /**
+     * Branch with delay slot.
+     */
+    public static final int D = 1 << 2;
+    /**
+     * Absolute branch.
+     */
+    public static final int A = 1 << 3;
+    /**
+     * Branch and link.
+     */
+    public static final int L = 1 << 4;
+    /**
+     * Unsigned operation.
+     */
+    public static final int U = 1 << 5;
+    /**
+     * Barrel shift to the left.
+     */
+    public static final int S = 1 << 6;
+    /**
+     * Arithmetic barrel shift.
+     */
+    public static final int T = 1 << 7;
+}
@@ -17,8 +17,7 @@
 
 package org.ancora.MicroblazeInterpreter.Parser;
 
-import org.ancora.jCommons.Console;
-import org.ancora.jCommons.DefaultConsole;
+import org.ancora.MicroblazeInterpreter.Commons.WarningLog;
 
 
 /**
@@ -31,6 +30,9 @@ import org.ancora.jCommons.DefaultConsole;
  * the instruction (number of spaces, position of characters...). This was a
  * design decision, to speed-up the parsing.
  *
+ * <p>The parser keeps no state, so it can be used by several threads at the
+ * same time.
+ *
  * @author Joao Bispo
  */
 public class InstructionParser {
@@ -177,8 +179,11 @@ public class InstructionParser {
         try {
             returnReg = Integer.parseInt(tempRegister);
         } catch (NumberFormatException ex) {
-            console.warn("parseRegister: Could not parse the register ("+
-                    register+"). Returning 0.");
+            WarningLog warnings = WarningLog.getLog();
+            if(warnings.accept("parseRegister")) {
+                warnings.warn("parseRegister: Could not parse the register ("+
+                        register+"). Returning 0.");
+            }
         }
 
         return returnReg;
@@ -189,5 +194,4 @@ public class InstructionParser {
     // Definitions
     private static final char COMMA = ',';
     private static final int BEGIN_INDEX_REG = 1;
-    private static final Console console = DefaultConsole.getConsole();
 }
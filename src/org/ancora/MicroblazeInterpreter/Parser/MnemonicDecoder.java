@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
+
+/**
+ * Decodes the names of MicroBlaze operations, stored as ASCII characters,
+ * into the ordinal of the corresponding InstructionBuilder.
+ *
+ * <p>The names are stored in a trie, flattened into a single table of
+ * transitions indexed by node and character. Decoding a name is one table
+ * access per character; no Strings are created, nothing is hashed and
+ * operations which are not implemented do not raise exceptions.
+ *
+ * <p>Only lowercase letters and digits can appear in names; any other
+ * character makes the name unknown.
+ *
+ * @author Joao Bispo
+ */
+public class MnemonicDecoder {
+
+    /**
+     * @param buffer ASCII characters with the name of an operation
+     * @param begin index of the first character
+     * @param size number of characters
+     * @return the ordinal of the InstructionBuilder with the given name, or
+     * TraceRecord.UNKNOWN_OPCODE if there is none.
+     */
+    public static int decode(byte[] buffer, int begin, int size) {
+        int node = ROOT;
+        for (int i = begin; i < begin + size; i++) {
+            final byte c = buffer[i];
+            if (c < 0) {
+                return TraceRecord.UNKNOWN_OPCODE;
+            }
+
+            // Invalid characters go to the root, which is never a child
+            node = TRANSITIONS[node * ALPHABET_SIZE + SYMBOLS[c]];
+            if (node == ROOT) {
+                return TraceRecord.UNKNOWN_OPCODE;
+            }
+        }
+
+        return OPCODES[node];
+    }
+
+    /**
+     * @param name
+     * @return the ordinal of the InstructionBuilder with the given name, or
+     * TraceRecord.UNKNOWN_OPCODE if there is none.
+     */
+    public static int decode(String name) {
+        byte[] buffer = new byte[name.length()];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (byte) name.charAt(i);
+        }
+
+        return decode(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Maps ASCII characters to the columns of the transition table. Column
+     * zero is used by the characters which cannot appear in names.
+     */
+    private static byte[] buildSymbols() {
+        byte[] symbols = new byte[ASCII_SIZE];
+        byte symbol = 1;
+        for (char c = 'a'; c <= 'z'; c++) {
+            symbols[c] = symbol++;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            symbols[c] = symbol++;
+        }
+
+        return symbols;
+    }
+
+    // Definitions
+    private static final int ASCII_SIZE = 128;
+    /**
+     * Invalid character, 26 letters and 10 digits.
+     */
+    private static final int ALPHABET_SIZE = 1 + 26 + 10;
+    private static final int ROOT = 0;
+    private static final byte[] SYMBOLS = buildSymbols();
+    /**
+     * Next node, indexed by node * ALPHABET_SIZE + symbol.
+     */
+    private static final int[] TRANSITIONS;
+    /**
+     * Ordinal of the InstructionBuilder which ends in each node.
+     */
+    private static final int[] OPCODES;
+
+    /**
+     * Builds the trie with the names of all the InstructionBuilders, and
+     * flattens it into TRANSITIONS and OPCODES. The first node is the root.
+     * Must come after the definition of SYMBOLS.
+     */
+    static {
+        List<int[]> transitions = new ArrayList<int[]>();
+        List<Integer> opcodes = new ArrayList<Integer>();
+        transitions.add(new int[ALPHABET_SIZE]);
+        opcodes.add(TraceRecord.UNKNOWN_OPCODE);
+
+        for (InstructionBuilder builder : InstructionBuilder.values()) {
+            String name = builder.name();
+            int node = ROOT;
+            for (int i = 0; i < name.length(); i++) {
+                final int symbol = SYMBOLS[name.charAt(i)];
+                if (transitions.get(node)[symbol] == ROOT) {
+                    transitions.get(node)[symbol] = transitions.size();
+                    transitions.add(new int[ALPHABET_SIZE]);
+                    opcodes.add(TraceRecord.UNKNOWN_OPCODE);
+                }
+                node = transitions.get(node)[symbol];
+            }
+            opcodes.set(node, builder.ordinal());
+        }
+
+        TRANSITIONS = new int[transitions.size() * ALPHABET_SIZE];
+        OPCODES = new int[opcodes.size()];
+        for (int node = 0; node < transitions.size(); node++) {
+            System.arraycopy(transitions.get(node), 0, TRANSITIONS,
+                    node * ALPHABET_SIZE, ALPHABET_SIZE);
+            OPCODES[node] = opcodes.get(node);
+        }
+    }
+}
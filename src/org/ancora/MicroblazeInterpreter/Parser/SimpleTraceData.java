@@ -51,6 +51,43 @@ public class SimpleTraceData implements TraceData{
       return imm;
    }
 
+   public int getR1Number() {
+      return registerNumber(RD_INDEX);
+   }
+
+   public int getR2Number() {
+      return registerNumber(RA_INDEX);
+   }
+
+   public int getR3Number() {
+      return registerNumber(RB_INDEX);
+   }
+
+   public boolean hasImm() {
+      return imm != null;
+   }
+
+   public int getImmValue() {
+      if(imm == null) {
+         return 0;
+      }
+
+      return imm;
+   }
+
+   /**
+    * @param index
+    * @return the number of the register in the given position, or -1 if
+    * there is no register.
+    */
+   private int registerNumber(int index) {
+      if(registers[index] == null) {
+         return NO_REGISTER;
+      }
+
+      return InstructionParser.parseRegister(registers[index]);
+   }
+
     @Override
    public String toString() {
       int capacity = 100;
@@ -95,6 +132,7 @@ public class SimpleTraceData implements TraceData{
    private static final int RD_INDEX = 0;
    private static final int RA_INDEX = 1;
    private static final int RB_INDEX = 2;
+   private static final int NO_REGISTER = -1;
 
     // State
    private final String opName;
@@ -46,6 +46,27 @@ public interface TraceData {
     */
    public Integer getImm();
 
+   /**
+    * @return the number of the destination register, or -1 if not defined
+    */
+   public int getR1Number();
+   /**
+    * @return the number of the first source register, or -1 if not defined
+    */
+   public int getR2Number();
+   /**
+    * @return the number of the second source register, or -1 if not defined
+    */
+   public int getR3Number();
+   /**
+    * @return true if the instruction has an immediate value
+    */
+   public boolean hasImm();
+   /**
+    * @return the immediate value, or 0 if not defined
+    */
+   public int getImmValue();
+
    /**
     * The maximum number of registers a MicroBlaze trace instruction can have.
     */
@@ -0,0 +1,308 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Parser;
+
+import java.nio.ByteBuffer;
+import org.ancora.MicroblazeInterpreter.Commons.WarningLog;
+
+/**
+ * Parses MicroBlaze trace instructions directly from a buffer of ASCII
+ * characters into a TraceRecord.
+ *
+ * <p>Unlike InstructionParser, this parser does not create Strings or boxed
+ * values: the address, the operation and the arguments are decoded in a
+ * single pass over the characters and written to a record which can be
+ * reused. Objects are only created when a warning has to be shown.
+ *
+ * <p>Expects the same format as InstructionParser: "0x" followed by 8
+ * hexadecimal digits, the name of the operation and the arguments separated
+ * by commas. Registers start with a letter, immediates are decimal numbers.
+ *
+ * <p>Instances are not thread-safe; each thread should use its own parser.
+ *
+ * @author Joao Bispo
+ */
+public class TraceLineParser {
+
+    public TraceLineParser() {
+        scratch = new byte[INITIAL_LINE_SIZE];
+    }
+
+    /**
+     * Parses a trace instruction.
+     *
+     * @param line a trace instruction
+     * @param record where the decoded instruction will be written
+     * @return true if the line is a trace instruction, false otherwise
+     */
+    public boolean parse(CharSequence line, TraceRecord record) {
+        final int size = line.length();
+
+        // Copy characters to the byte buffer
+        if (size > scratch.length) {
+            scratch = new byte[size];
+        }
+        for (int i = 0; i < size; i++) {
+            scratch[i] = (byte) line.charAt(i);
+        }
+
+        return parse(scratch, 0, size, record);
+    }
+
+    /**
+     * Parses a trace instruction stored as ASCII characters in the given
+     * ByteBuffer (ex.: a memory-mapped file). The characters are copied with
+     * a single bulk read, which changes the position of the buffer.
+     *
+     * @param buffer
+     * @param begin index of the first character of the instruction
+     * @param end index after the last character of the instruction
+     * @param record where the decoded instruction will be written
+     * @return true if the line is a trace instruction, false otherwise
+     */
+    public boolean parse(ByteBuffer buffer, int begin, int end, TraceRecord record) {
+        final int size = end - begin;
+
+        if (size > scratch.length) {
+            scratch = new byte[size];
+        }
+        buffer.position(begin);
+        buffer.get(scratch, 0, size);
+
+        return parse(scratch, 0, size, record);
+    }
+
+    /**
+     * Parses a trace instruction stored as ASCII characters in the given
+     * buffer.
+     *
+     * @param buffer
+     * @param begin index of the first character of the instruction
+     * @param end index after the last character of the instruction
+     * @param record where the decoded instruction will be written
+     * @return true if the line is a trace instruction, false otherwise
+     */
+    public boolean parse(byte[] buffer, int begin, int end, TraceRecord record) {
+        record.clear();
+
+        // Check prefix and address
+        if (end - begin < ADDRESS_END || buffer[begin] != '0'
+                || buffer[begin + 1] != 'x') {
+            return false;
+        }
+
+        int address = 0;
+        for (int i = begin + ADDRESS_BEGIN; i < begin + ADDRESS_END; i++) {
+            final int digit = hexDigit(buffer[i]);
+            if (digit < 0) {
+                return false;
+            }
+            address = (address << 4) | digit;
+        }
+        record.setAddress(address);
+
+        // Operation name
+        int index = skipSpaces(buffer, begin + ADDRESS_END, end);
+        final int mnemonicBegin = index;
+        while (index < end && !isSpace(buffer[index])) {
+            index++;
+        }
+        final int mnemonicSize = index - mnemonicBegin;
+        record.setMnemonic(buffer, mnemonicBegin, mnemonicSize);
+        record.setOpcode(MnemonicDecoder.decode(buffer, mnemonicBegin, mnemonicSize));
+
+        // Arguments
+        int numRegisters = 0;
+        index = skipSpaces(buffer, index, end);
+        while (index < end) {
+            if (isLetter(buffer[index])) {
+                index = parseRegister(buffer, index, end, numRegisters, record);
+                numRegisters++;
+            } else {
+                index = parseImmediate(buffer, index, end, record);
+            }
+
+            // Skip separator
+            index = skipSpaces(buffer, index, end);
+            if (index < end && buffer[index] == COMMA) {
+                index = skipSpaces(buffer, index + 1, end);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses a register in the format "r&lt;number&gt;" and stores it in
+     * the record, in the given position.
+     *
+     * @return the index after the register
+     */
+    private int parseRegister(byte[] buffer, int begin, int end, int position,
+            TraceRecord record) {
+        int index = begin + BEGIN_INDEX_REG;
+        int number = 0;
+        boolean valid = index < end && isDigit(buffer[index]);
+        while (index < end && isDigit(buffer[index])) {
+            number = number * 10 + (buffer[index] - '0');
+            index++;
+        }
+
+        // Find the end of the argument
+        while (index < end && !isSeparator(buffer[index])) {
+            valid = false;
+            index++;
+        }
+
+        if (!valid) {
+            if (warnings.accept("parseRegister", record.getAddress())) {
+                warnings.warn("parseRegister: Could not parse the register ("
+                        + ascii(buffer, begin, index) + "). Returning 0.");
+            }
+            number = 0;
+        }
+
+        switch (position) {
+            case RD_INDEX:
+                record.setR1Number(number);
+                break;
+            case RA_INDEX:
+                record.setR2Number(number);
+                break;
+            case RB_INDEX:
+                record.setR3Number(number);
+                break;
+            default:
+                if (warnings.accept("parseRegisters", record.getAddress())) {
+                    warnings.warn("parseRegister: Instruction has more than "
+                            + TraceData.MAX_REGISTERS + " registers. Ignoring ("
+                            + ascii(buffer, begin, index) + ").");
+                }
+                break;
+        }
+
+        return index;
+    }
+
+    /**
+     * Parses a signed decimal immediate and stores it in the record.
+     *
+     * @return the index after the immediate
+     */
+    private int parseImmediate(byte[] buffer, int begin, int end,
+            TraceRecord record) {
+        int index = begin;
+        boolean negative = false;
+        if (buffer[index] == '-' || buffer[index] == '+') {
+            negative = buffer[index] == '-';
+            index++;
+        }
+
+        int value = 0;
+        boolean valid = index < end && isDigit(buffer[index]);
+        while (index < end && isDigit(buffer[index])) {
+            value = value * 10 + (buffer[index] - '0');
+            index++;
+        }
+
+        // Find the end of the argument
+        while (index < end && !isSeparator(buffer[index])) {
+            valid = false;
+            index++;
+        }
+
+        if (!valid) {
+            if (warnings.accept("parseImmediate", record.getAddress())) {
+                warnings.warn("parseImmediate: Could not parse the immediate ("
+                        + ascii(buffer, begin, index) + "). Ignoring it.");
+            }
+            return index;
+        }
+
+        if (negative) {
+            value = -value;
+        }
+        record.setImm(value);
+
+        return index;
+    }
+
+    private static int skipSpaces(byte[] buffer, int index, int end) {
+        while (index < end && isSpace(buffer[index])) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int hexDigit(byte c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private static boolean isSeparator(byte c) {
+        return c == COMMA || isSpace(c);
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(byte c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * Only used when building warnings.
+     */
+    private static String ascii(byte[] buffer, int begin, int end) {
+        StringBuilder builder = new StringBuilder(end - begin);
+        for (int i = begin; i < end; i++) {
+            builder.append((char) buffer[i]);
+        }
+        return builder.toString();
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private byte[] scratch;
+
+    // Utilities
+    private final WarningLog warnings = WarningLog.getLog();
+
+    // Definitions
+    private static final int INITIAL_LINE_SIZE = 128;
+    private static final int ADDRESS_BEGIN = "0x".length();
+    private static final int ADDRESS_END = "0x".length() + 8;
+    private static final int BEGIN_INDEX_REG = 1;
+    private static final byte COMMA = ',';
+    private static final int RD_INDEX = 0;
+    private static final int RA_INDEX = 1;
+    private static final int RB_INDEX = 2;
+}
@@ -0,0 +1,354 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Parser;
+
+import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
+
+/**
+ * Mutable implementation of interface TraceData, with the fields stored as
+ * primitives.
+ *
+ * <p>The same object is meant to be reused for every line of a trace, so
+ * decoding an instruction does not create new objects. The String getters
+ * of TraceData are still supported, but they create the Strings on each
+ * call.
+ *
+ * @author Joao Bispo
+ */
+public class TraceRecord implements TraceData {
+
+    public TraceRecord() {
+        mnemonic = new byte[MAX_MNEMONIC_SIZE];
+        clear();
+    }
+
+    /**
+     * Resets all the fields of the record.
+     */
+    public void clear() {
+        address = 0;
+        opcode = UNKNOWN_OPCODE;
+        mnemonicSize = 0;
+        r1 = NO_REGISTER;
+        r2 = NO_REGISTER;
+        r3 = NO_REGISTER;
+        imm = 0;
+        hasImm = false;
+    }
+
+    /**
+     * Copies all the fields of the given record to this record.
+     *
+     * @param record
+     */
+    public void copyFrom(TraceRecord record) {
+        address = record.address;
+        opcode = record.opcode;
+        mnemonicSize = record.mnemonicSize;
+        System.arraycopy(record.mnemonic, 0, mnemonic, 0, mnemonicSize);
+        r1 = record.r1;
+        r2 = record.r2;
+        r3 = record.r3;
+        imm = record.imm;
+        hasImm = record.hasImm;
+    }
+
+    /**
+     * @param record
+     * @return true if the given record has the same address, operation and
+     * arguments as this record.
+     */
+    public boolean isSameInstruction(TraceRecord record) {
+        if (address != record.address || opcode != record.opcode) {
+            return false;
+        }
+
+        if (r1 != record.r1 || r2 != record.r2 || r3 != record.r3) {
+            return false;
+        }
+
+        if (hasImm != record.hasImm || imm != record.imm) {
+            return false;
+        }
+
+        // Operations which are not implemented are only known by the name
+        if (opcode == UNKNOWN_OPCODE) {
+            return isSameMnemonic(record);
+        }
+
+        return true;
+    }
+
+    private boolean isSameMnemonic(TraceRecord record) {
+        if (mnemonicSize != record.mnemonicSize) {
+            return false;
+        }
+
+        for (int i = 0; i < mnemonicSize; i++) {
+            if (mnemonic[i] != record.mnemonic[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param name ASCII characters of the name of an operation
+     * @return true if the name of the operation of this record is the given
+     * name
+     */
+    public boolean hasMnemonic(byte[] name) {
+        if (mnemonicSize != name.length) {
+            return false;
+        }
+
+        for (int i = 0; i < mnemonicSize; i++) {
+            if (mnemonic[i] != name[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return a copy of the ASCII characters of the name of the operation
+     */
+    public byte[] getMnemonic() {
+        byte[] name = new byte[mnemonicSize];
+        System.arraycopy(mnemonic, 0, name, 0, mnemonicSize);
+        return name;
+    }
+
+    /**
+     * Copies the ASCII characters of the name of the operation to the given
+     * buffer, which must have space for MAX_MNEMONIC_SIZE characters.
+     *
+     * @param buffer
+     * @param begin
+     * @return the number of characters of the name
+     */
+    public int getMnemonic(byte[] buffer, int begin) {
+        System.arraycopy(mnemonic, 0, buffer, begin, mnemonicSize);
+        return mnemonicSize;
+    }
+
+    // Setters used by the decoders
+    public void setAddress(int address) {
+        this.address = address;
+    }
+
+    /**
+     * @param opcode the ordinal of the InstructionBuilder of the operation, or
+     * UNKNOWN_OPCODE if the operation is not implemented
+     */
+    public void setOpcode(int opcode) {
+        this.opcode = opcode;
+    }
+
+    /**
+     * Stores the name of the operation, as ASCII characters. Names bigger than
+     * MAX_MNEMONIC_SIZE are truncated.
+     *
+     * @param buffer
+     * @param begin
+     * @param size
+     */
+    public void setMnemonic(byte[] buffer, int begin, int size) {
+        mnemonicSize = Math.min(size, MAX_MNEMONIC_SIZE);
+        System.arraycopy(buffer, begin, mnemonic, 0, mnemonicSize);
+    }
+
+    public void setR1Number(int r1) {
+        this.r1 = r1;
+    }
+
+    public void setR2Number(int r2) {
+        this.r2 = r2;
+    }
+
+    public void setR3Number(int r3) {
+        this.r3 = r3;
+    }
+
+    public void setImm(int imm) {
+        this.imm = imm;
+        hasImm = true;
+    }
+
+    // Getters
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * @return the ordinal of the InstructionBuilder of the operation, or
+     * UNKNOWN_OPCODE if the operation is not implemented
+     */
+    public int getOpcode() {
+        return opcode;
+    }
+
+    public String getOpName() {
+        if (opcode != UNKNOWN_OPCODE) {
+            return InstructionBuilder.getBuilder(opcode).name();
+        }
+
+        StringBuilder builder = new StringBuilder(mnemonicSize);
+        for (int i = 0; i < mnemonicSize; i++) {
+            builder.append((char) mnemonic[i]);
+        }
+        return builder.toString();
+    }
+
+    public String getR1() {
+        return registerName(r1);
+    }
+
+    public String getR2() {
+        return registerName(r2);
+    }
+
+    public String getR3() {
+        return registerName(r3);
+    }
+
+    public Integer getImm() {
+        if (!hasImm) {
+            return null;
+        }
+
+        return Integer.valueOf(imm);
+    }
+
+    public int getR1Number() {
+        return r1;
+    }
+
+    public int getR2Number() {
+        return r2;
+    }
+
+    public int getR3Number() {
+        return r3;
+    }
+
+    public boolean hasImm() {
+        return hasImm;
+    }
+
+    public int getImmValue() {
+        return imm;
+    }
+
+    private String registerName(int register) {
+        if (register == NO_REGISTER) {
+            return null;
+        }
+
+        return REGISTER_PREFIX + register;
+    }
+
+    /**
+     * @return the instruction in the same format as the lines of the text
+     * traces (ex.: "0x00000050  addik   r13, r0, 7544")
+     */
+    public String toTraceLine() {
+        StringBuilder builder = new StringBuilder(40);
+
+        String hexAddress = Integer.toHexString(address);
+        builder.append(TRACE_PREFIX);
+        for (int i = hexAddress.length(); i < ADDRESS_DIGITS; i++) {
+            builder.append('0');
+        }
+        builder.append(hexAddress);
+        builder.append("  ");
+
+        String opName = getOpName();
+        builder.append(opName);
+        // At least one space after the name of the operation
+        int column = opName.length();
+        do {
+            builder.append(' ');
+            column++;
+        } while (column < OPERATION_COLUMN_SIZE);
+
+        String separator = "";
+        for (int register : new int[]{r1, r2, r3}) {
+            if (register != NO_REGISTER) {
+                builder.append(separator).append(registerName(register));
+                separator = ", ";
+            }
+        }
+        if (hasImm) {
+            builder.append(separator).append(imm);
+        }
+
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(40);
+
+        builder.append(getOpName());
+        String separator = " ";
+        for (int register : new int[]{r1, r2, r3}) {
+            if (register != NO_REGISTER) {
+                builder.append(separator).append(registerName(register));
+                separator = ", ";
+            }
+        }
+        if (hasImm) {
+            builder.append(separator).append(imm);
+        }
+
+        return builder.toString();
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private int address;
+    private int opcode;
+    private final byte[] mnemonic;
+    private int mnemonicSize;
+    private int r1;
+    private int r2;
+    private int r3;
+    private int imm;
+    private boolean hasImm;
+
+    // Definitions
+    /**
+     * Value of the opcode when the operation is not implemented.
+     */
+    public static final int UNKNOWN_OPCODE = -1;
+    /**
+     * Value of the register numbers when the register is not defined.
+     */
+    public static final int NO_REGISTER = -1;
+    /**
+     * Maximum number of characters kept from the name of the operation.
+     */
+    public static final int MAX_MNEMONIC_SIZE = 16;
+    private static final String REGISTER_PREFIX = "r";
+    private static final String TRACE_PREFIX = "0x";
+    private static final int ADDRESS_DIGITS = 8;
+    private static final int OPERATION_COLUMN_SIZE = 8;
+}
@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Support;
+
+import java.io.File;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialRegister;
+
+/**
+ * Final state of a processor after running one trace of a batch, or the
+ * reason why the trace could not be run.
+ *
+ * @author Joao Bispo
+ */
+public class BatchResult {
+
+    private BatchResult(File traceFile, String error, long cycles,
+            int[] specialRegisters, int[] registers, long uninitializedReads,
+            long notImplemented, long nanos) {
+        this.traceFile = traceFile;
+        this.error = error;
+        this.cycles = cycles;
+        this.specialRegisters = specialRegisters;
+        this.registers = registers;
+        this.uninitializedReads = uninitializedReads;
+        this.notImplemented = notImplemented;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Copies the results of a processor which has been run.
+     *
+     * @param traceFile the trace executed by the processor
+     * @param mb the processor
+     * @param uninitializedReads number of uninitialized reads of the data
+     * memory
+     * @param notImplemented number of instructions which were not implemented
+     * @param nanos time it took to load and run the processor
+     * @return the results
+     */
+    public static BatchResult newResult(File traceFile, MicroBlazeProcessor mb,
+            long uninitializedReads, long notImplemented, long nanos) {
+        SpecialPurposeRegisters spr = mb.getSpecialRegisters();
+        SpecialRegister[] sprs = SpecialRegister.values();
+        int[] specialRegisters = new int[sprs.length];
+        for (int i = 0; i < sprs.length; i++) {
+            specialRegisters[i] = spr.read(sprs[i]);
+        }
+
+        RegisterFile regs = mb.getRegisterFile();
+        int[] registers = new int[regs.numRegisters()];
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = regs.read(i);
+        }
+
+        return new BatchResult(traceFile, null, mb.getClock().getLatency(),
+                specialRegisters, registers, uninitializedReads,
+                notImplemented, nanos);
+    }
+
+    /**
+     * @param traceFile the trace which could not be run
+     * @param error why the trace could not be run
+     * @param nanos time spent on the trace
+     * @return the results
+     */
+    public static BatchResult newError(File traceFile, String error, long nanos) {
+        return new BatchResult(traceFile, error, 0, null, null, 0, 0, nanos);
+    }
+
+    public File getTraceFile() {
+        return traceFile;
+    }
+
+    /**
+     * @return true if the trace was run
+     */
+    public boolean isOk() {
+        return error == null;
+    }
+
+    /**
+     * @return why the trace could not be run, or null if it was run
+     */
+    public String getError() {
+        return error;
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return the values of the special purpose registers, in the order of
+     * SpecialRegister.values(), or null if the trace was not run
+     */
+    public int[] getSpecialRegisters() {
+        return specialRegisters;
+    }
+
+    /**
+     * @return the values of the general purpose registers, or null if the
+     * trace was not run
+     */
+    public int[] getRegisters() {
+        return registers;
+    }
+
+    public long getUninitializedReads() {
+        return uninitializedReads;
+    }
+
+    public long getNotImplemented() {
+        return notImplemented;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private final File traceFile;
+    private final String error;
+    private final long cycles;
+    private final int[] specialRegisters;
+    private final int[] registers;
+    private final long uninitializedReads;
+    private final long notImplemented;
+    private final long nanos;
+}
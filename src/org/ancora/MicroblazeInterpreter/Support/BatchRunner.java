@@ -0,0 +1,378 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Support;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ancora.MicroblazeInterpreter.Commons.WarningLog;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.BinaryTraceFormat;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.CompressedTraceFormat;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialRegister;
+import org.ancora.MicroblazeInterpreter.Support.RunProcessor.ConfigParam;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+import org.ancora.jCommons.Disk;
+
+/**
+ * Mini-Program.
+ *
+ * <p>Runs a batch of traces, each one in its own processor, on a pool of
+ * threads, and writes the final state of every processor to a JSON report.
+ *
+ * <p>The traces are given as a folder, where every file ending in ".txt" or
+ * in the extensions of binary and compressed traces is run, or as a manifest,
+ * a text file with the path of one trace per line. Relative paths in the
+ * manifest are relative to the folder of the manifest; empty lines and lines
+ * starting with '#' are ignored.
+ *
+ * <p>The processors are configured with config.properties, as in
+ * RunProcessor. The profile and the address counts are not written for
+ * batches.
+ *
+ * @author Joao Bispo
+ */
+public class BatchRunner {
+
+    /**
+     * @param config options of the interpreter, as in config.properties
+     * @param threads number of traces which are run at the same time
+     */
+    public BatchRunner(Properties config, int threads) {
+        this.config = new Properties();
+        this.config.putAll(config);
+        this.config.setProperty(ConfigParam.profileFile.name(), "");
+        this.config.setProperty(ConfigParam.addressCountsFile.name(), "");
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) {
+        String[] cleanArgs = processArgs(args);
+
+        File propertiesFile = new File(RunProcessor.configFile);
+        if(!propertiesFile.isFile()) {
+            System.out.println("Could not locate the config file ("+RunProcessor.configFile+")");
+            System.out.println("Exiting...");
+            System.exit(1);
+        }
+        Properties config = RunProcessor.file2Properties(propertiesFile);
+
+        File input = new File(cleanArgs[INDEX_TRACES]);
+        List<File> traceFiles = findTraces(input);
+        if(traceFiles == null) {
+            System.out.println("Could not read the traces from \""+input.getPath()+"\".");
+            System.out.println("Exiting...");
+            System.exit(1);
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        if(cleanArgs.length > INDEX_THREADS) {
+            threads = Integer.parseInt(cleanArgs[INDEX_THREADS]);
+        }
+
+        System.out.println("Running "+traceFiles.size()+" traces on "+threads+" threads...");
+        long time = System.nanoTime();
+        List<BatchResult> results = new BatchRunner(config, threads).run(traceFiles);
+        time = System.nanoTime() - time;
+
+        String reportFilename = cleanArgs[INDEX_REPORT];
+        Disk disk = Disk.getDisk();
+        disk.write(disk.safeFile(reportFilename), toJson(results, threads, time));
+
+        int failed = 0;
+        for(BatchResult result : results) {
+            if(!result.isOk()) {
+                failed++;
+            }
+        }
+        System.out.println("Finished in "+(time / NANOS_PER_MILLI)+"ms, "+failed+" traces failed.");
+        System.out.println("Report written to \""+reportFilename+"\".");
+    }
+
+    /**
+     * Runs each trace in its own processor. The processors share nothing, so
+     * the traces are run in parallel, up to the number of threads of the
+     * runner.
+     *
+     * @param traceFiles the traces to run
+     * @return the results, in the same order as the traces
+     */
+    public List<BatchResult> run(List<File> traceFiles) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<BatchResult>> futures = new ArrayList<Future<BatchResult>>(traceFiles.size());
+        for(final File traceFile : traceFiles) {
+            futures.add(pool.submit(new Callable<BatchResult>() {
+                public BatchResult call() {
+                    return runTrace(traceFile);
+                }
+            }));
+        }
+        pool.shutdown();
+
+        List<BatchResult> results = new ArrayList<BatchResult>(traceFiles.size());
+        for(int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                results.add(BatchResult.newError(traceFiles.get(i), "Interrupted", 0));
+            } catch (ExecutionException ex) {
+                results.add(BatchResult.newError(traceFiles.get(i), ex.getCause().toString(), 0));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Loads and runs a processor for a single trace.
+     *
+     * @param traceFile
+     * @return the final state of the processor, or the error which stopped
+     * the run
+     */
+    private BatchResult runTrace(File traceFile) {
+        long time = System.nanoTime();
+        if(!traceFile.isFile()) {
+            return BatchResult.newError(traceFile, "Could not locate the trace file",
+                    System.nanoTime() - time);
+        }
+
+        // Each trace counts and shows its own warnings
+        WarningLog warnings = new WarningLog(console);
+        WarningLog.setLog(warnings);
+        RunProcessor runner = new RunProcessor(config, console);
+        try {
+            MicroBlazeProcessor mb = runner.loadMicroBlaze(traceFile);
+            if(mb == null) {
+                return BatchResult.newError(traceFile, "Could not create the mapped data memory",
+                        System.nanoTime() - time);
+            }
+            mb.run();
+
+            long notImplemented = 0;
+            if(mb instanceof MbProcessor) {
+                notImplemented = ((MbProcessor) mb).getNotImplemented().getTotal();
+            }
+            return BatchResult.newResult(traceFile, mb,
+                    runner.getUninitializedReads().getTotal(), notImplemented,
+                    System.nanoTime() - time);
+        } catch (RuntimeException ex) {
+            console.warn("runTrace: Exception while running \""+traceFile.getPath()+"\"");
+            Logger.getLogger(BatchRunner.class.getName()).log(Level.SEVERE, null, ex);
+            return BatchResult.newError(traceFile, ex.toString(), System.nanoTime() - time);
+        } finally {
+            runner.release();
+            warnings.close();
+            WarningLog.setLog(null);
+            String warningSummary = warnings.summary();
+            if(warningSummary.length() > 0) {
+                console.print("\""+traceFile.getPath()+"\": "+warningSummary);
+            }
+        }
+    }
+
+    /**
+     * Finds the traces of a batch.
+     *
+     * @param input a folder with traces, or a manifest with the paths of the
+     * traces
+     * @return the traces, sorted by name if they were found in a folder, or
+     * null if the input could not be read
+     */
+    public static List<File> findTraces(File input) {
+        List<File> traceFiles = new ArrayList<File>();
+        if(input.isDirectory()) {
+            File[] files = input.listFiles();
+            Arrays.sort(files);
+            for(File file : files) {
+                if(file.isFile() && isTrace(file.getName())) {
+                    traceFiles.add(file);
+                }
+            }
+            return traceFiles;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(input), CHARSET));
+            File folder = input.getAbsoluteFile().getParentFile();
+            String line = reader.readLine();
+            while(line != null) {
+                line = line.trim();
+                if(line.length() > 0 && !line.startsWith(COMMENT)) {
+                    File traceFile = new File(line);
+                    if(!traceFile.isAbsolute()) {
+                        traceFile = new File(folder, line);
+                    }
+                    traceFiles.add(traceFile);
+                }
+                line = reader.readLine();
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(BatchRunner.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
+        } finally {
+            if(reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(BatchRunner.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        }
+
+        return traceFiles;
+    }
+
+    private static boolean isTrace(String filename) {
+        return filename.endsWith(TEXT_EXTENSION)
+                || filename.endsWith(BinaryTraceFormat.EXTENSION)
+                || filename.endsWith(CompressedTraceFormat.EXTENSION);
+    }
+
+    /**
+     * @param results results of a batch
+     * @param threads number of threads used by the batch
+     * @param nanos time it took to run the batch
+     * @return a JSON object with the results of every trace, in order, and
+     * the totals of the batch
+     */
+    public static String toJson(List<BatchResult> results, int threads, long nanos) {
+        StringBuilder builder = new StringBuilder(1024 + results.size() * 512);
+        long totalCycles = 0;
+        int failed = 0;
+
+        builder.append("{\n  \"traces\": [");
+        String separator = "\n";
+        for(BatchResult result : results) {
+            builder.append(separator).append("    {\"trace\": ")
+                    .append(quote(result.getTraceFile().getPath()));
+            separator = ",\n";
+
+            if(!result.isOk()) {
+                failed++;
+                builder.append(", \"status\": \"error\", \"error\": ")
+                        .append(quote(result.getError())).append("}");
+                continue;
+            }
+
+            totalCycles += result.getCycles();
+            builder.append(", \"status\": \"ok\", \"cycles\": ").append(result.getCycles())
+                    .append(", \"nanos\": ").append(result.getNanos())
+                    .append(", \"uninitializedReads\": ").append(result.getUninitializedReads())
+                    .append(", \"notImplemented\": ").append(result.getNotImplemented())
+                    .append(",\n      \"spr\": {");
+            SpecialRegister[] sprs = SpecialRegister.values();
+            int[] specialRegisters = result.getSpecialRegisters();
+            for(int i = 0; i < sprs.length; i++) {
+                if(i > 0) {
+                    builder.append(", ");
+                }
+                builder.append("\"").append(sprs[i].name()).append("\": ")
+                        .append(specialRegisters[i]);
+            }
+            builder.append("},\n      \"registers\": [");
+            int[] registers = result.getRegisters();
+            for(int i = 0; i < registers.length; i++) {
+                if(i > 0) {
+                    builder.append(", ");
+                }
+                builder.append(registers[i]);
+            }
+            builder.append("]}");
+        }
+        builder.append("\n  ],\n  \"threads\": ").append(threads)
+                .append(",\n  \"failed\": ").append(failed)
+                .append(",\n  \"totalCycles\": ").append(totalCycles)
+                .append(",\n  \"nanos\": ").append(nanos)
+                .append("\n}\n");
+        return builder.toString();
+    }
+
+    /**
+     * @param string
+     * @return the string as a JSON string literal
+     */
+    private static String quote(String string) {
+        StringBuilder builder = new StringBuilder(string.length() + 2);
+        builder.append('"');
+        for(int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if(c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if(c < ' ') {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * Process the command line arguments
+     *
+     * @param args
+     * @return
+     */
+    private static String[] processArgs(String[] args) {
+        if(args.length < 2 || args.length > 3) {
+            System.out.println("Usage: [Traces_Folder|Manifest] [Report_File] [Threads]");
+            System.out.println("Example: ./traces ./batch.json 4");
+            System.out.println("If the number of threads is not given, one thread per " +
+                    "processor is used.");
+            System.exit(1);
+        }
+
+        return args;
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private final Properties config;
+    private final int threads;
+
+    // Utilities
+    private final Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    private static final int INDEX_TRACES = 0;
+    private static final int INDEX_REPORT = 1;
+    private static final int INDEX_THREADS = 2;
+    private static final String TEXT_EXTENSION = ".txt";
+    private static final String COMMENT = "#";
+    private static final String CHARSET = "UTF-8";
+    private static final long NANOS_PER_MILLI = 1000000L;
+}
@@ -0,0 +1,180 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Support;
+
+import java.io.File;
+import java.util.LinkedList;
+import java.util.List;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.BinaryTraceFormat;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.BinaryTraceWriter;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.CompressedTraceFormat;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.CompressedTraceWriter;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.InstructionMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.MappedTraceMemory;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.jCommons.Disk;
+
+/**
+ * Mini-Program.
+ *
+ * <p>Converts the text trace files in a folder to the binary format (see
+ * BinaryTraceFormat) or to the compressed format (see
+ * CompressedTraceFormat). Traces are being identified as files which end
+ * with the given extension. Each converted trace is written next to its text
+ * trace, with the extension replaced by ".mbt" or ".mbc".
+ *
+ * @author Joao Bispo
+ */
+public class ConvertTraces {
+
+   public static void main(String[] args) {
+      Disk disk = Disk.getDisk();
+
+      String[] cleanArgs = processArgs(args);
+
+      String tracesFolderpath = cleanArgs[INDEX_TRACE_FOLDER];
+      final String traceSuffix = cleanArgs[INDEX_TRACE_EXTENSION];
+      final String outputSuffix = cleanArgs[INDEX_OUTPUT_EXTENSION];
+
+      // Specify folder with trace files
+      System.out.println("Opening folder \""+tracesFolderpath+"\"...");
+      File tracesFolder = disk.safeFolder(tracesFolderpath);
+
+      // Get all traces files
+      System.out.print("Looking for files which end in \""+traceSuffix+"\"...");
+      File[] candidateTraceFiles = tracesFolder.listFiles();
+      List<File> traceFiles = new LinkedList<File>();
+      for(File file : candidateTraceFiles) {
+         // Check if it is a trace file
+         if(file.getName().endsWith(traceSuffix)) {
+            traceFiles.add(file);
+         }
+      }
+      System.out.println(" found "+traceFiles.size()+" files.");
+
+      // Convert each file
+      for(File traceFile : traceFiles) {
+         String name = traceFile.getName();
+         name = name.substring(0, name.length() - traceSuffix.length());
+         File outputFile = new File(tracesFolder, name + outputSuffix);
+
+         long numInsts;
+         if(outputSuffix.equals(CompressedTraceFormat.EXTENSION)) {
+            numInsts = compressTraceFile(traceFile, outputFile);
+         } else {
+            numInsts = convertTraceFile(traceFile, outputFile);
+         }
+         if(numInsts < 0) {
+            System.out.println(traceFile.getName() + " could not be converted.");
+            continue;
+         }
+         System.out.println(traceFile.getName() + " -> " + outputFile.getName()
+                 + " (" + numInsts + " instructions, " + traceFile.length()
+                 + " -> " + outputFile.length() + " bytes)");
+      }
+   }
+
+   /**
+    * Reads a text trace from a file and writes its instructions to a binary
+    * trace file.
+    *
+    * @param traceFile file with a MicroBlaze trace
+    * @param binaryFile file where the binary trace will be written
+    * @return the number of instructions written, or -1 if an instruction
+    * could not be written (ex.: the trace has more operations than the
+    * format supports). In that case the binary file is deleted.
+    */
+   public static long convertTraceFile(File traceFile, File binaryFile) {
+      InstructionMemory memory = new MappedTraceMemory(traceFile);
+      BinaryTraceWriter writer = new BinaryTraceWriter(binaryFile);
+      TraceRecord record = new TraceRecord();
+
+      while(memory.nextInstruction(record)) {
+         if(!writer.write(record)) {
+            System.out.println("Could not write instruction "+writer.getNumRecords()
+                    +" of \""+traceFile.getName()+"\" ("+record.toTraceLine()+").");
+            memory.close();
+            writer.close();
+            binaryFile.delete();
+            return -1;
+         }
+      }
+      memory.close();
+      writer.close();
+
+      return writer.getNumRecords();
+   }
+
+   /**
+    * Reads a text trace from a file and writes its instructions to a
+    * compressed trace file.
+    *
+    * @param traceFile file with a MicroBlaze trace
+    * @param compressedFile file where the compressed trace will be written
+    * @return the number of instructions written, or -1 if an instruction
+    * could not be written. In that case the compressed file is deleted.
+    */
+   public static long compressTraceFile(File traceFile, File compressedFile) {
+      InstructionMemory memory = new MappedTraceMemory(traceFile);
+      CompressedTraceWriter writer = new CompressedTraceWriter(compressedFile);
+      TraceRecord record = new TraceRecord();
+
+      while(memory.nextInstruction(record)) {
+         if(!writer.write(record)) {
+            System.out.println("Could not write instruction "+writer.getNumRecords()
+                    +" of \""+traceFile.getName()+"\" ("+record.toTraceLine()+").");
+            memory.close();
+            writer.close();
+            compressedFile.delete();
+            return -1;
+         }
+      }
+      memory.close();
+      writer.close();
+
+      return writer.getNumRecords();
+   }
+
+   /**
+    * Process the command line arguments
+    *
+    * @param args
+    * @return
+    */
+    private static String[] processArgs(String[] args) {
+        if(args.length < 2 || args.length > 3) {
+            System.out.println("Usage: [Trace_Folder] [Traces_Extension] [Output_Extension]");
+            System.out.println("Example: ./traces .txt "+CompressedTraceFormat.EXTENSION);
+            System.out.println("Output_Extension can be "+BinaryTraceFormat.EXTENSION+
+                    " (default) or "+CompressedTraceFormat.EXTENSION+".");
+            System.exit(1);
+        }
+
+        if(args.length == 2) {
+            args = new String[]{args[0], args[1], BinaryTraceFormat.EXTENSION};
+        }
+
+        return args;
+    }
+
+
+    // INSTANCE VARIABLES
+    private static final int INDEX_TRACE_FOLDER = 0;
+    private static final int INDEX_TRACE_EXTENSION = 1;
+    private static final int INDEX_OUTPUT_EXTENSION = 2;
+}
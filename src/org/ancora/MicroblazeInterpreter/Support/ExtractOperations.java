@@ -18,13 +18,18 @@
 package org.ancora.MicroblazeInterpreter.Support;
 
 import java.io.File;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
-import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.TraceMemory;
-import org.ancora.MicroblazeInterpreter.Parser.InstructionParser;
-import org.ancora.MicroblazeInterpreter.Parser.TraceData;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.UnknownOperations;
+import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
 import org.ancora.jCommons.Disk;
 
 /**
@@ -33,6 +38,11 @@ import org.ancora.jCommons.Disk;
  * <p>Extracts the operations found in a set of trace files. Traces are being
  * identified as files which end with ".txt".
  *
+ * <p>The files are scanned in parallel, each one in its own OperationCensus,
+ * and the counts are added to a shared OperationTotals. Shows how many times
+ * each operation was found, which operations are not implemented in
+ * InstructionBuilder, and the files where they were found.
+ *
  * @author Joao Bispo
  */
 public class ExtractOperations {
@@ -44,6 +54,10 @@ public class ExtractOperations {
 
       String tracesFolderpath = cleanArgs[INDEX_TRACE_FOLDER];
       final String traceSuffix = cleanArgs[INDEX_TRACE_EXTENSION];
+      int threads = Runtime.getRuntime().availableProcessors();
+      if(cleanArgs.length > INDEX_THREADS) {
+         threads = Integer.parseInt(cleanArgs[INDEX_THREADS]);
+      }
 
       // Specify folder with trace files
       System.out.println("Opening folder \""+tracesFolderpath+"\"...");
@@ -52,7 +66,8 @@ public class ExtractOperations {
       // Get all traces files
       System.out.print("Looking for files which end in \""+traceSuffix+"\"...");
       File[] candidateTraceFiles = tracesFolder.listFiles();
-      List<File> traceFiles = new LinkedList<File>();
+      Arrays.sort(candidateTraceFiles);
+      List<File> traceFiles = new ArrayList<File>();
       for(File file : candidateTraceFiles) {
          // Check if it is a trace file
          if(file.getName().endsWith(traceSuffix)) {
@@ -62,44 +77,88 @@ public class ExtractOperations {
        System.out.println(" found "+traceFiles.size()+" files.");
 
       // Process each file
-      Set<String> operations = new HashSet<String>();
-
-      //processTraceFile(traceFiles.get(3), operations);
-
-      
-      for(File traceFile : traceFiles) {
-         processTraceFile(traceFile, operations);
+      OperationTotals totals = new OperationTotals();
+      List<OperationCensus> censuses = processTraceFiles(traceFiles, totals, threads);
+
+      // Operations found
+      List<String> notImplemented = totals.getNotImplementedNames();
+      int numOperations = notImplemented.size();
+      for(InstructionBuilder builder : InstructionBuilder.values()) {
+         if(totals.getCount(builder.ordinal()) > 0) {
+            numOperations++;
+         }
+      }
+       System.out.println("Operations ("+numOperations+", "+totals.getTotal()+" instructions):");
+      for(InstructionBuilder builder : InstructionBuilder.values()) {
+         long count = totals.getCount(builder.ordinal());
+         if(count > 0) {
+            System.out.println(builder.name()+":"+count);
+         }
       }
 
-
-       System.out.println("Operations ("+operations.size()+"):");
-       for(String op : operations) {
-           System.out.println(op);
-       }
+      // Operations not implemented
+       System.out.println("Not implemented ("+notImplemented.size()+"):");
+      for(String name : notImplemented) {
+         System.out.println(name+":"+totals.getNotImplementedCount(name));
+      }
+      for(OperationCensus census : censuses) {
+         UnknownOperations unknown = census.getNotImplemented();
+         if(unknown.size() == 0) {
+            continue;
+         }
+         StringBuilder builder = new StringBuilder();
+         builder.append(census.getTraceFile().getName()).append(":");
+         for(int i=0; i<unknown.size(); i++) {
+            builder.append(" ").append(unknown.getName(i)).append(":")
+                    .append(unknown.getCount(i));
+         }
+         System.out.println(builder.toString());
+      }
    }
 
    /**
-    * Reads a trace from a file and puts the name of the operations it finds
-    * in a set.
+    * Counts the operations of each trace file, in parallel.
     *
-    * @param traceFile file with a MicroBlaze trace
-    * @param operations set where the results will be put
+    * @param traceFiles files with MicroBlaze traces
+    * @param totals where the counts of all files are added
+    * @param threads number of files which are scanned at the same time
+    * @return the census of each file which could be read, in the same order
+    * as the files
     */
-   public static void processTraceFile(File traceFile, Set<String> operations) {
-      TraceMemory memory = new TraceMemory(traceFile);
-      //InstructionParser parser = new InstructionParser();
-
-      String instruction = memory.nextInstruction();
-      while(instruction != null) {
-         TraceData data = InstructionParser.parseInstruction(instruction);
-
-         // Store operation
-         operations.add(data.getOpName());
-         
-         instruction = memory.nextInstruction();
+   public static List<OperationCensus> processTraceFiles(List<File> traceFiles,
+           final OperationTotals totals, int threads) {
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      List<Future<OperationCensus>> futures = new ArrayList<Future<OperationCensus>>(traceFiles.size());
+      for(final File traceFile : traceFiles) {
+         futures.add(pool.submit(new Callable<OperationCensus>() {
+            public OperationCensus call() {
+               OperationCensus census = new OperationCensus(traceFile);
+               if(!census.scan()) {
+                  return null;
+               }
+               totals.add(census);
+               return census;
+            }
+         }));
+      }
+      pool.shutdown();
+
+      List<OperationCensus> censuses = new ArrayList<OperationCensus>(traceFiles.size());
+      for(Future<OperationCensus> future : futures) {
+         try {
+            OperationCensus census = future.get();
+            if(census != null) {
+               censuses.add(census);
+            }
+         } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            Logger.getLogger(ExtractOperations.class.getName()).log(Level.SEVERE, null, ex);
+         } catch (ExecutionException ex) {
+            Logger.getLogger(ExtractOperations.class.getName()).log(Level.SEVERE, null, ex);
+         }
       }
 
-
+      return censuses;
    }
 
    /**
@@ -109,9 +168,11 @@ public class ExtractOperations {
     * @return
     */
     private static String[] processArgs(String[] args) {
-        if(args.length != 2) {
-            System.out.println("Usage: [Trace_Folder] [Traces_Extension]");
-            System.out.println("Example: ./traces .txt");
+        if(args.length < 2 || args.length > 3) {
+            System.out.println("Usage: [Trace_Folder] [Traces_Extension] [Threads]");
+            System.out.println("Example: ./traces .txt 4");
+            System.out.println("If the number of threads is not given, one thread per " +
+                    "processor is used.");
             System.exit(1);
         }
 
@@ -122,4 +183,5 @@ public class ExtractOperations {
     // INSTANCE VARIABLES
     private static final int INDEX_TRACE_FOLDER = 0;
     private static final int INDEX_TRACE_EXTENSION = 1;
+    private static final int INDEX_THREADS = 2;
 }
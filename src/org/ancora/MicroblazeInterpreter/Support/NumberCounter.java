@@ -17,18 +17,44 @@
 
 package org.ancora.MicroblazeInterpreter.Support;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * Counts the occurence of numbers.
  *
+ * <p>Numbers and counts are kept in arrays of primitives, in an
+ * open-addressing hash table with linear probing. Optionally, the counts of
+ * the numbers in a known range are kept in a dense array, indexed directly
+ * by the number; numbers outside of the range go to the hash table.
+ *
  * @author Joao Bispo
  */
 public class NumberCounter {
 
+   /**
+    * Creates a counter without a dense range.
+    */
    public NumberCounter() {
-      count = new HashMap<Integer, Integer>();
+      this(0, 0);
+   }
+
+   /**
+    * Creates a counter where the numbers from first to first + denseSize - 1
+    * are counted in an array.
+    *
+    * @param first the first number of the dense range
+    * @param denseSize the number of numbers in the dense range
+    */
+   public NumberCounter(int first, int denseSize) {
+      this.first = first;
+      dense = new long[denseSize];
+      denseNumbers = 0;
+
+      numbers = new int[INITIAL_CAPACITY];
+      counts = new long[INITIAL_CAPACITY];
+      mask = INITIAL_CAPACITY - 1;
+      shift = INT_SIZE - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+      hashedNumbers = 0;
    }
 
    /**
@@ -38,22 +64,180 @@ public class NumberCounter {
     * @param number
     */
    public void addInt(int number) {
-      boolean containsKey = count.containsKey(number);
+      add(number, 1);
+   }
+
+   /**
+    * Adds amount to the count of the number.
+    *
+    * @param number
+    * @param amount a positive value. Other values are ignored, since a count
+    * of zero marks an empty slot.
+    */
+   public void add(int number, long amount) {
+      if (amount <= 0) {
+         return;
+      }
 
-      if(containsKey) {
-         int value = count.get(number);
-         value++;
-         count.put(number, value);
+      // Unsigned comparison, numbers before first are also outside
+      final int denseIndex = number - first;
+      if ((denseIndex ^ Integer.MIN_VALUE) < (dense.length ^ Integer.MIN_VALUE)) {
+         if (dense[denseIndex] == 0) {
+            denseNumbers++;
+         }
+         dense[denseIndex] += amount;
+         return;
       }
-      else {
-         count.put(number, 1);
+
+      int slot = slot(number);
+      // Empty slots have a count of zero
+      while (counts[slot] != 0) {
+         if (numbers[slot] == number) {
+            counts[slot] += amount;
+            return;
+         }
+         slot = (slot + 1) & mask;
+      }
+
+      numbers[slot] = number;
+      counts[slot] = amount;
+      hashedNumbers++;
+      if (hashedNumbers * 2 > counts.length) {
+         grow();
+      }
+   }
+
+   /**
+    * @param number
+    * @return how many times the number was counted
+    */
+   public long getCount(int number) {
+      final int denseIndex = number - first;
+      if ((denseIndex ^ Integer.MIN_VALUE) < (dense.length ^ Integer.MIN_VALUE)) {
+         return dense[denseIndex];
+      }
+
+      int slot = slot(number);
+      while (counts[slot] != 0) {
+         if (numbers[slot] == number) {
+            return counts[slot];
+         }
+         slot = (slot + 1) & mask;
       }
+      return 0;
    }
 
-   public Map<Integer,Integer> getTable() {
-      return count;
+   /**
+    * @return the number of different numbers counted
+    */
+   public int size() {
+      return denseNumbers + hashedNumbers;
+   }
+
+   /**
+    * @return the sum of the counts of all the numbers
+    */
+   public long getTotal() {
+      long total = 0;
+      for (long count : dense) {
+         total += count;
+      }
+      for (long count : counts) {
+         total += count;
+      }
+      return total;
+   }
+
+   /**
+    * @return the numbers which have been counted, in ascending order
+    */
+   public int[] sortedNumbers() {
+      int[] sorted = new int[size()];
+      int index = 0;
+      for (int i = 0; i < dense.length; i++) {
+         if (dense[i] != 0) {
+            sorted[index] = first + i;
+            index++;
+         }
+      }
+      for (int slot = 0; slot < counts.length; slot++) {
+         if (counts[slot] != 0) {
+            sorted[index] = numbers[slot];
+            index++;
+         }
+      }
+
+      Arrays.sort(sorted);
+      return sorted;
+   }
+
+   /**
+    * Adds the counts of another counter to this counter.
+    *
+    * @param other
+    */
+   public void merge(NumberCounter other) {
+      for (int i = 0; i < other.dense.length; i++) {
+         if (other.dense[i] != 0) {
+            add(other.first + i, other.dense[i]);
+         }
+      }
+      for (int slot = 0; slot < other.counts.length; slot++) {
+         if (other.counts[slot] != 0) {
+            add(other.numbers[slot], other.counts[slot]);
+         }
+      }
+   }
+
+   /**
+    * @param number
+    * @return the first slot of the hash table where the number can be
+    */
+   private int slot(int number) {
+      // Fibonacci hashing, uses the higher bits of the product
+      return (number * HASH_MULTIPLIER) >>> shift;
+   }
+
+   /**
+    * Doubles the capacity of the hash table.
+    */
+   private void grow() {
+      final int[] oldNumbers = numbers;
+      final long[] oldCounts = counts;
+
+      numbers = new int[oldNumbers.length * 2];
+      counts = new long[oldCounts.length * 2];
+      mask = counts.length - 1;
+      shift--;
+      for (int i = 0; i < oldCounts.length; i++) {
+         if (oldCounts[i] == 0) {
+            continue;
+         }
+         int slot = slot(oldNumbers[i]);
+         while (counts[slot] != 0) {
+            slot = (slot + 1) & mask;
+         }
+         numbers[slot] = oldNumbers[i];
+         counts[slot] = oldCounts[i];
+      }
    }
 
    // INSTANCE VARIABLES
-   private final Map<Integer,Integer> count;
+   // State
+   private final int first;
+   private final long[] dense;
+   private int denseNumbers;
+   private int[] numbers;
+   private long[] counts;
+   private int mask;
+   /**
+    * Shift which leaves as many bits as the size of the hash table.
+    */
+   private int shift;
+   private int hashedNumbers;
+
+   // Definitions
+   private static final int INITIAL_CAPACITY = 64;
+   private static final int HASH_MULTIPLIER = 0x9E3779B9;
+   private static final int INT_SIZE = 32;
 }
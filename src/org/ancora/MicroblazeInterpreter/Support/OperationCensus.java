@@ -0,0 +1,218 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Support;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.UnknownOperations;
+import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
+import org.ancora.MicroblazeInterpreter.Parser.MnemonicDecoder;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * Counts the operations of a trace file.
+ *
+ * <p>Only the name of the operation is extracted from each line, directly
+ * from the bytes of the file: the lines are not decoded into Strings and the
+ * arguments are not parsed. Implemented operations are counted in an array
+ * indexed by opcode; the others are counted by name.
+ *
+ * <p>A census is meant to be used by a single thread. Censuses of different
+ * files can be added to the same OperationTotals concurrently.
+ *
+ * @author Joao Bispo
+ */
+public class OperationCensus {
+
+    public OperationCensus(File traceFile) {
+        this.traceFile = traceFile;
+        counts = new long[NUM_OPCODES];
+        notImplemented = new UnknownOperations();
+        record = new TraceRecord();
+    }
+
+    /**
+     * Reads the trace file and counts its operations.
+     *
+     * @return true if the whole file could be read
+     */
+    public boolean scan() {
+        FileInputStream stream;
+        try {
+            stream = new FileInputStream(traceFile);
+        } catch (IOException ex) {
+            console.warn("scan: IOException while trying to open " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(OperationCensus.class.getName()).log(Level.SEVERE, null, ex);
+            return false;
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        // Characters of the current line are kept at the start of the buffer
+        int lineBegin = 0;
+        int limit = 0;
+        boolean success = true;
+        try {
+            int read = stream.read(buffer, limit, buffer.length - limit);
+            while (read > 0) {
+                // Characters before limit have no newline
+                int index = limit;
+                limit += read;
+                while (index < limit) {
+                    if (buffer[index] == NEWLINE) {
+                        addLine(buffer, lineBegin, index);
+                        lineBegin = index + 1;
+                    }
+                    index++;
+                }
+
+                // Move incomplete line to the start of the buffer
+                final int lineSize = limit - lineBegin;
+                if (lineSize == buffer.length) {
+                    byte[] newBuffer = new byte[buffer.length * 2];
+                    System.arraycopy(buffer, 0, newBuffer, 0, lineSize);
+                    buffer = newBuffer;
+                } else {
+                    System.arraycopy(buffer, lineBegin, buffer, 0, lineSize);
+                }
+                lineBegin = 0;
+                limit = lineSize;
+
+                read = stream.read(buffer, limit, buffer.length - limit);
+            }
+
+            // Last line, without a newline
+            addLine(buffer, 0, limit);
+        } catch (IOException ex) {
+            console.warn("scan: IOException while trying to read " +
+                    "file! (" + traceFile.getAbsolutePath() + ")");
+            Logger.getLogger(OperationCensus.class.getName()).log(Level.SEVERE, null, ex);
+            success = false;
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException ex) {
+                Logger.getLogger(OperationCensus.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+
+        return success;
+    }
+
+    /**
+     * Counts the operation of a line, if it is a trace instruction (starts
+     * with "0x" and the hexadecimal digits of an address, of any length).
+     *
+     * @param buffer
+     * @param begin index of the first character of the line
+     * @param end index after the last character of the line
+     */
+    void addLine(byte[] buffer, int begin, int end) {
+        final int addressBegin = begin + HEX_PREFIX_SIZE;
+        if (end <= addressBegin || buffer[begin] != '0'
+                || buffer[begin + 1] != 'x') {
+            return;
+        }
+
+        int index = addressBegin;
+        while (index < end && isHexDigit(buffer[index])) {
+            index++;
+        }
+        if (index == addressBegin) {
+            return;
+        }
+
+        while (index < end && isSpace(buffer[index])) {
+            index++;
+        }
+        final int mnemonicBegin = index;
+        while (index < end && !isSpace(buffer[index])) {
+            index++;
+        }
+        final int mnemonicSize = index - mnemonicBegin;
+        if (mnemonicSize == 0) {
+            return;
+        }
+
+        total++;
+        final int opcode = MnemonicDecoder.decode(buffer, mnemonicBegin, mnemonicSize);
+        if (opcode != TraceRecord.UNKNOWN_OPCODE) {
+            counts[opcode]++;
+        } else {
+            record.setMnemonic(buffer, mnemonicBegin, mnemonicSize);
+            notImplemented.add(record);
+        }
+    }
+
+    private static boolean isHexDigit(byte c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f')
+                || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    public File getTraceFile() {
+        return traceFile;
+    }
+
+    /**
+     * @param opcode the ordinal of an InstructionBuilder
+     * @return how many times the operation was found
+     */
+    public long getCount(int opcode) {
+        return counts[opcode];
+    }
+
+    /**
+     * @return the operations found which are not implemented
+     */
+    public UnknownOperations getNotImplemented() {
+        return notImplemented;
+    }
+
+    /**
+     * @return the number of trace instructions found
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private final File traceFile;
+    private final long[] counts;
+    private final UnknownOperations notImplemented;
+    private final TraceRecord record;
+    private long total;
+
+    // Utilities
+    private final Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    public static final int NUM_OPCODES = InstructionBuilder.values().length;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HEX_PREFIX_SIZE = "0x".length();
+    private static final byte NEWLINE = '\n';
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.UnknownOperations;
+
+/**
+ * Sum of the operations counted by several OperationCensus.
+ *
+ * <p>Censuses can be added by several threads at the same time, without
+ * locks: implemented operations are added to an atomic array indexed by
+ * opcode, and operations which are not implemented to atomic counters in a
+ * concurrent map.
+ *
+ * @author Joao Bispo
+ */
+public class OperationTotals {
+
+    public OperationTotals() {
+        counts = new AtomicLongArray(OperationCensus.NUM_OPCODES);
+        notImplemented = new ConcurrentHashMap<String, AtomicLong>();
+        total = new AtomicLong();
+        files = new AtomicLong();
+    }
+
+    /**
+     * Adds the counts of a census which has finished.
+     *
+     * @param census
+     */
+    public void add(OperationCensus census) {
+        for (int opcode = 0; opcode < OperationCensus.NUM_OPCODES; opcode++) {
+            final long count = census.getCount(opcode);
+            if (count != 0) {
+                counts.addAndGet(opcode, count);
+            }
+        }
+
+        UnknownOperations unknown = census.getNotImplemented();
+        for (int i = 0; i < unknown.size(); i++) {
+            String name = unknown.getName(i);
+            AtomicLong counter = notImplemented.get(name);
+            if (counter == null) {
+                AtomicLong newCounter = new AtomicLong();
+                counter = notImplemented.putIfAbsent(name, newCounter);
+                if (counter == null) {
+                    counter = newCounter;
+                }
+            }
+            counter.addAndGet(unknown.getCount(i));
+        }
+
+        total.addAndGet(census.getTotal());
+        files.incrementAndGet();
+    }
+
+    /**
+     * @param opcode the ordinal of an InstructionBuilder
+     * @return how many times the operation was found
+     */
+    public long getCount(int opcode) {
+        return counts.get(opcode);
+    }
+
+    /**
+     * @return the names of the operations found which are not implemented,
+     * sorted
+     */
+    public List<String> getNotImplementedNames() {
+        List<String> names = new ArrayList<String>(notImplemented.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * @param name
+     * @return how many times the operation, which is not implemented, was
+     * found
+     */
+    public long getNotImplementedCount(String name) {
+        AtomicLong counter = notImplemented.get(name);
+        if (counter == null) {
+            return 0;
+        }
+        return counter.get();
+    }
+
+    /**
+     * @return the number of trace instructions found
+     */
+    public long getTotal() {
+        return total.get();
+    }
+
+    /**
+     * @return the number of censuses added
+     */
+    public long getFiles() {
+        return files.get();
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private final AtomicLongArray counts;
+    private final ConcurrentMap<String, AtomicLong> notImplemented;
+    private final AtomicLong total;
+    private final AtomicLong files;
+}
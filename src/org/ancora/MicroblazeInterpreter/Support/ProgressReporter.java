@@ -0,0 +1,149 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Support;
+
+import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.ProcessorProgress;
+import org.ancora.jCommons.Console;
+
+/**
+ * Shows the progress of a processor while it runs, from a separate thread.
+ *
+ * <p>Every interval, the reporter samples the ProcessorProgress published by
+ * the processor and shows the instructions executed, the instructions per
+ * second since the last report, the cycles, the program counter and the
+ * memory used by the JVM. The processor is never stopped or synchronized
+ * with; it only publishes its progress from time to time (see
+ * MbProcessor.setProgress).
+ *
+ * @author Joao Bispo
+ */
+public class ProgressReporter implements Runnable {
+
+    /**
+     * @param progress progress published by the processor
+     * @param console where the reports are shown
+     * @param intervalMillis time between reports
+     */
+    public ProgressReporter(ProcessorProgress progress, Console console,
+            long intervalMillis) {
+        this.progress = progress;
+        this.console = console;
+        this.intervalMillis = intervalMillis;
+        thread = null;
+        startNanos = 0;
+        lastNanos = 0;
+        lastInstructions = 0;
+    }
+
+    /**
+     * Starts reporting in a daemon thread, so a run which ends without
+     * calling stop does not keep the JVM alive.
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+        lastNanos = startNanos;
+        lastInstructions = progress.getInstructions();
+
+        thread = new Thread(this, "ProgressReporter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops reporting, and shows the totals of the run.
+     */
+    public void stop() {
+        if (thread == null) {
+            return;
+        }
+
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+
+        final long elapsed = System.nanoTime() - startNanos;
+        console.print("Executed " + progress.getInstructions() + " instructions in "
+                + (elapsed / NANOS_PER_MILLI) + " ms ("
+                + rate(progress.getInstructions(), elapsed) + " instructions/s).");
+    }
+
+    public void run() {
+        while (!progress.isFinished()) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException ex) {
+                return;
+            }
+
+            console.print(report());
+        }
+    }
+
+    /**
+     * Samples the progress, and builds the report of the last interval.
+     *
+     * @return the report
+     */
+    String report() {
+        final long now = System.nanoTime();
+        final long instructions = progress.getInstructions();
+        final long rate = rate(instructions - lastInstructions, now - lastNanos);
+        lastNanos = now;
+        lastInstructions = instructions;
+
+        Runtime runtime = Runtime.getRuntime();
+        final long usedBytes = runtime.totalMemory() - runtime.freeMemory();
+
+        String pc = BitOperations.padHexString(Integer.toHexString(progress.getPc()), 8);
+        return "Progress: " + instructions + " instructions, " + rate
+                + " instructions/s, " + progress.getCycles() + " cycles, pc:" + pc
+                + ", heap:" + (usedBytes / BYTES_PER_MEGABYTE) + "MB";
+    }
+
+    /**
+     * @return instructions per second, or 0 if no time has passed
+     */
+    private static long rate(long instructions, long nanos) {
+        if (nanos <= 0) {
+            return 0;
+        }
+
+        return (long) (instructions * (double) NANOS_PER_SECOND / nanos);
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private final ProcessorProgress progress;
+    private final Console console;
+    private final long intervalMillis;
+    private Thread thread;
+    // Set by start, and then used by the reporter thread
+    private long startNanos;
+    private long lastNanos;
+    private long lastInstructions;
+
+    // Definitions
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+}
@@ -26,22 +26,36 @@ import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.ancora.MicroblazeInterpreter.Commons.BitOperations;
+import org.ancora.MicroblazeInterpreter.Commons.WarningLog;
 import org.ancora.MicroblazeInterpreter.Configuration.MbConfiguration;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.CachedSegments;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemory;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemoryPlus;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.MappedDataMemory;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.MemorySegment;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.UninitializedReadPolicy;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.UninitializedReads;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.BinaryTraceFormat;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.BinaryTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.CompressedTraceFormat;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.CompressedTraceMemory;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.InstructionMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.MappedTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.PipelinedTraceMemory;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MicroBlazeProcessor;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.TraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.Checkpoint;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.Clock;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.CycleClock;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.ProcessorProfile;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.ProcessorProgress;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFileArray;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialRegister;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SprFields;
 import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SprMap;
 import org.ancora.jCommons.Console;
 import org.ancora.jCommons.DefaultConsole;
@@ -59,6 +73,23 @@ import org.ancora.jCommons.FileConsole;
  */
 public class RunProcessor {
 
+    /**
+     * Creates a runner which builds processors with the given options.
+     *
+     * <p>Each runner keeps the state of the last processor it has loaded, so
+     * independent runs should use independent runners.
+     *
+     * @param config options of the interpreter, as in config.properties
+     * @param console where the results are shown
+     */
+    public RunProcessor(Properties config, Console console) {
+        this.config = config;
+        this.console = console;
+        uninitializedReads = null;
+        profile = null;
+        addressCounter = null;
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -73,10 +104,10 @@ public class RunProcessor {
           System.out.println("Exiting...");
           System.exit(1);
       }
-      config = file2Properties(propertiesFile);
+      Properties config = file2Properties(propertiesFile);
 
       // Process Command line arguments
-      String[] cleanArgs = processArgs(args);
+      String[] cleanArgs = processArgs(args, config);
 
       String traceFilepath = cleanArgs[INDEX_TRACE_FILE];
 
@@ -93,6 +124,7 @@ public class RunProcessor {
       //File traceFile = disk.safeFile(traceFilepath);
 
       // Initialize Console
+      Console console;
       boolean writeOutputFile = Boolean.valueOf(config.getProperty(ConfigParam.writeFile.name()));
       if(writeOutputFile) {
           String outFilename = config.getProperty(ConfigParam.outputFile.name());
@@ -103,18 +135,131 @@ public class RunProcessor {
       }
 
       // Load the processor
-      MicroBlazeProcessor mb = loadMicroBlaze(traceFile);
+      RunProcessor runner = new RunProcessor(config, console);
+      MbProcessor mb = runner.loadMicroBlaze(traceFile);
+      if(mb == null) {
+          System.out.println("Could not create the mapped data memory.");
+          System.out.println("Exiting...");
+          System.exit(1);
+      }
       // Execute it
-      mb.run();
+      if(!runner.execute(mb)) {
+          System.out.println("Could not restore the checkpoint.");
+          System.out.println("Exiting...");
+          System.exit(1);
+      }
 
       // Inspect it after execution
+      runner.showResults(mb);
+      runner.release();
+
+       console.close();
+    }
+
+    /**
+     * Runs the trace of a processor, saving or restoring a checkpoint as
+     * given by the checkpoint option.
+     *
+     * <p>When saving, the processor runs the number of instructions given by
+     * checkpointInstructions, writes its state to checkpointFile and runs
+     * the rest of the trace. When restoring, the processor starts from the
+     * state in checkpointFile.
+     *
+     * <p>If progressInterval is given, the progress of the run is shown
+     * while the trace runs (see ProgressReporter).
+     *
+     * @param mb a processor loaded by this runner, which has not run yet
+     * @return false if the checkpoint could not be restored
+     */
+    public boolean execute(MbProcessor mb) {
+      ProgressReporter reporter = null;
+      int progressInterval = parseProgressInterval(config.getProperty(ConfigParam.progressInterval.name()));
+      if(progressInterval > 0) {
+          ProcessorProgress progress = new ProcessorProgress();
+          mb.setProgress(progress);
+          reporter = new ProgressReporter(progress, console, progressInterval * MILLIS_PER_SECOND);
+          reporter.start();
+      }
+
+      boolean restored = runCheckpoint(mb);
+      if(restored) {
+          mb.run();
+      } else {
+          mb.getInstructionMemory().close();
+      }
+
+      if(reporter != null) {
+          reporter.stop();
+      }
+      return restored;
+    }
+
+    /**
+     * Saves or restores a checkpoint, as given by the checkpoint option.
+     *
+     * @param mb
+     * @return false if the checkpoint could not be restored
+     */
+    private boolean runCheckpoint(MbProcessor mb) {
+      CheckpointMode mode = parseCheckpointMode(config.getProperty(ConfigParam.checkpoint.name()));
+      if(mode != CheckpointMode.none) {
+          String checkpointFilename = config.getProperty(ConfigParam.checkpointFile.name(), "").trim();
+          if(checkpointFilename.length() == 0) {
+              console.warn("No "+ConfigParam.checkpointFile.name()+" given. "
+                      + "Running without checkpoint.");
+              mode = CheckpointMode.none;
+          }
+          File checkpointFile = new File(checkpointFilename);
+
+          if(mode == CheckpointMode.save) {
+              long instructions = parseCheckpointInstructions(
+                      config.getProperty(ConfigParam.checkpointInstructions.name()));
+              long executed = mb.runFor(instructions);
+              if(Checkpoint.save(mb, executed, checkpointFile)) {
+                  console.print("Checkpoint after "+executed+" instructions written to \""
+                          +checkpointFilename+"\".");
+              }
+          } else if(mode == CheckpointMode.restore) {
+              long executed = Checkpoint.restore(mb, checkpointFile);
+              if(executed < 0) {
+                  return false;
+              }
+              console.print("Restored checkpoint after "+executed+" instructions from \""
+                      +checkpointFilename+"\".");
+          }
+      }
+
+      return true;
+    }
+
+    /**
+     * Shows the registers, the clock and the uninitialized reads of a
+     * processor which has been run, and writes the profile and the address
+     * counts, if enabled.
+     *
+     * @param mb a processor which has been run. The uninitialized reads are
+     * only shown if it was loaded by this runner.
+     */
+    public void showResults(MicroBlazeProcessor mb) {
       showSpr(mb);
       console.print("--------------------------------");
       showRegs(mb);
       console.print("--------------------------------");
       showClock(mb);
-
-       console.close();
+      console.print("--------------------------------");
+      if(uninitializedReads != null) {
+          console.print(uninitializedReads.summary());
+      }
+      String warningSummary = WarningLog.getLog().summary();
+      if(warningSummary.length() > 0) {
+          console.print(warningSummary);
+      }
+      if(profile != null) {
+          writeProfile(config.getProperty(ConfigParam.profileFile.name()).trim());
+      }
+      if(addressCounter != null) {
+          writeAddressCounts(config.getProperty(ConfigParam.addressCountsFile.name()).trim());
+      }
     }
 
     /**
@@ -124,9 +269,10 @@ public class RunProcessor {
      * Else, use default values and read the
      * 
      * @param args
+     * @param config
      * @return
      */
-   private static String[] processArgs(String[] args) {
+   private static String[] processArgs(String[] args, Properties config) {
        if (args.length == 0) {
            args = new String[1];
            args[0] = config.getProperty(ConfigParam.inputTrace.name());
@@ -134,6 +280,9 @@ public class RunProcessor {
        } else if (args.length > 1) {
            System.out.println("Usage: [Trace_File]");
            System.out.println("Example: ./traces/fdct_trace_without_optimization.txt");
+           System.out.println("Traces ending in "+BinaryTraceFormat.EXTENSION+" or "+
+                   CompressedTraceFormat.EXTENSION+" are read as binary or " +
+                   "compressed traces (see ConvertTraces).");
            System.out.println("If no arguments are given, the trace file defined in " +
                    configFile + " is used.");
            System.exit(1);
@@ -146,16 +295,47 @@ public class RunProcessor {
     * Loads the processor.
     * 
     * @param traceFile
-    * @return
+    * @return the processor, or null if the data memory could not be created
     */
-   private static MicroBlazeProcessor loadMicroBlaze(File traceFile) {
+   public MbProcessor loadMicroBlaze(File traceFile) {
       // Instruction Memory
-      InstructionMemory memory = new TraceMemory(traceFile);
-      SpecialPurposeRegisters specialRegisters = new SprMap();
+      InstructionMemory memory;
+      boolean mapTraceFile = Boolean.valueOf(config.getProperty(ConfigParam.mapTraceFile.name()));
+      int decodeThreads = parseDecodeThreads(config.getProperty(ConfigParam.decodeThreads.name()));
+      if(traceFile.getName().endsWith(BinaryTraceFormat.EXTENSION)) {
+          memory = new BinaryTraceMemory(traceFile);
+      } else if(traceFile.getName().endsWith(CompressedTraceFormat.EXTENSION)) {
+          memory = new CompressedTraceMemory(traceFile);
+      } else if(decodeThreads > 0) {
+          memory = new PipelinedTraceMemory(traceFile, decodeThreads);
+      } else if(mapTraceFile) {
+          memory = new MappedTraceMemory(traceFile);
+      } else {
+          memory = new TraceMemory(traceFile);
+      }
+      SpecialPurposeRegisters specialRegisters;
+      boolean useSprMap = Boolean.valueOf(config.getProperty(ConfigParam.useSprMap.name()));
+      if(useSprMap) {
+          specialRegisters = new SprMap();
+      } else {
+          specialRegisters = new SprFields();
+      }
       RegisterFile registerFile = new RegisterFileArray();
       LockRegister lockRegister = new LockRegister();
       Clock clock = new CycleClock(lockRegister, specialRegisters);
-      DataMemory dataMemory = new CachedSegments();
+      uninitializedReads = new UninitializedReads(parsePolicy(
+              config.getProperty(ConfigParam.uninitializedReads.name())));
+      DataMemory dataMemory;
+      boolean mapDataMemory = Boolean.valueOf(config.getProperty(ConfigParam.mapDataMemory.name()));
+      if(mapDataMemory) {
+          mappedDataMemory = MappedDataMemory.newInstance(uninitializedReads);
+          if(mappedDataMemory == null) {
+              return null;
+          }
+          dataMemory = mappedDataMemory;
+      } else {
+          dataMemory = new CachedSegments(uninitializedReads);
+      }
       DataMemoryPlus dataMemoryPlus = new DataMemoryPlus(dataMemory);
       MbConfiguration configuration = new MbConfiguration();
       // Prepare Memory
@@ -176,7 +356,7 @@ public class RunProcessor {
       //System.out.println("Memory:"+Arrays.toString(mem.writtenWordAddresses()));
 
       // Initialize Processor
-      MicroBlazeProcessor mb = new MbProcessor(
+      MbProcessor mb = new MbProcessor(
               memory,
               specialRegisters,
               registerFile,
@@ -185,15 +365,175 @@ public class RunProcessor {
               dataMemoryPlus,
               configuration);
 
+      uninitializedReads.setCurrentInstruction(mb.getCurrentInstruction());
+
+      // Fusion is enabled by default in the processor
+      String fuseInstructions = config.getProperty(ConfigParam.fuseInstructions.name());
+      if(fuseInstructions != null) {
+          mb.setFusion(Boolean.valueOf(fuseInstructions.trim()));
+      }
+
+      // Profile
+      String profileFile = config.getProperty(ConfigParam.profileFile.name());
+      if(profileFile != null && profileFile.trim().length() > 0) {
+          profile = new ProcessorProfile();
+          mb.setProfile(profile);
+      }
+      String addressCountsFile = config.getProperty(ConfigParam.addressCountsFile.name());
+      if(addressCountsFile != null && addressCountsFile.trim().length() > 0) {
+          addressCounter = new NumberCounter();
+          mb.setAddressCounter(addressCounter);
+      }
+
       return mb;
    }
 
+   /**
+    * Writes the profile of the run to a file, in JSON if the name of the file
+    * ends in .json, or in CSV otherwise.
+    *
+    * @param profileFilename
+    */
+   private void writeProfile(String profileFilename) {
+       String contents;
+       if(profileFilename.endsWith(JSON_EXTENSION)) {
+           contents = profile.toJson();
+       } else {
+           contents = profile.toCsv();
+       }
+
+       Disk disk = Disk.getDisk();
+       disk.write(disk.safeFile(profileFilename), contents);
+       console.print("Profile written to \""+profileFilename+"\".");
+   }
+
+   /**
+    * Writes how many times each instruction address was executed, sorted by
+    * address.
+    *
+    * @param addressCountsFilename
+    */
+   private void writeAddressCounts(String addressCountsFilename) {
+       int[] addresses = addressCounter.sortedNumbers();
+       StringBuilder builder = new StringBuilder(addresses.length * 30);
+       builder.append("Number of addresses:"+addresses.length+"\n");
+       for(int address : addresses) {
+           builder.append("Address:").append(address).append(";Count:")
+                   .append(addressCounter.getCount(address)).append("\n");
+       }
+
+       Disk disk = Disk.getDisk();
+       disk.write(disk.safeFile(addressCountsFilename), builder.toString());
+       console.print("Address counts written to \""+addressCountsFilename+"\".");
+   }
+
+   /**
+    * Parses the policy for uninitialized reads of the data memory.
+    *
+    * @param value name of an UninitializedReadPolicy
+    * @return the policy, or DEFAULT_POLICY if the value is not valid
+    */
+   private UninitializedReadPolicy parsePolicy(String value) {
+       if(value == null) {
+           return DEFAULT_POLICY;
+       }
+
+       try {
+           return UninitializedReadPolicy.valueOf(value.trim());
+       } catch(IllegalArgumentException ex) {
+           console.warn("Invalid value for "+ConfigParam.uninitializedReads.name()+
+                   " ("+value+"). Using "+DEFAULT_POLICY.name()+".");
+           return DEFAULT_POLICY;
+       }
+   }
+
+   /**
+    * Parses the number of threads which decode text traces.
+    *
+    * @param value a number
+    * @return the number of threads, or 0 if the value is empty or not valid
+    */
+   private int parseDecodeThreads(String value) {
+       if(value == null || value.trim().length() == 0) {
+           return 0;
+       }
+
+       try {
+           return Math.max(0, Integer.parseInt(value.trim()));
+       } catch(NumberFormatException ex) {
+           console.warn("Invalid value for "+ConfigParam.decodeThreads.name()+
+                   " ("+value+"). Decoding in the executing thread.");
+           return 0;
+       }
+   }
+
+   /**
+    * Parses the time between progress reports.
+    *
+    * @param value a number of seconds
+    * @return the number of seconds, or 0 if the value is empty or not valid
+    */
+   private int parseProgressInterval(String value) {
+       if(value == null || value.trim().length() == 0) {
+           return 0;
+       }
+
+       try {
+           return Math.max(0, Integer.parseInt(value.trim()));
+       } catch(NumberFormatException ex) {
+           console.warn("Invalid value for "+ConfigParam.progressInterval.name()+
+                   " ("+value+"). Progress will not be shown.");
+           return 0;
+       }
+   }
+
+   /**
+    * Parses what the runner does with checkpoints.
+    *
+    * @param value name of a CheckpointMode
+    * @return the mode, or none if the value is empty or not valid
+    */
+   private CheckpointMode parseCheckpointMode(String value) {
+       if(value == null || value.trim().length() == 0) {
+           return CheckpointMode.none;
+       }
+
+       try {
+           return CheckpointMode.valueOf(value.trim());
+       } catch(IllegalArgumentException ex) {
+           console.warn("Invalid value for "+ConfigParam.checkpoint.name()+
+                   " ("+value+"). Running without checkpoint.");
+           return CheckpointMode.none;
+       }
+   }
+
+   /**
+    * Parses the number of instructions executed before saving a checkpoint.
+    *
+    * @param value a number
+    * @return the number of instructions, or 0 if the value is empty or not
+    * valid
+    */
+   private long parseCheckpointInstructions(String value) {
+       if(value == null || value.trim().length() == 0) {
+           return 0;
+       }
+
+       try {
+           return Math.max(0, Long.parseLong(value.trim()));
+       } catch(NumberFormatException ex) {
+           console.warn("Invalid value for "+ConfigParam.checkpointInstructions.name()+
+                   " ("+value+"). Saving the checkpoint before the first instruction.");
+           return 0;
+       }
+   }
+
     /**
      * Show the contents of Special Purpose Registers
      *
      * @param mb
      */
-    private static void showSpr(MicroBlazeProcessor mb) {
+    private void showSpr(MicroBlazeProcessor mb) {
         SpecialPurposeRegisters spr = mb.getSpecialRegisters();
         //System.out.println("Special Register Values:");
         console.print("Special Register Values:");
@@ -234,7 +574,7 @@ public class RunProcessor {
      *
      * @param mb
      */
-    private static void showRegs(MicroBlazeProcessor mb) {
+    private void showRegs(MicroBlazeProcessor mb) {
         RegisterFile regs = mb.getRegisterFile();
         //System.out.println("General Purpose Registers Values:");
         console.print("General Purpose Registers Values:");
@@ -249,7 +589,7 @@ public class RunProcessor {
      * Show information about processor execution.
      * @param mb
      */
-    private static void showClock(MicroBlazeProcessor mb) {
+    private void showClock(MicroBlazeProcessor mb) {
         Clock clock = mb.getClock();
         //System.out.println("Number o clock cycles:"+clock.getLatency());
         console.print("Number o clock cycles:"+clock.getLatency());
@@ -339,16 +679,61 @@ public class RunProcessor {
     enum ConfigParam {
         inputTrace,
         writeFile,
-        outputFile;
+        outputFile,
+        progressInterval,
+        mapTraceFile,
+        decodeThreads,
+        useSprMap,
+        fuseInstructions,
+        mapDataMemory,
+        uninitializedReads,
+        profileFile,
+        addressCountsFile,
+        checkpoint,
+        checkpointFile,
+        checkpointInstructions;
+    }
+
+    enum CheckpointMode {
+        none,
+        save,
+        restore;
+    }
+
+    /**
+     * Releases the mapped data memory of the last processor loaded by this
+     * runner, if mapDataMemory is enabled. The data memory of the processor
+     * cannot be used afterwards.
+     */
+    public void release() {
+        if(mappedDataMemory != null) {
+            mappedDataMemory.close();
+            mappedDataMemory = null;
+        }
+    }
+
+    /**
+     * @return the uninitialized reads of the last processor loaded by this
+     * runner
+     */
+    public UninitializedReads getUninitializedReads() {
+        return uninitializedReads;
     }
 
     // INSTANCE VARIABLES
     // State
-        private static Properties config;
-        private static Console console;
+        private final Properties config;
+        private final Console console;
+        private UninitializedReads uninitializedReads;
+        private MappedDataMemory mappedDataMemory;
+        private ProcessorProfile profile;
+        private NumberCounter addressCounter;
     // Constants
-    private static final String configFile = "config.properties";
+    static final String configFile = "config.properties";
     private static final String charSet = "UTF-8";
+    private static final UninitializedReadPolicy DEFAULT_POLICY = UninitializedReadPolicy.count;
+    private static final String JSON_EXTENSION = ".json";
+    private static final long MILLIS_PER_SECOND = 1000;
 
 
 
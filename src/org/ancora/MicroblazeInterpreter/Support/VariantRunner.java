@@ -0,0 +1,328 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Support;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ancora.MicroblazeInterpreter.Configuration.MbConfiguration;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.CachedSegments;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemoryPlus;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.UninitializedReadPolicy;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.UninitializedReads;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.MappedTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.Checkpoint;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.CycleClock;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.LinkedTrace;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.ThreadedEngine;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFile;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFileArray;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialRegister;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SprFields;
+import org.ancora.jCommons.Console;
+import org.ancora.jCommons.DefaultConsole;
+
+/**
+ * Mini-Program.
+ *
+ * <p>Runs the rest of a text trace from a checkpoint in several variants of
+ * the processor, on a pool of threads. Each variant is a properties file
+ * with MicroBlaze configuration parameters (see MpdParameter, ex.:
+ * C_AREA_OPTIMIZED) and, optionally, register values which are written after
+ * the checkpoint is restored, with the keys "r0" to "r31".
+ *
+ * <p>The checkpoint is restored once, into a base processor. Each variant
+ * starts from a copy of its registers and from a fork of its data memory,
+ * so the variants share the words of the checkpoint and only copy the
+ * segments they write (see CachedSegments.fork).
+ *
+ * <p>The rest of the trace is read and decoded once, into a LinkedTrace,
+ * and each variant executes it with its own ThreadedEngine. If the rest of
+ * the trace is longer than LinkedTrace.MAX_SIZE, each variant reads the
+ * trace file from the position of the checkpoint, with MbProcessor.run.
+ *
+ * @author Joao Bispo
+ */
+public class VariantRunner {
+
+    /**
+     * @param traceFile the text trace of the checkpoint
+     * @param threads number of variants which are run at the same time
+     */
+    public VariantRunner(File traceFile, int threads) {
+        this.traceFile = traceFile;
+        this.threads = threads;
+        base = null;
+        baseMemory = null;
+        position = 0;
+        trace = null;
+    }
+
+    public static void main(String[] args) {
+        String[] cleanArgs = processArgs(args);
+
+        File traceFile = new File(cleanArgs[INDEX_TRACE]);
+        File checkpointFile = new File(cleanArgs[INDEX_CHECKPOINT]);
+        List<File> variantFiles = new ArrayList<File>();
+        for(int i = INDEX_FIRST_VARIANT; i < cleanArgs.length; i++) {
+            variantFiles.add(new File(cleanArgs[i]));
+        }
+
+        VariantRunner runner = new VariantRunner(traceFile,
+                Runtime.getRuntime().availableProcessors());
+        if(!runner.restore(checkpointFile)) {
+            System.out.println("Could not restore the checkpoint.");
+            System.out.println("Exiting...");
+            System.exit(1);
+        }
+
+        List<BatchResult> results = runner.run(variantFiles);
+        for(BatchResult result : results) {
+            String name = result.getTraceFile().getName();
+            if(result.isOk()) {
+                System.out.println(name+": "+result.getCycles()+" cycles, "
+                        +(result.getNanos() / NANOS_PER_MILLI)+"ms");
+            } else {
+                System.out.println(name+": "+result.getError());
+            }
+        }
+    }
+
+    /**
+     * Restores the checkpoint into the base processor of the variants.
+     *
+     * @param checkpointFile a checkpoint of the trace of this runner
+     * @return false if the checkpoint could not be restored
+     */
+    public boolean restore(File checkpointFile) {
+        MappedTraceMemory memory = new MappedTraceMemory(traceFile);
+        baseMemory = new CachedSegments(new UninitializedReads(UninitializedReadPolicy.count));
+        base = newProcessor(memory, baseMemory, new MbConfiguration());
+
+        if(Checkpoint.restore(base, checkpointFile) < 0) {
+            memory.close();
+            return false;
+        }
+
+        position = memory.getPosition();
+        // Closes the memory
+        trace = LinkedTrace.link(memory);
+        if(trace == null) {
+            console.warn("restore: The rest of the trace is too long to be linked, "
+                    + "the variants will read the trace file.");
+        }
+        return true;
+    }
+
+    /**
+     * Runs each variant from the restored checkpoint, in its own processor.
+     *
+     * @param variantFiles properties files with the configuration and the
+     * registers of each variant
+     * @return the results, in the same order as the variants. The file of
+     * each result is the file of the variant.
+     */
+    public List<BatchResult> run(List<File> variantFiles) {
+        // Forking changes the owner of the segments of the base memory, so
+        // the variants are created by this thread
+        List<MbProcessor> processors = new ArrayList<MbProcessor>(variantFiles.size());
+        List<UninitializedReads> reads = new ArrayList<UninitializedReads>(variantFiles.size());
+        for(File variantFile : variantFiles) {
+            UninitializedReads variantReads = new UninitializedReads(UninitializedReadPolicy.count);
+            processors.add(newVariant(RunProcessor.file2Properties(variantFile), variantReads));
+            reads.add(variantReads);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<BatchResult>> futures = new ArrayList<Future<BatchResult>>(variantFiles.size());
+        for(int i = 0; i < variantFiles.size(); i++) {
+            final File variantFile = variantFiles.get(i);
+            final MbProcessor mb = processors.get(i);
+            final UninitializedReads variantReads = reads.get(i);
+            futures.add(pool.submit(new Callable<BatchResult>() {
+                public BatchResult call() {
+                    return runVariant(variantFile, mb, variantReads);
+                }
+            }));
+        }
+        pool.shutdown();
+
+        List<BatchResult> results = new ArrayList<BatchResult>(variantFiles.size());
+        for(int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                results.add(BatchResult.newError(variantFiles.get(i), "Interrupted", 0));
+            } catch (ExecutionException ex) {
+                results.add(BatchResult.newError(variantFiles.get(i), ex.getCause().toString(), 0));
+            }
+        }
+
+        return results;
+    }
+
+    private BatchResult runVariant(File variantFile, MbProcessor mb,
+            UninitializedReads reads) {
+        long time = System.nanoTime();
+        try {
+            if(trace != null) {
+                new ThreadedEngine(mb, trace).run();
+            } else {
+                mb.run();
+            }
+            return BatchResult.newResult(variantFile, mb, reads.getTotal(),
+                    mb.getNotImplemented().getTotal(), System.nanoTime() - time);
+        } catch (RuntimeException ex) {
+            console.warn("runVariant: Exception while running \""+variantFile.getPath()+"\"");
+            Logger.getLogger(VariantRunner.class.getName()).log(Level.SEVERE, null, ex);
+            return BatchResult.newError(variantFile, ex.toString(), System.nanoTime() - time);
+        }
+    }
+
+    /**
+     * Creates a processor with a copy of the state of the base processor,
+     * which continues the trace from the checkpoint.
+     *
+     * @param variant configuration parameters and register values
+     * @param reads uninitialized reads of the variant
+     */
+    private MbProcessor newVariant(Properties variant, UninitializedReads reads) {
+        Properties parameters = new Properties();
+        Properties registerValues = new Properties();
+        for(String key : variant.stringPropertyNames()) {
+            if(key.startsWith(REGISTER_PREFIX)) {
+                registerValues.setProperty(key, variant.getProperty(key));
+            } else {
+                parameters.setProperty(key, variant.getProperty(key));
+            }
+        }
+        MbConfiguration configuration = new MbConfiguration();
+        configuration.loadProperties(parameters);
+
+        // The file is only opened if the memory is read, when the trace
+        // could not be linked
+        MappedTraceMemory memory = new MappedTraceMemory(traceFile);
+        if(trace == null && !memory.seek(position)) {
+            console.warn("newVariant: Could not go to position "+position+" of the trace.");
+        }
+        CachedSegments dataMemory = baseMemory.fork(reads);
+        MbProcessor mb = newProcessor(memory, dataMemory, configuration);
+        copyState(base, mb);
+
+        RegisterFile registers = mb.getRegisterFile();
+        for(String key : registerValues.stringPropertyNames()) {
+            String value = registerValues.getProperty(key).trim();
+            try {
+                int register = Integer.parseInt(key.substring(REGISTER_PREFIX.length()));
+                registers.write(register, Integer.decode(value));
+            } catch (NumberFormatException ex) {
+                console.warn("newVariant: Invalid register value ("+key+"="+value+")");
+            }
+        }
+
+        return mb;
+    }
+
+    /**
+     * @return a processor with the default hardware blocks
+     */
+    private static MbProcessor newProcessor(MappedTraceMemory memory,
+            CachedSegments dataMemory, MbConfiguration configuration) {
+        SpecialPurposeRegisters spr = new SprFields();
+        LockRegister lockRegister = new LockRegister();
+        MbProcessor mb = new MbProcessor(memory, spr, new RegisterFileArray(),
+                lockRegister, new CycleClock(lockRegister, spr),
+                new DataMemoryPlus(dataMemory), configuration);
+        dataMemory.getUninitializedReads().setCurrentInstruction(mb.getCurrentInstruction());
+        return mb;
+    }
+
+    /**
+     * Copies the registers, the lock register, the clock and the
+     * instruction count of a processor, as saved by a Checkpoint.
+     */
+    private static void copyState(MbProcessor source, MbProcessor target) {
+        RegisterFile registers = source.getRegisterFile();
+        for(int i = 0; i < registers.numRegisters(); i++) {
+            target.getRegisterFile().write(i, registers.read(i));
+        }
+        for(SpecialRegister register : SpecialRegister.values()) {
+            target.getSpecialRegisters().write(register,
+                    source.getSpecialRegisters().read(register));
+        }
+        LockRegister lockRegister = source.getLockRegister();
+        target.getLockRegister().restore(lockRegister.getStepsToUnlock(),
+                lockRegister.getStoredImmediate());
+        target.getClock().setLatency(source.getClock().getLatency());
+        target.setInstructionCount(source.getInstructionCount());
+    }
+
+    /**
+     * Process the command line arguments
+     *
+     * @param args
+     * @return
+     */
+    private static String[] processArgs(String[] args) {
+        if(args.length < 3) {
+            System.out.println("Usage: [Trace] [Checkpoint] [Variant.properties]...");
+            System.out.println("Example: ./traces/fdct.txt ./fdct.mbk area0.properties area1.properties");
+            System.exit(1);
+        }
+
+        return args;
+    }
+
+    // INSTANCE VARIABLES
+    // State
+    private final File traceFile;
+    private final int threads;
+    private MbProcessor base;
+    private CachedSegments baseMemory;
+    /**
+     * Position of the trace after the checkpoint.
+     */
+    private long position;
+    /**
+     * Rest of the trace after the checkpoint, or null if it could not be
+     * linked.
+     */
+    private LinkedTrace trace;
+
+    // Utilities
+    private final Console console = DefaultConsole.getConsole();
+
+    // Definitions
+    private static final int INDEX_TRACE = 0;
+    private static final int INDEX_CHECKPOINT = 1;
+    private static final int INDEX_FIRST_VARIANT = 2;
+    private static final String REGISTER_PREFIX = "r";
+    private static final long NANOS_PER_MILLI = 1000000L;
+}
@@ -0,0 +1,82 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.Commons;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Compares BitOperations with the previous versions of the methods, which
+ * used longs.
+ *
+ * @author Joao Bispo
+ */
+public class BitOperationsTest {
+
+    @Test
+    public void testSameAsLongVersions() {
+        int[] values = {0, 1, -1, 2, 0x7FFFFFFF, 0x80000000, 0x80000001,
+            0xFFFFFFFE, 0x12345678};
+        for (int a : values) {
+            for (int b : values) {
+                assertSame(a, b);
+            }
+        }
+
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            assertSame(random.nextInt(), random.nextInt());
+        }
+    }
+
+    @Test
+    public void testWriteBit() {
+        assertEquals(0x5, BitOperations.writeBit(2, 1, 0x1));
+        assertEquals(0x1, BitOperations.writeBit(2, 0, 0x5));
+        assertEquals(0x80000000, BitOperations.writeBit(31, 1, 0));
+        assertEquals(0x7FFFFFFF, BitOperations.writeBit(31, 0, -1));
+
+        // Invalid values leave the target unchanged
+        assertEquals(0x1, BitOperations.writeBit(2, 3, 0x1));
+        assertEquals(0x5, BitOperations.writeBit(2, -2, 0x5));
+    }
+
+    private void assertSame(int a, int b) {
+        for (int carry = 0; carry <= 1; carry++) {
+            assertEquals(carryOutAdd(a, b, carry),
+                    BitOperations.getCarryOutAdd(a, b, carry));
+            assertEquals(carryOutRsub(a, b, carry),
+                    BitOperations.getCarryOutRsub(a, b, carry));
+        }
+        assertEquals((a & MASK_32_BITS) > (b & MASK_32_BITS),
+                BitOperations.unsignedComp(a, b));
+    }
+
+    private static int carryOutAdd(int rA, int rB, int carry) {
+        long result = (rA & MASK_32_BITS) + (rB & MASK_32_BITS) + carry;
+        return (int) ((result & MASK_BIT_33) >>> 32);
+    }
+
+    private static int carryOutRsub(int rA, int rB, int carry) {
+        long result = (rB & MASK_32_BITS) + ~(rA & MASK_32_BITS) + carry;
+        return (int) ((result & MASK_BIT_33) >>> 32);
+    }
+
+    private static final long MASK_32_BITS = 0xFFFFFFFFL;
+    private static final long MASK_BIT_33 = 0x100000000L;
+}
@@ -100,7 +100,7 @@ public class ExperimentArithmetic {
 
         TraceData data = new SimpleTraceData(opName, regs, imm);
 
-        MbAdd add = new MbAdd(data, null);
+        MbAdd add = new MbAdd(data, Variant.C | Variant.K, null);
 
         System.out.println(add.toString());
     }
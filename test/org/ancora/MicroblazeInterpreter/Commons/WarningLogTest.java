@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Commons;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.ancora.jCommons.Console;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class WarningLogTest {
+
+    /**
+     * Repeats warnings from the same addresses, which are only shown once per
+     * address, and warnings without address, which are limited by the rate.
+     */
+    @Test
+    public void testAccept() {
+        WarningLog instance = new WarningLog(console);
+        for (int round = 0; round < 3; round++) {
+            for (int address = 0; address < 8; address += 4) {
+                if (instance.accept("lw", address)) {
+                    instance.warn("lw:" + address);
+                }
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            if (instance.accept("writeBit")) {
+                instance.warn("writeBit:" + i);
+                instance.more("more:" + i);
+            }
+        }
+        instance.flush();
+
+        assertEquals(6, instance.getOccurrences("lw"));
+        assertEquals(2, instance.getShown("lw"));
+        assertEquals(1000, instance.getOccurrences("writeBit"));
+        assertEquals(WarningLog.MESSAGES_PER_SECOND, instance.getShown("writeBit"));
+        assertEquals(0, instance.getOccurrences("sw"));
+
+        // Written in order, after flush
+        assertEquals(2 + 2 * WarningLog.MESSAGES_PER_SECOND, lines.size());
+        assertEquals("warn:lw:0", lines.get(0));
+        assertEquals("warn:lw:4", lines.get(1));
+        assertEquals("warn:writeBit:0", lines.get(2));
+        assertEquals("more:more:0", lines.get(3));
+
+        String summary = instance.summary();
+        assertTrue(summary.contains("lw:6 warnings, 2 shown"));
+        assertTrue(summary.contains("writeBit:1000 warnings, "
+                + WarningLog.MESSAGES_PER_SECOND + " shown"));
+    }
+
+    /**
+     * Addresses are told apart over the whole int range, and warnings which
+     * exceed the rate are not shown, even for new addresses.
+     */
+    @Test
+    public void testAddresses() {
+        WarningLog instance = new WarningLog(console);
+        assertTrue(instance.accept("sw", -1));
+        assertTrue(instance.accept("sw", 0));
+        assertTrue(instance.accept("sw", Integer.MIN_VALUE));
+        assertFalse(instance.accept("sw", -1));
+        assertFalse(instance.accept("sw", 0));
+        assertFalse(instance.accept("sw", Integer.MIN_VALUE));
+
+        int shown = 3;
+        for (int address = 4; address < 4 * WarningLog.MAX_ADDRESSES; address += 4) {
+            if (instance.accept("sw", address)) {
+                shown++;
+            }
+        }
+        assertEquals(WarningLog.MESSAGES_PER_SECOND, shown);
+        assertEquals(shown, instance.getShown("sw"));
+        assertEquals(5 + WarningLog.MAX_ADDRESSES, instance.getOccurrences("sw"));
+    }
+
+    /**
+     * Warnings are written by the writer thread, without calling flush.
+     */
+    @Test
+    public void testWriter() throws InterruptedException {
+        WarningLog instance = new WarningLog(console);
+        assertTrue(instance.accept("sh", 0));
+        instance.warn("sh");
+        assertEquals("", instance.summary());
+
+        for (int i = 0; i < 100 && size() == 0; i++) {
+            Thread.sleep(WarningLog.FLUSH_INTERVAL_MILLIS);
+        }
+        assertEquals(1, size());
+        instance.close();
+    }
+
+    /**
+     * Close writes the queued warnings and stops the writer, and a log bound
+     * to a thread is also used by the threads it starts.
+     */
+    @Test
+    public void testClose() throws InterruptedException {
+        final WarningLog instance = new WarningLog(console);
+        WarningLog.setLog(instance);
+        try {
+            final WarningLog[] childLog = new WarningLog[1];
+            Thread child = new Thread(new Runnable() {
+
+                public void run() {
+                    childLog[0] = WarningLog.getLog();
+                }
+            });
+            child.start();
+            child.join();
+            assertSame(instance, childLog[0]);
+        } finally {
+            WarningLog.setLog(null);
+        }
+        assertNotSame(instance, WarningLog.getLog());
+
+        instance.warn("lw");
+        instance.close();
+        assertEquals(1, size());
+
+        // Warnings after close start a new writer
+        instance.warn("sw");
+        for (int i = 0; i < 100 && size() == 1; i++) {
+            Thread.sleep(WarningLog.FLUSH_INTERVAL_MILLIS);
+        }
+        assertEquals(2, size());
+        instance.close();
+    }
+
+    /**
+     * The writer thread adds lines while holding the lock of the console.
+     */
+    private int size() {
+        synchronized (console) {
+            return lines.size();
+        }
+    }
+
+    private final List<String> lines = new ArrayList<String>();
+    private final Console console = new Console() {
+
+        public void info(String message) {
+        }
+
+        public void warn(String message) {
+            lines.add("warn:" + message);
+        }
+
+        public void more(String message) {
+            lines.add("more:" + message);
+        }
+
+        public void print(String message) {
+        }
+
+        public void close() {
+        }
+    };
+}
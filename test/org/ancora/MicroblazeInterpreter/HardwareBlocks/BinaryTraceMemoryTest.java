@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks;
+
+import java.io.File;
+import java.io.IOException;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.BinaryTraceFormat;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.BinaryTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.BinaryTraceWriter;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.TraceMemory;
+import org.ancora.MicroblazeInterpreter.Parser.TraceLineParser;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.MicroblazeInterpreter.Support.ConvertTraces;
+import org.ancora.jCommons.Disk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class BinaryTraceMemoryTest {
+
+    @Before
+    public void setUp() throws IOException {
+        disk = Disk.getDisk();
+        binaryFile = File.createTempFile("trace", BinaryTraceFormat.EXTENSION);
+    }
+
+    @After
+    public void tearDown() {
+        binaryFile.delete();
+    }
+
+    /**
+     * A trace with more operations than the format supports cannot be
+     * converted, and no binary file is left.
+     */
+    @Test
+    public void testTooManyOperations() throws IOException {
+        StringBuilder trace = new StringBuilder();
+        for (int i = 0; i <= BinaryTraceFormat.MAX_OPERATIONS; i++) {
+            trace.append("0x00000000  op" + i + "     r3, r3, r3\n");
+        }
+        File traceFile = ProcessorFixture.newTraceFile(trace.toString());
+
+        assertEquals(-1, ConvertTraces.convertTraceFile(traceFile, binaryFile));
+        assertFalse(binaryFile.exists());
+    }
+
+    /**
+     * Converts a text trace and checks that the same instructions are read
+     * back, both as records and as lines.
+     */
+    @Test
+    public void testSameAsTraceMemory() {
+        File testFile = disk.safeFile(test1filename);
+        TraceRecord record = new TraceRecord();
+
+        TraceMemory text = new TraceMemory(testFile);
+        BinaryTraceWriter writer = new BinaryTraceWriter(binaryFile);
+        while (text.nextInstruction(record)) {
+            assertTrue(writer.write(record));
+        }
+        // Operation which is not implemented
+        new TraceLineParser().parse("0x000000f8  mfs     r3, rmsr", record);
+        assertTrue(writer.write(record));
+        writer.close();
+        assertEquals(4, writer.getNumRecords());
+
+        TraceMemory expected = new TraceMemory(testFile);
+        BinaryTraceMemory instance = new BinaryTraceMemory(binaryFile);
+        TraceRecord expectedRecord = new TraceRecord();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(expected.nextInstruction(expectedRecord));
+            assertTrue(instance.nextInstruction(record));
+            assertTrue(expectedRecord.isSameInstruction(record));
+        }
+        assertTrue(instance.nextInstruction(record));
+        assertEquals(TraceRecord.UNKNOWN_OPCODE, record.getOpcode());
+        assertEquals("mfs", record.getOpName());
+        assertFalse(instance.nextInstruction(record));
+
+        // Lines are rebuilt in the same format as the text trace
+        expected = new TraceMemory(testFile);
+        instance = new BinaryTraceMemory(binaryFile);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected.nextInstruction().trim(), instance.nextInstruction());
+        }
+    }
+
+    // Definitions
+    private Disk disk;
+    private File binaryFile;
+    private String test1filename = "./test/test_trace1.txt";
+}
@@ -0,0 +1,223 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.HardwareBlocks;
+
+import java.util.Arrays;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.CachedSegments;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemoryPlus;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.UninitializedReadPolicy;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.UninitializedReads;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class CachedSegmentsTest {
+
+    /**
+     * Writes to segments in different regions of the address space, some of
+     * them in the same entry of the cache, and reads them back.
+     */
+    @Test
+    public void testRegions() {
+        int[] addresses = {0x00000000, 0x00000ffc, 0x00001000, 0x00008000,
+            0x80000000, 0xfffffffc, 0x7fff0ff0, 0x00400100};
+
+        CachedSegments instance = new CachedSegments();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < addresses.length; i++) {
+                instance.storeWord(addresses[i], addresses[i] + round);
+            }
+            for (int i = 0; i < addresses.length; i++) {
+                assertEquals(addresses[i] + round, instance.loadWord(addresses[i]));
+            }
+        }
+
+        assertFalse(instance.isWordWritten(0x00000004));
+        assertEquals(7, instance.getNumSegments());
+
+        int[] expected = addresses.clone();
+        int[] result = instance.writtenWordAddresses();
+        Arrays.sort(expected);
+        Arrays.sort(result);
+        assertArrayEquals(expected, result);
+
+        assertTrue(instance.stats().contains("Cache hits:"));
+    }
+
+    /**
+     * Alternating between stack, globals and heap only misses the first time
+     * each segment is accessed.
+     */
+    @Test
+    public void testAlternatingRegions() {
+        int[] addresses = {0x7ffffffc, 0x00002000, 0x00101000};
+
+        CachedSegments instance = new CachedSegments();
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < addresses.length; i++) {
+                instance.storeWord(addresses[i], round);
+            }
+        }
+
+        assertEquals(300, instance.getAccesses());
+        assertEquals(3, instance.getMisses());
+    }
+
+    /**
+     * Stores a range of bytes which crosses a segment, and compares it with
+     * storing byte by byte.
+     */
+    @Test
+    public void testBytes() {
+        final int address = 0x00000ffd;
+        byte[] bytes = new byte[11];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (0xF0 + i);
+        }
+
+        DataMemoryPlus expected = new DataMemoryPlus(new CachedSegments());
+        DataMemoryPlus instance = new DataMemoryPlus(new CachedSegments());
+        expected.storeWord(0x00000ffc, 0x12345678);
+        instance.storeWord(0x00000ffc, 0x12345678);
+        for (int i = 0; i < bytes.length; i++) {
+            expected.storeByte(address + i, bytes[i]);
+        }
+        instance.storeBytes(address, bytes, 0, bytes.length);
+
+        for (int word = 0x00000ffc; word < 0x0000100c; word += 4) {
+            assertEquals(expected.loadWord(word), instance.loadWord(word));
+        }
+        assertEquals(0x78, instance.loadByte(0x00000ffc));
+
+        byte[] result = new byte[bytes.length + 2];
+        instance.loadBytes(address, result, 1, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            assertEquals(bytes[i], result[i + 1]);
+        }
+
+        instance.storeHalfword(0x00001002, 0xABCD);
+        assertEquals(0xABCD, instance.loadHalfword(0x00001002));
+        assertEquals(0xF4, instance.loadByte(0x00001001));
+    }
+
+    @Test
+    public void testUninitializedReads() {
+        UninitializedReads count = new UninitializedReads(UninitializedReadPolicy.count);
+        CachedSegments instance = new CachedSegments(count);
+        assertEquals(0, instance.loadWord(0x00002000));
+        assertEquals(0, instance.loadWord(0x00002000));
+        assertTrue(instance.isWordWritten(0x00002000));
+        assertEquals(1, count.getTotal());
+
+        UninitializedReads zero = new UninitializedReads(UninitializedReadPolicy.zero);
+        instance = new CachedSegments(zero);
+        assertEquals(0, instance.loadWord(0x00002000));
+        assertEquals(0, instance.loadWord(0x00002004));
+        assertEquals(0, instance.loadWord(0x00003000));
+        assertFalse(instance.isWordWritten(0x00002000));
+        assertEquals(3, zero.getTotal());
+        assertEquals(2, zero.getBySegment().size());
+
+        instance = new CachedSegments(new UninitializedReads(UninitializedReadPolicy.fail));
+        instance.storeWord(0x00002000, 1);
+        assertEquals(1, instance.loadWord(0x00002000));
+        try {
+            instance.loadWord(0x00002004);
+            fail("Uninitialized read should fail");
+        } catch (IllegalStateException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * Forks a memory twice and writes to the original and to the forks.
+     * Only the written segments are copied.
+     */
+    @Test
+    public void testFork() {
+        CachedSegments original = new CachedSegments();
+        original.storeWord(0x00001000, 1);
+        original.storeWord(0x00002000, 2);
+        original.storeWord(0x80000000, 3);
+
+        CachedSegments fork = original.fork(new UninitializedReads(UninitializedReadPolicy.warn));
+        CachedSegments other = original.fork(new UninitializedReads(UninitializedReadPolicy.warn));
+        fork.storeWord(0x00001000, 10);
+        fork.storeWord(0x00004000, 40);
+        other.storeMasked(0x00002000, 0x2000, 0xFF00);
+        original.storeWord(0x80000000, 30);
+
+        assertEquals(1, original.loadWord(0x00001000));
+        assertEquals(2, original.loadWord(0x00002000));
+        assertEquals(30, original.loadWord(0x80000000));
+        assertFalse(original.isWordWritten(0x00004000));
+
+        assertEquals(10, fork.loadWord(0x00001000));
+        assertEquals(2, fork.loadWord(0x00002000));
+        assertEquals(3, fork.loadWord(0x80000000));
+        assertEquals(40, fork.loadWord(0x00004000));
+
+        assertEquals(1, other.loadWord(0x00001000));
+        assertEquals(0x2002, other.loadWord(0x00002000));
+        assertEquals(3, other.loadWord(0x80000000));
+
+        assertEquals(1, original.getCopies());
+        assertEquals(1, fork.getCopies());
+        assertEquals(1, other.getCopies());
+
+        // Copies are only made once
+        fork.storeWord(0x00001004, 11);
+        assertEquals(1, fork.getCopies());
+        assertEquals(4, fork.getNumSegments());
+
+        // Reading written words and querying do not copy or create segments
+        byte[] bytes = new byte[4];
+        other.loadBytes(0x80000000, bytes, 0, bytes.length);
+        assertEquals(3, bytes[0]);
+        assertFalse(other.isWordWritten(0x40000000));
+        assertEquals(1, other.getCopies());
+        assertEquals(3, other.getNumSegments());
+    }
+
+    /**
+     * Uninitialized reads in a shared segment are reported by the memory
+     * which reads them, and the zero written by the policy is not seen by
+     * the other memories.
+     */
+    @Test
+    public void testForkUninitializedReads() {
+        UninitializedReads originalReads = new UninitializedReads(UninitializedReadPolicy.count);
+        CachedSegments original = new CachedSegments(originalReads);
+        original.storeWord(0x00001000, 1);
+
+        UninitializedReads forkReads = new UninitializedReads(UninitializedReadPolicy.count);
+        CachedSegments fork = original.fork(forkReads);
+        assertEquals(0, fork.loadWord(0x00001004));
+        assertTrue(fork.isWordWritten(0x00001004));
+        assertFalse(original.isWordWritten(0x00001004));
+        assertEquals(1, forkReads.getTotal());
+        assertEquals(0, originalReads.getTotal());
+
+        byte[] bytes = new byte[8];
+        original.loadBytes(0x00001000, bytes, 0, bytes.length);
+        assertEquals(1, originalReads.getTotal());
+        assertEquals(1, forkReads.getTotal());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks;
+
+import java.io.File;
+import java.io.IOException;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.InstructionMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.MappedTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.TraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.Checkpoint;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.junit.Test;
+import static org.ancora.MicroblazeInterpreter.HardwareBlocks.ProcessorFixture.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class CheckpointTest {
+
+    /**
+     * Saves a checkpoint between an imm and the instruction which uses it.
+     * TraceMemory is not seekable, so the restored processor reads the
+     * instructions before the checkpoint.
+     */
+    @Test
+    public void testImmediate() throws IOException {
+        StringBuilder trace = new StringBuilder();
+        trace.append("0x00000000  addik   r3, r0, 100\n");
+        trace.append("0x00000004  swi     r3, r0, 64\n");
+        trace.append("0x00000008  imm     1\n");
+        trace.append("0x0000000c  addik   r4, r0, 5\n");
+        trace.append("0x00000010  lwi     r5, r0, 64\n");
+        File traceFile = newTraceFile(trace.toString());
+
+        MbProcessor instance = compare(new TraceMemory(traceFile),
+                new TraceMemory(traceFile), new TraceMemory(traceFile), 3);
+        assertEquals(0x10005, instance.getRegisterFile().read(4));
+        assertEquals(100, instance.getRegisterFile().read(5));
+    }
+
+    /**
+     * Saves a checkpoint in the middle of a trace, and continues from the
+     * position of the mapped trace.
+     */
+    @Test
+    public void testTrace() throws IOException {
+        File traceFile = new File(traceFilename);
+        compare(new MappedTraceMemory(traceFile), new MappedTraceMemory(traceFile),
+                new MappedTraceMemory(traceFile), 50001);
+    }
+
+    /**
+     * Runs a trace from the beginning, and from a checkpoint saved after the
+     * given number of instructions, and compares the registers, the clock and
+     * the data memory.
+     *
+     * @return the restored processor
+     */
+    private MbProcessor compare(InstructionMemory expectedMemory,
+            InstructionMemory savedMemory, InstructionMemory restoredMemory,
+            long instructions) throws IOException {
+        MbProcessor expected = newProcessor(expectedMemory);
+        expected.run();
+
+        File checkpointFile = File.createTempFile("checkpoint", Checkpoint.EXTENSION);
+        checkpointFile.deleteOnExit();
+        MbProcessor saved = newProcessor(savedMemory);
+        assertEquals(instructions, saved.runFor(instructions));
+        assertTrue(Checkpoint.save(saved, instructions, checkpointFile));
+
+        MbProcessor instance = newProcessor(restoredMemory);
+        assertEquals(instructions, Checkpoint.restore(instance, checkpointFile));
+        instance.run();
+
+        assertSameState(expected, instance);
+        assertSameMemory(expected, instance);
+        assertEquals(expected.getInstructionCount(), instance.getInstructionCount());
+
+        return instance;
+    }
+
+
+    private String traceFilename = "./traces/adpcm-coder_trace_without_optimization.txt";
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.CompressedTraceFormat;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.CompressedTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.CompressedTraceWriter;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.TraceMemory;
+import org.ancora.MicroblazeInterpreter.Parser.TraceLineParser;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.jCommons.Disk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class CompressedTraceMemoryTest {
+
+    @Before
+    public void setUp() throws IOException {
+        disk = Disk.getDisk();
+        compressedFile = File.createTempFile("trace", CompressedTraceFormat.EXTENSION);
+    }
+
+    @After
+    public void tearDown() {
+        compressedFile.delete();
+    }
+
+    /**
+     * A file which ends inside the definition of an instruction returns no
+     * instruction, instead of an instruction decoded with missing bytes.
+     */
+    @Test
+    public void testTruncated() throws IOException {
+        TraceRecord record = new TraceRecord();
+        TraceMemory text = new TraceMemory(disk.safeFile(test1filename));
+        CompressedTraceWriter writer = new CompressedTraceWriter(compressedFile);
+        while (text.nextInstruction(record)) {
+            assertTrue(writer.write(record));
+        }
+        writer.close();
+
+        // Header, token and the first bytes of the name
+        RandomAccessFile file = new RandomAccessFile(compressedFile, "rw");
+        file.setLength(8 + 3);
+        file.close();
+
+        CompressedTraceMemory instance = new CompressedTraceMemory(compressedFile);
+        assertFalse(instance.nextInstruction(record));
+        assertFalse(instance.nextInstruction(record));
+    }
+
+    /**
+     * Converts a text trace and checks that the same instructions are read
+     * back, both as records and as lines.
+     */
+    @Test
+    public void testSameAsTraceMemory() {
+        File testFile = disk.safeFile(test1filename);
+        TraceRecord record = new TraceRecord();
+
+        TraceMemory text = new TraceMemory(testFile);
+        CompressedTraceWriter writer = new CompressedTraceWriter(compressedFile);
+        while (text.nextInstruction(record)) {
+            assertTrue(writer.write(record));
+        }
+        // Operation which is not implemented, jumping back
+        new TraceLineParser().parse("0x00000004  mfs     r3, rmsr", record);
+        assertTrue(writer.write(record));
+        // Repeated static instruction
+        new TraceLineParser().parse("0x00000008  mfs     r3, rmsr", record);
+        assertTrue(writer.write(record));
+        writer.close();
+        assertEquals(5, writer.getNumRecords());
+        assertEquals(4, writer.getDictionarySize());
+
+        TraceMemory expected = new TraceMemory(testFile);
+        CompressedTraceMemory instance = new CompressedTraceMemory(compressedFile);
+        TraceRecord expectedRecord = new TraceRecord();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(expected.nextInstruction(expectedRecord));
+            assertTrue(instance.nextInstruction(record));
+            assertTrue(expectedRecord.isSameInstruction(record));
+        }
+        assertTrue(instance.nextInstruction(record));
+        assertEquals(TraceRecord.UNKNOWN_OPCODE, record.getOpcode());
+        assertEquals("mfs", record.getOpName());
+        assertEquals(4, record.getAddress());
+        assertTrue(instance.nextInstruction(record));
+        assertEquals(8, record.getAddress());
+        assertFalse(instance.nextInstruction(record));
+
+        // Lines are rebuilt in the same format as the text trace
+        expected = new TraceMemory(testFile);
+        instance = new CompressedTraceMemory(compressedFile);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected.nextInstruction().trim(), instance.nextInstruction());
+        }
+    }
+
+    // Definitions
+    private Disk disk;
+    private File compressedFile;
+    private String test1filename = "./test/test_trace1.txt";
+}
@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.HardwareBlocks;
+
+import java.io.File;
+import java.io.IOException;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.TraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.junit.Test;
+import static org.ancora.MicroblazeInterpreter.HardwareBlocks.ProcessorFixture.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class InstructionFusionTest {
+
+    /**
+     * Runs imm pairs three times; the pairs are fused after the first time.
+     * The instruction after the pairs must not use the immediate.
+     */
+    @Test
+    public void testImmediate() throws IOException {
+        StringBuilder trace = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            trace.append("0x00000000  imm     1\n");
+            trace.append("0x00000004  addik   r3, r0, -32768\n");
+            trace.append("0x00000008  imm     -1\n");
+            trace.append("0x0000000c  addik   r4, r0, 5\n");
+            trace.append("0x00000010  addik   r5, r0, 7\n");
+            trace.append("0x00000014  bri     -20\n");
+        }
+        File traceFile = newTraceFile(trace.toString());
+
+        MbProcessor instance = compare(traceFile);
+        assertEquals(0x18000, instance.getRegisterFile().read(3));
+        assertEquals(0xFFFF0005, instance.getRegisterFile().read(4));
+        assertEquals(7, instance.getRegisterFile().read(5));
+        assertEquals(4, instance.getFusedExecutions());
+    }
+
+    /**
+     * Runs pairs which overlap: add and lw are fused the first time, and
+     * then imm and add. The fused imm must not execute the fused add and lw,
+     * or the lw runs twice.
+     */
+    @Test
+    public void testOverlappingPairs() throws IOException {
+        StringBuilder trace = new StringBuilder();
+        // Each word points to the next one
+        for (int address = 0; address <= 32; address += 4) {
+            trace.append("0x00000100  addik   r4, r0, " + (address + 4) + "\n");
+            trace.append("0x00000104  swi     r4, r0, " + address + "\n");
+        }
+        trace.append("0x00000010  add     r3, r3, r0\n");
+        trace.append("0x00000014  lw      r3, r3, r0\n");
+        for (int i = 0; i < 3; i++) {
+            trace.append("0x0000000c  imm     0\n");
+            trace.append("0x00000010  add     r3, r3, r0\n");
+            trace.append("0x00000014  lw      r3, r3, r0\n");
+        }
+        File traceFile = newTraceFile(trace.toString());
+
+        MbProcessor instance = compare(traceFile);
+        assertEquals(16, instance.getRegisterFile().read(3));
+        assertTrue(instance.getFusedExecutions() > 0);
+    }
+
+    /**
+     * Runs a whole trace with and without fusion.
+     */
+    @Test
+    public void testTrace() {
+        MbProcessor instance = compare(new File(traceFilename));
+        assertTrue(instance.getFusedExecutions() > 0);
+    }
+
+    /**
+     * Runs a trace with and without fusion, and compares the registers and
+     * the clock.
+     *
+     * @return the processor with fusion
+     */
+    private MbProcessor compare(File traceFile) {
+        MbProcessor expected = newProcessor(new TraceMemory(traceFile));
+        expected.setFusion(false);
+        expected.run();
+
+        MbProcessor instance = newProcessor(new TraceMemory(traceFile));
+        instance.setFusion(true);
+        instance.run();
+
+        assertEquals(0, expected.getFusedExecutions());
+        assertSameState(expected, instance);
+        assertFalse(instance.getLockRegister().isLocked());
+
+        return instance;
+    }
+
+
+    private String traceFilename = "./traces/adpcm-coder_trace_without_optimization.txt";
+}
@@ -0,0 +1,81 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.HardwareBlocks;
+
+import java.io.File;
+import java.io.IOException;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.MappedDataMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.UninitializedReadPolicy;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.UninitializedReads;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class MappedDataMemoryTest {
+
+    @Test
+    public void testStoreLoad() {
+        int[] addresses = {0x00000000, 0x00000004, 0x00001000, 0x0fffffff,
+            0x10000000, 0x7ffffffc, 0xfffffffc};
+
+        MappedDataMemory instance = MappedDataMemory.newInstance();
+        assertNotNull(instance);
+
+        for (int i = 0; i < addresses.length; i++) {
+            assertFalse(instance.isWordWritten(addresses[i]));
+            instance.storeWord(addresses[i], ~addresses[i]);
+        }
+        for (int i = 0; i < addresses.length; i++) {
+            assertTrue(instance.isWordWritten(addresses[i]));
+            assertEquals(~addresses[i], instance.loadWord(addresses[i]));
+        }
+        assertFalse(instance.isWordWritten(0x00000008));
+
+        // Unaligned address is the word address 0x0ffffffc
+        int[] expected = {0x00000000, 0x00000004, 0x00001000, 0x0ffffffc,
+            0x10000000, 0x7ffffffc, 0xfffffffc};
+        assertArrayEquals(expected, instance.writtenWordAddresses());
+        instance.close();
+    }
+
+    /**
+     * Close releases the scratch file, and the memory cannot be used
+     * afterwards.
+     */
+    @Test
+    public void testClose() throws IOException {
+        File scratchFile = File.createTempFile("scratch", ".bin");
+        MappedDataMemory instance = MappedDataMemory.newInstance(scratchFile,
+                new UninitializedReads(UninitializedReadPolicy.count));
+        assertNotNull(instance);
+        instance.storeWord(0x1000, 1);
+
+        instance.close();
+        assertFalse(scratchFile.exists());
+        try {
+            instance.loadWord(0x1000);
+            fail("Memory was used after close");
+        } catch (NullPointerException ex) {
+        }
+
+        // Closing again does nothing
+        instance.close();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks;
+
+import java.io.File;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.MappedTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.TraceMemory;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.ancora.jCommons.Disk;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class MappedTraceMemoryTest {
+
+    @Before
+    public void setUp() {
+        disk = Disk.getDisk();
+    }
+
+    /**
+     * Test of nextInstruction method, comparing with TraceMemory.
+     */
+    @Test
+    public void testSameAsTraceMemory() {
+        File testFile = disk.safeFile(test1filename);
+        TraceMemory expected = new TraceMemory(testFile);
+        MappedTraceMemory instance = new MappedTraceMemory(testFile);
+
+        int counter = 0;
+        String inst = expected.nextInstruction();
+        while (inst != null) {
+            assertEquals(inst, instance.nextInstruction());
+            inst = expected.nextInstruction();
+            counter++;
+        }
+
+        assertEquals(3, counter);
+        assertNull(instance.nextInstruction());
+        assertNull(instance.nextInstruction());
+        instance.close();
+    }
+
+    /**
+     * Test of nextInstruction method with a window smaller than the file, so
+     * that lines cross the end of the windows.
+     */
+    @Test
+    public void testSmallWindow() {
+        File testFile = disk.safeFile(test1filename);
+        TraceMemory expected = new TraceMemory(testFile);
+        MappedTraceMemory instance = new MappedTraceMemory(testFile, 32);
+        TraceRecord expectedRecord = new TraceRecord();
+        TraceRecord record = new TraceRecord();
+
+        int counter = 0;
+        while (expected.nextInstruction(expectedRecord)) {
+            assertTrue(instance.nextInstruction(record));
+            assertTrue(expectedRecord.isSameInstruction(record));
+            counter++;
+        }
+
+        assertEquals(3, counter);
+        assertFalse(instance.nextInstruction(record));
+        instance.close();
+    }
+
+    /**
+     * Seek still works after the end of the file is reached, until the
+     * memory is closed.
+     */
+    @Test
+    public void testSeekAfterEnd() {
+        MappedTraceMemory instance = new MappedTraceMemory(disk.safeFile(test1filename));
+        String first = instance.nextInstruction();
+        final long position = instance.getPosition();
+        String second = instance.nextInstruction();
+        while (instance.nextInstruction() != null) {
+        }
+
+        assertTrue(instance.seek(position));
+        assertEquals(second, instance.nextInstruction());
+        assertTrue(instance.seek(0));
+        assertEquals(first, instance.nextInstruction());
+
+        instance.close();
+        assertFalse(instance.seek(0));
+        assertNull(instance.nextInstruction());
+    }
+
+    // Definitions
+    private Disk disk;
+    private String test1filename = "./test/test_trace1.txt";
+}
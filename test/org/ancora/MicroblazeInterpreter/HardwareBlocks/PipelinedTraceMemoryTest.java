@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.HardwareBlocks;
+
+import java.io.File;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.InstructionMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.MappedTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.PipelinedTraceMemory;
+import org.ancora.MicroblazeInterpreter.Parser.TraceRecord;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class PipelinedTraceMemoryTest {
+
+    /**
+     * Test of nextInstruction method with chunks of every size up to the
+     * size of the file, so that lines cross the end of the chunks in every
+     * position.
+     */
+    @Test
+    public void testSmallChunks() {
+        File testFile = new File(test1filename);
+        for (int chunkSize = 1; chunkSize <= testFile.length(); chunkSize++) {
+            assertEquals(3, compare(testFile,
+                    new PipelinedTraceMemory(testFile, 2, chunkSize)));
+        }
+    }
+
+    /**
+     * Test of nextInstruction method with a full trace and more chunks than
+     * slots in the ring buffer.
+     */
+    @Test
+    public void testTrace() {
+        File testFile = new File(traceFilename);
+        int counter = compare(testFile, new PipelinedTraceMemory(testFile, 3, 1000));
+        assertTrue(counter > 0);
+    }
+
+    /**
+     * Closes the memory before the end of the trace, while the decoders wait
+     * for free slots. The decoders must end.
+     */
+    @Test
+    public void testClose() {
+        File testFile = new File(traceFilename);
+        int threadsBefore = countDecoders();
+        PipelinedTraceMemory instance = new PipelinedTraceMemory(testFile, 3, 1000);
+        TraceRecord record = new TraceRecord();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(instance.nextInstruction(record));
+        }
+
+        instance.close();
+        assertFalse(instance.nextInstruction(record));
+        assertEquals(threadsBefore, countDecoders());
+        instance.close();
+    }
+
+    /**
+     * @return the number of decoder threads which are running
+     */
+    private int countDecoders() {
+        Thread[] threads = new Thread[Thread.activeCount() * 2];
+        int numThreads = Thread.enumerate(threads);
+        int count = 0;
+        for (int i = 0; i < numThreads; i++) {
+            if (threads[i].getName().startsWith("Trace decoder") && threads[i].isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Compares all the instructions with MappedTraceMemory.
+     *
+     * @return the number of instructions
+     */
+    private int compare(File testFile, InstructionMemory instance) {
+        MappedTraceMemory expected = new MappedTraceMemory(testFile);
+        TraceRecord expectedRecord = new TraceRecord();
+        TraceRecord record = new TraceRecord();
+
+        int counter = 0;
+        while (expected.nextInstruction(expectedRecord)) {
+            assertTrue(instance.nextInstruction(record));
+            assertTrue(expectedRecord.isSameInstruction(record));
+            counter++;
+        }
+
+        assertFalse(instance.nextInstruction(record));
+        assertFalse(instance.nextInstruction(record));
+        expected.close();
+        return counter;
+    }
+
+    // Definitions
+    private String test1filename = "./test/test_trace1.txt";
+    private String traceFilename = "./traces/fdct_trace_without_optimization.txt";
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.ancora.MicroblazeInterpreter.Configuration.MbConfiguration;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.CachedSegments;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.DataMemory.DataMemoryPlus;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.InstructionMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.CycleClock;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.LockRegister;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.RegisterFileArray;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialRegister;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SprFields;
+import static org.junit.Assert.*;
+
+/**
+ * Builds processors and traces for the tests which run processors, and
+ * compares the processors after the runs.
+ *
+ * @author Joao Bispo
+ */
+public class ProcessorFixture {
+
+    /**
+     * @param memory
+     * @return a processor with the default hardware blocks and configuration
+     */
+    public static MbProcessor newProcessor(InstructionMemory memory) {
+        SpecialPurposeRegisters spr = new SprFields();
+        LockRegister lockRegister = new LockRegister();
+        return new MbProcessor(memory, spr,
+                new RegisterFileArray(), lockRegister,
+                new CycleClock(lockRegister, spr),
+                new DataMemoryPlus(new CachedSegments()), new MbConfiguration());
+    }
+
+    /**
+     * Writes a text trace to a temporary file, which is deleted on exit.
+     *
+     * @param trace the lines of the trace
+     * @return the file
+     */
+    public static File newTraceFile(String trace) throws IOException {
+        File traceFile = File.createTempFile("trace", ".txt");
+        traceFile.deleteOnExit();
+        FileOutputStream stream = new FileOutputStream(traceFile);
+        stream.write(trace.getBytes("US-ASCII"));
+        stream.close();
+
+        return traceFile;
+    }
+
+    /**
+     * Compares the clock, the special purpose registers and the registers of
+     * two processors.
+     */
+    public static void assertSameState(MbProcessor expected, MbProcessor actual) {
+        assertEquals(expected.getClock().getLatency(), actual.getClock().getLatency());
+        for (SpecialRegister register : SpecialRegister.values()) {
+            assertEquals(expected.getSpecialRegisters().read(register),
+                    actual.getSpecialRegisters().read(register));
+        }
+        for (int i = 0; i < expected.getRegisterFile().numRegisters(); i++) {
+            assertEquals(expected.getRegisterFile().read(i),
+                    actual.getRegisterFile().read(i));
+        }
+    }
+
+    /**
+     * Compares the words written in the data memories of two processors.
+     */
+    public static void assertSameMemory(MbProcessor expected, MbProcessor actual) {
+        int[] addresses = expected.getDataMemory().writtenWordAddresses();
+        int[] actualAddresses = actual.getDataMemory().writtenWordAddresses();
+        Arrays.sort(addresses);
+        Arrays.sort(actualAddresses);
+        assertArrayEquals(addresses, actualAddresses);
+        for (int address : addresses) {
+            assertEquals(expected.getDataMemory().loadWord(address),
+                    actual.getDataMemory().loadWord(address));
+        }
+    }
+}
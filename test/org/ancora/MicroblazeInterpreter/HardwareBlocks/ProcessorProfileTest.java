@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.HardwareBlocks;
+
+import java.io.File;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.TraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.ProcessorProfile;
+import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
+import org.junit.Test;
+import static org.ancora.MicroblazeInterpreter.HardwareBlocks.ProcessorFixture.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class ProcessorProfileTest {
+
+    @Test
+    public void testProfiledRun() {
+        MbProcessor expected = newProcessor(new TraceMemory(new File(test1filename)));
+        expected.run();
+
+        MbProcessor instance = newProcessor(new TraceMemory(new File(test1filename)));
+        ProcessorProfile profile = new ProcessorProfile();
+        instance.setProfile(profile);
+        instance.run();
+
+        assertSameState(expected, instance);
+
+        long cycles = 0;
+        for (InstructionBuilder builder : InstructionBuilder.values()) {
+            cycles += profile.getCycles(builder.ordinal());
+        }
+        assertEquals(instance.getClock().getLatency(), cycles);
+        assertEquals(1, profile.getCount(InstructionBuilder.addik.ordinal()));
+        assertEquals(1, profile.getCount(InstructionBuilder.brai.ordinal()));
+        assertTrue(profile.toCsv().contains("operation,addik,1,1\n"));
+        assertTrue(profile.toJson().contains("\"bri\": {\"count\": 1"));
+    }
+
+
+    private String test1filename = "./test/test_trace1.txt";
+}
@@ -0,0 +1,80 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks;
+
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialPurposeRegisters;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SpecialRegister;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SprFields;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Registers.SprMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class SprFieldsTest {
+
+    /**
+     * Applies the same operations to SprFields and SprMap, and compares the
+     * registers after each one.
+     */
+    @Test
+    public void testSameAsSprMap() {
+        SpecialPurposeRegisters expected = new SprMap();
+        SpecialPurposeRegisters instance = new SprFields();
+
+        for (int i = 0; i < 4; i++) {
+            expected.writeCarryBit(i & 1);
+            instance.writeCarryBit(i & 1);
+            assertSame(expected, instance);
+
+            expected.writeDzoBit(i & 1);
+            instance.writeDzoBit(i & 1);
+            expected.writeDecBit((i >> 1) & 1);
+            instance.writeDecBit((i >> 1) & 1);
+            expected.writeEcBits(i * 7);
+            instance.writeEcBits(i * 7);
+            assertSame(expected, instance);
+
+            expected.incrementPc();
+            instance.incrementPc();
+            assertSame(expected, instance);
+        }
+
+        expected.write(SpecialRegister.rmsr, 0xFFFFFFFF);
+        instance.write(SpecialRegister.rmsr, 0xFFFFFFFF);
+        expected.writeCarryBit(0);
+        instance.writeCarryBit(0);
+        expected.writePc(0x8000fffc);
+        instance.writePc(0x8000fffc);
+        assertSame(expected, instance);
+        assertEquals(0, instance.getCarryBit());
+    }
+
+    private void assertSame(SpecialPurposeRegisters expected,
+            SpecialPurposeRegisters instance) {
+        for (SpecialRegister reg : SpecialRegister.values()) {
+            assertEquals(reg.name(), expected.read(reg), instance.read(reg));
+            assertEquals(reg.name(), expected.read(reg.getAddress()),
+                    instance.read(reg.getAddress()));
+        }
+        assertEquals(expected.getCarryBit(), instance.getCarryBit());
+        assertEquals(expected.getPc(), instance.getPc());
+    }
+}
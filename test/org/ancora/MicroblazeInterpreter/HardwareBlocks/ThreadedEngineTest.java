@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.HardwareBlocks;
+
+import java.io.File;
+import java.io.IOException;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.MappedTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.TraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.LinkedTrace;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.ProcessorProgress;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.ThreadedEngine;
+import org.junit.Test;
+import static org.ancora.MicroblazeInterpreter.HardwareBlocks.ProcessorFixture.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class ThreadedEngineTest {
+
+    /**
+     * Static instructions are identified by address and arguments, and
+     * operations which are not implemented are kept in the stream.
+     */
+    @Test
+    public void testLink() throws IOException {
+        StringBuilder trace = new StringBuilder();
+        trace.append("0x00000000  addik   r3, r0, 1\n");
+        trace.append("0x00000004  nopx    r3, r3, r3\n");
+        trace.append("0x00000000  addik   r3, r0, 1\n");
+        trace.append("0x00000004  nopx    r3, r3, r3\n");
+        trace.append("0x00000000  addik   r3, r3, 2\n");
+        trace.append("0x00000008  addk    r4, r3, r3\n");
+        File traceFile = newTraceFile(trace.toString());
+
+        ProcessorProgress progress = new ProcessorProgress();
+        LinkedTrace linked = LinkedTrace.link(new TraceMemory(traceFile), progress);
+        assertEquals(6, progress.getInstructions());
+        assertEquals(8, progress.getPc());
+        assertEquals(6, linked.size());
+        assertEquals(4, linked.getNumStatic());
+        int[] expectedIds = {0, 1, 0, 1, 2, 3};
+        for (int i = 0; i < expectedIds.length; i++) {
+            assertEquals(expectedIds[i], linked.getId(i));
+        }
+
+        MbProcessor instance = newProcessor(new TraceMemory(traceFile));
+        assertEquals(6, new ThreadedEngine(instance, linked).run());
+        assertEquals(3, instance.getRegisterFile().read(3));
+        assertEquals(6, instance.getRegisterFile().read(4));
+        assertEquals(2, instance.getNotImplemented().getTotal());
+        assertEquals(6, instance.getInstructionCount());
+    }
+
+    /**
+     * Runs a trace with threaded code in two processors, and compares them
+     * with a processor which runs the trace file.
+     */
+    @Test
+    public void testTrace() {
+        File traceFile = new File(traceFilename);
+        MbProcessor expected = newProcessor(new MappedTraceMemory(traceFile));
+        expected.run();
+
+        LinkedTrace linked = LinkedTrace.link(new MappedTraceMemory(traceFile));
+        for (int i = 0; i < 2; i++) {
+            MbProcessor instance = newProcessor(new MappedTraceMemory(traceFile));
+            new ThreadedEngine(instance, linked).run();
+
+            assertSameState(expected, instance);
+            assertSameMemory(expected, instance);
+        }
+    }
+
+
+    private String traceFilename = "./traces/fdct_trace_without_optimization.txt";
+}
@@ -0,0 +1,62 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Instructions;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class InstructionBuilderTest {
+
+    /**
+     * The variant bits of the unconditional branches follow the letters after
+     * "br" in their names.
+     */
+    @Test
+    public void testBranchVariants() {
+        InstructionBuilder[] branches = {
+            InstructionBuilder.br, InstructionBuilder.bra, InstructionBuilder.brd,
+            InstructionBuilder.brad, InstructionBuilder.brld, InstructionBuilder.brald,
+            InstructionBuilder.bri, InstructionBuilder.brai, InstructionBuilder.brid,
+            InstructionBuilder.braid, InstructionBuilder.brlid, InstructionBuilder.bralid
+        };
+
+        for (InstructionBuilder branch : branches) {
+            String suffix = branch.name().substring(2);
+            int variant = branch.getVariant();
+
+            assertEquals(branch.name(), suffix.contains("a"), Variant.has(variant, Variant.A));
+            assertEquals(branch.name(), suffix.contains("l"), Variant.has(variant, Variant.L));
+            assertEquals(branch.name(), suffix.contains("d"), Variant.has(variant, Variant.D));
+        }
+    }
+
+    @Test
+    public void testArithmeticVariants() {
+        assertEquals(Variant.NONE, InstructionBuilder.add.getVariant());
+        assertEquals(Variant.K | Variant.C, InstructionBuilder.addikc.getVariant());
+        assertEquals(Variant.K, InstructionBuilder.rsubk.getVariant());
+        assertEquals(Variant.U, InstructionBuilder.cmpu.getVariant());
+        assertEquals(Variant.S, InstructionBuilder.bslli.getVariant());
+        assertEquals(Variant.T, InstructionBuilder.bsrai.getVariant());
+        assertEquals(Variant.NONE, InstructionBuilder.bsrli.getVariant());
+    }
+}
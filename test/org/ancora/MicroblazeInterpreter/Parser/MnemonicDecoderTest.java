@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Parser;
+
+import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class MnemonicDecoderTest {
+
+    /**
+     * Every InstructionBuilder is decoded to its ordinal.
+     */
+    @Test
+    public void testAllBuilders() {
+        for (InstructionBuilder builder : InstructionBuilder.values()) {
+            assertEquals(builder.ordinal(), MnemonicDecoder.decode(builder.name()));
+        }
+    }
+
+    /**
+     * Prefixes, extensions and invalid characters are not decoded.
+     */
+    @Test
+    public void testUnknown() {
+        String[] names = {"", "a", "ad", "addikk", "mfs", "ADD", "add ", "br-", "sext1"};
+        for (String name : names) {
+            assertEquals(name, TraceRecord.UNKNOWN_OPCODE, MnemonicDecoder.decode(name));
+        }
+
+        byte[] buffer = {'x', 'o', 'r', 'i', (byte) 0xE9};
+        assertEquals(InstructionBuilder.xori.ordinal(), MnemonicDecoder.decode(buffer, 0, 4));
+        assertEquals(TraceRecord.UNKNOWN_OPCODE, MnemonicDecoder.decode(buffer, 0, 5));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Parser;
+
+import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class TraceLineParserTest {
+
+    @Before
+    public void setUp() {
+        parser = new TraceLineParser();
+        record = new TraceRecord();
+    }
+
+    /**
+     * Test of parse method, comparing with the results of InstructionParser.
+     */
+    @Test
+    public void testSameAsInstructionParser() {
+        for (String line : lines) {
+            assertTrue(parser.parse(line, record));
+            TraceData data = InstructionParser.parseInstruction(line);
+
+            assertEquals(data.getOpName(), record.getOpName());
+            assertEquals(data.getR1Number(), record.getR1Number());
+            assertEquals(data.getR2Number(), record.getR2Number());
+            assertEquals(data.getR3Number(), record.getR3Number());
+            assertEquals(data.getImm(), record.getImm());
+            assertEquals((int) Long.parseLong(
+                    InstructionParser.getMemoryAddress(line), 16),
+                    record.getAddress());
+        }
+    }
+
+    @Test
+    public void testOpcode() {
+        assertTrue(parser.parse("0x000000f8  blei    r18, 20", record));
+        assertEquals(InstructionBuilder.blei.ordinal(), record.getOpcode());
+        assertEquals(18, record.getR1Number());
+        assertEquals(TraceRecord.NO_REGISTER, record.getR2Number());
+        assertTrue(record.hasImm());
+        assertEquals(20, record.getImmValue());
+
+        // Operations which are not implemented keep their name
+        assertTrue(parser.parse("0x000000f8  mfs     r3, rmsr", record));
+        assertEquals(TraceRecord.UNKNOWN_OPCODE, record.getOpcode());
+        assertEquals("mfs", record.getOpName());
+    }
+
+    @Test
+    public void testNotAnInstruction() {
+        assertFalse(parser.parse("Trace", record));
+        assertFalse(parser.parse("", record));
+        assertFalse(parser.parse(" cycles      :        40504", record));
+    }
+
+    @Test
+    public void testHighAddress() {
+        assertTrue(parser.parse("0x8000fffc  addik   r1, r1, -28\r", record));
+        assertEquals(0x8000fffc, record.getAddress());
+        assertEquals(-28, record.getImmValue());
+    }
+
+    // Definitions
+    private TraceLineParser parser;
+    private TraceRecord record;
+    private String[] lines = {
+        "0x00000000  brai    80",
+        "0x00000050  addik   r13, r0, 7544",
+        "0x000000e4  addi    r1, r1, -20",
+        "0x000000e8  sw      r15, r1, r0",
+        "0x000000f4  rsub    r18, r6, r7",
+        "0x0000005c  brlid   r15, 136",
+        "0x00000068  bri     0"
+    };
+}
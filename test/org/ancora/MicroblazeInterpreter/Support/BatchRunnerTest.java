@@ -0,0 +1,72 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.Support;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class BatchRunnerTest {
+
+    /**
+     * Runs the same trace several times in parallel, and a trace which does
+     * not exist. The results of the trace must be the same as in a single
+     * thread.
+     */
+    @Test
+    public void testRun() {
+        Properties config = new Properties();
+        config.setProperty(RunProcessor.ConfigParam.uninitializedReads.name(), "count");
+
+        File traceFile = new File(test1filename);
+        List<File> traceFiles = new ArrayList<File>();
+        for (int i = 0; i < 4; i++) {
+            traceFiles.add(traceFile);
+        }
+        traceFiles.add(new File("./test/does_not_exist.txt"));
+
+        BatchResult expected = new BatchRunner(config, 1)
+                .run(Arrays.asList(traceFile)).get(0);
+        assertTrue(expected.isOk());
+        assertTrue(expected.getCycles() > 0);
+
+        List<BatchResult> results = new BatchRunner(config, 2).run(traceFiles);
+        assertEquals(traceFiles.size(), results.size());
+        for (int i = 0; i < 4; i++) {
+            BatchResult result = results.get(i);
+            assertTrue(result.isOk());
+            assertEquals(expected.getCycles(), result.getCycles());
+            assertArrayEquals(expected.getRegisters(), result.getRegisters());
+            assertArrayEquals(expected.getSpecialRegisters(), result.getSpecialRegisters());
+        }
+        assertFalse(results.get(4).isOk());
+
+        String json = BatchRunner.toJson(results, 2, 0);
+        assertTrue(json.contains("\"failed\": 1"));
+        assertTrue(json.contains("\"totalCycles\": " + expected.getCycles() * 4));
+    }
+
+    private String test1filename = "./test/test_trace1.txt";
+}
@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.Support;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class NumberCounterTest {
+
+    /**
+     * Counts the same numbers in counters with and without a dense range,
+     * and in a map, and merges them.
+     */
+    @Test
+    public void testSameAsMap() {
+        Map<Integer, Long> expected = new TreeMap<Integer, Long>();
+        NumberCounter hashed = new NumberCounter();
+        NumberCounter dense = new NumberCounter(-100, 1000);
+
+        Random random = new Random(3);
+        for (int i = 0; i < 20000; i++) {
+            int number;
+            if (i % 3 == 0) {
+                number = random.nextInt();
+            } else {
+                number = random.nextInt(2000) - 500;
+            }
+            add(expected, number, 1);
+            hashed.addInt(number);
+            dense.addInt(number);
+        }
+        hashed.addInt(Integer.MIN_VALUE);
+        dense.addInt(Integer.MIN_VALUE);
+        add(expected, Integer.MIN_VALUE, 1);
+
+        // Amounts which are not positive are ignored
+        hashed.add(123456789, 0);
+        dense.add(0, 0);
+        dense.add(1234567, -1);
+
+        assertSame(expected, hashed);
+        assertSame(expected, dense);
+        assertEquals(0, hashed.getCount(123456789));
+
+        // Merge
+        hashed.merge(dense);
+        for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+            entry.setValue(entry.getValue() * 2);
+        }
+        assertSame(expected, hashed);
+    }
+
+    private void assertSame(Map<Integer, Long> expected, NumberCounter counter) {
+        assertEquals(expected.size(), counter.size());
+        int[] numbers = counter.sortedNumbers();
+        int index = 0;
+        long total = 0;
+        for (Map.Entry<Integer, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getKey().intValue(), numbers[index]);
+            assertEquals(entry.getValue().longValue(), counter.getCount(numbers[index]));
+            total += entry.getValue();
+            index++;
+        }
+        assertEquals(total, counter.getTotal());
+    }
+
+    private void add(Map<Integer, Long> map, int number, long amount) {
+        Long count = map.get(number);
+        map.put(number, count == null ? amount : count + amount);
+    }
+}
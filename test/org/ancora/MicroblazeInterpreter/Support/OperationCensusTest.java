@@ -0,0 +1,74 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package org.ancora.MicroblazeInterpreter.Support;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.ancora.MicroblazeInterpreter.Instructions.InstructionBuilder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class OperationCensusTest {
+
+    /**
+     * Scans a file with lines which are not instructions, an operation which
+     * is not implemented, addresses with fewer than 8 digits and no newline
+     * at the end, and adds it twice to the totals.
+     */
+    @Test
+    public void testScan() throws IOException {
+        File traceFile = File.createTempFile("census", ".txt");
+        traceFile.deleteOnExit();
+        String trace = "Trace\r\n\r\n"
+                + "0x00000000  brai    80\r\n"
+                + "0x00000050  addik   r1, r1, -32\r\n"
+                + "0x00000054  mfs     r3, rmsr\r\n"
+                + "0x00000058  addik   r1, r1, 32\r\n"
+                + "0x5c  mfs     r4, rmsr\r\n"
+                + "0x60\r\n"
+                + "0x  brai    80\r\n"
+                + "0x00000064\tbrai    80";
+        FileOutputStream stream = new FileOutputStream(traceFile);
+        stream.write(trace.getBytes("US-ASCII"));
+        stream.close();
+
+        OperationCensus census = new OperationCensus(traceFile);
+        assertTrue(census.scan());
+        assertEquals(6, census.getTotal());
+        assertEquals(2, census.getCount(InstructionBuilder.brai.ordinal()));
+        assertEquals(2, census.getCount(InstructionBuilder.addik.ordinal()));
+        assertEquals(1, census.getNotImplemented().size());
+        assertEquals("mfs", census.getNotImplemented().getName(0));
+        assertEquals(2, census.getNotImplemented().getCount(0));
+
+        List<File> traceFiles = new ArrayList<File>();
+        traceFiles.add(traceFile);
+        traceFiles.add(traceFile);
+        OperationTotals totals = new OperationTotals();
+        assertEquals(2, ExtractOperations.processTraceFiles(traceFiles, totals, 2).size());
+        assertEquals(12, totals.getTotal());
+        assertEquals(4, totals.getCount(InstructionBuilder.addik.ordinal()));
+        assertEquals(4, totals.getNotImplementedCount("mfs"));
+    }
+}
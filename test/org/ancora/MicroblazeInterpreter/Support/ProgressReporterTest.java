@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Support;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.ProcessorProgress;
+import org.ancora.jCommons.Console;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class ProgressReporterTest {
+
+    /**
+     * Reports the progress of a trace, with and without fusion, and compares
+     * the published instructions with a run which counts every instruction.
+     */
+    @Test
+    public void testRun() {
+        Properties config = new Properties();
+        config.setProperty(RunProcessor.ConfigParam.uninitializedReads.name(), "count");
+        File traceFile = new File(traceFilename);
+
+        MbProcessor expected = new RunProcessor(config, console).loadMicroBlaze(traceFile);
+        final long instructions = expected.runFor(Long.MAX_VALUE);
+        assertEquals(instructions, expected.getInstructionCount());
+
+        for (int i = 0; i < 2; i++) {
+            MbProcessor instance = new RunProcessor(config, console).loadMicroBlaze(traceFile);
+            instance.setFusion(i == 1);
+            ProcessorProgress progress = new ProcessorProgress();
+            instance.setProgress(progress);
+            ProgressReporter reporter = new ProgressReporter(progress, console, 1);
+            reporter.start();
+            instance.run();
+            reporter.stop();
+
+            assertTrue(progress.isFinished());
+            assertEquals(instructions, progress.getInstructions());
+            assertEquals(instructions, instance.getInstructionCount());
+            assertEquals(instance.getClock().getLatency(), progress.getCycles());
+            assertEquals(instance.getSpecialRegisters().getPc(), progress.getPc());
+            assertTrue(reporter.report().startsWith("Progress: " + instructions + " instructions"));
+        }
+
+        assertTrue(lines.get(lines.size() - 1).startsWith("Executed " + instructions));
+    }
+
+    private final List<String> lines = new ArrayList<String>();
+    private final Console console = new Console() {
+
+        public void info(String message) {
+        }
+
+        public void warn(String message) {
+        }
+
+        public void more(String message) {
+        }
+
+        public synchronized void print(String message) {
+            lines.add(message);
+        }
+
+        public void close() {
+        }
+    };
+    private String traceFilename = "./traces/adpcm-coder_trace_without_optimization.txt";
+}
@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2009 Ancora Research Group.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+package org.ancora.MicroblazeInterpreter.Support;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.InstructionMemory.MappedTraceMemory;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.Checkpoint;
+import org.ancora.MicroblazeInterpreter.HardwareBlocks.Processor.MbProcessor;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.ancora.MicroblazeInterpreter.HardwareBlocks.ProcessorFixture.*;
+
+/**
+ *
+ * @author Joao Bispo
+ */
+public class VariantRunnerTest {
+
+    /**
+     * Runs a variant with the default configuration, which must end as a run
+     * of the whole trace, a variant with another configuration, and a
+     * variant which writes a register, from the same checkpoint.
+     */
+    @Test
+    public void testRun() throws IOException {
+        File traceFile = new File(traceFilename);
+        MbProcessor expected = newProcessor(new MappedTraceMemory(traceFile));
+        expected.run();
+
+        File checkpointFile = File.createTempFile("checkpoint", Checkpoint.EXTENSION);
+        checkpointFile.deleteOnExit();
+        MbProcessor saved = newProcessor(new MappedTraceMemory(traceFile));
+        assertEquals(INSTRUCTIONS, saved.runFor(INSTRUCTIONS));
+        assertTrue(Checkpoint.save(saved, INSTRUCTIONS, checkpointFile));
+        saved.getInstructionMemory().close();
+
+        List<File> variantFiles = new ArrayList<File>();
+        variantFiles.add(newVariantFile(""));
+        variantFiles.add(newVariantFile("C_AREA_OPTIMIZED=1\n"));
+        variantFiles.add(newVariantFile("r31=0x1234\n"));
+
+        VariantRunner runner = new VariantRunner(traceFile, 2);
+        assertTrue(runner.restore(checkpointFile));
+        List<BatchResult> results = runner.run(variantFiles);
+        assertEquals(3, results.size());
+        for (BatchResult result : results) {
+            assertTrue(result.isOk());
+        }
+
+        BatchResult same = results.get(0);
+        assertEquals(expected.getClock().getLatency(), same.getCycles());
+        for (int i = 0; i < same.getRegisters().length; i++) {
+            assertEquals(expected.getRegisterFile().read(i), same.getRegisters()[i]);
+        }
+        assertTrue(results.get(1).getCycles() != same.getCycles());
+        assertEquals(0x1234, results.get(2).getRegisters()[31]);
+    }
+
+    private static File newVariantFile(String properties) throws IOException {
+        File variantFile = File.createTempFile("variant", ".properties");
+        variantFile.deleteOnExit();
+        FileOutputStream stream = new FileOutputStream(variantFile);
+        stream.write(properties.getBytes("US-ASCII"));
+        stream.close();
+        return variantFile;
+    }
+
+    private static final long INSTRUCTIONS = 20000;
+    private String traceFilename = "./traces/fdct_trace_without_optimization.txt";
+}